@@ -5,6 +5,7 @@ import java.util.logging.Logger;
 
 import com.asteria.engine.GameEngine;
 import com.asteria.engine.net.HostGateway;
+import com.asteria.engine.net.PacketCapture;
 import com.asteria.engine.net.ServerEngine;
 import com.asteria.engine.net.packet.PacketDecoder;
 import com.asteria.engine.task.TaskManager;
@@ -53,42 +54,11 @@ public final class Main {
             // The stopwatch for timing how long all this takes.
             Stopwatch timer = new Stopwatch().reset();
 
-            // Load all of the json stuff.
-            NpcDropTable.parseDrops().load();
-            ItemDefinition.parseItems().load();
-            WorldObjectManager.parseObjects().load();
-            NpcDefinition.parseNpcs().load();
-            Shop.parseShops().load();
-            GroundItemManager.parseItems().load();
-            Npc.parseNpcs().load();
+            // Load everything the server needs to run.
+            loadUtilities();
 
-            // Load all of the IP banned hosts.
-            HostGateway.loadBannedHosts();
-
-            // Load all of the various skills.
-            SkillEvent.loadSkills();
-
-            // Load all of the packets.
-            PacketDecoder.loadDecoders();
-
-            // Load all of the minigames.
-            MinigameFactory.loadMinigames();
-
-            // Load all of the weapon animations.
-            AssignWeaponAnimation.loadWeaponAnimations();
-
-            // Load all of the weapon interfaces.
-            AssignWeaponInterface.loadWeaponInterfaces();
-
-            // Load all of the skill requirements.
-            AssignSkillRequirement.loadSkillRequirements();
-
-            // Load all of the poison data.
-            CombatPoisonData.loadPoisonData();
-
-            // Load npc aggressive policies.
-            NpcAggression.loadPolicies();
-            logger.info("Sucessfully loaded all utilities!");
+            // Start capturing packets, if enabled.
+            PacketCapture.init();
 
             // Initialize and start the reactor.
             ServerEngine.init();
@@ -113,5 +83,52 @@ public final class Main {
         }
     }
 
+    /**
+     * Loads all of the definitions, data and packets that the server needs
+     * to run. This is also used by tools that run the world without any
+     * networking, like {@link com.asteria.engine.net.PacketReplay}.
+     * 
+     * @throws Exception
+     *             if any of the utilities could not be loaded.
+     */
+    public static void loadUtilities() throws Exception {
+        // Load all of the json stuff.
+        NpcDropTable.parseDrops().load();
+        ItemDefinition.parseItems().load();
+        WorldObjectManager.parseObjects().load();
+        NpcDefinition.parseNpcs().load();
+        Shop.parseShops().load();
+        GroundItemManager.parseItems().load();
+        Npc.parseNpcs().load();
+
+        // Load all of the IP banned hosts.
+        HostGateway.loadBannedHosts();
+
+        // Load all of the various skills.
+        SkillEvent.loadSkills();
+
+        // Load all of the packets.
+        PacketDecoder.loadDecoders();
+
+        // Load all of the minigames.
+        MinigameFactory.loadMinigames();
+
+        // Load all of the weapon animations.
+        AssignWeaponAnimation.loadWeaponAnimations();
+
+        // Load all of the weapon interfaces.
+        AssignWeaponInterface.loadWeaponInterfaces();
+
+        // Load all of the skill requirements.
+        AssignSkillRequirement.loadSkillRequirements();
+
+        // Load all of the poison data.
+        CombatPoisonData.loadPoisonData();
+
+        // Load npc aggressive policies.
+        NpcAggression.loadPolicies();
+        logger.info("Sucessfully loaded all utilities!");
+    }
+
     private Main() {}
 }
@@ -0,0 +1,153 @@
+package com.asteria.benchmark;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.asteria.engine.net.BanList;
+import com.asteria.util.Benchmark;
+
+/**
+ * Compares looking up connecting hosts in the {@link BanList} against the
+ * synchronized set of host strings it replaced, with {@link #ENTRIES} banned
+ * hosts. Most of the entries are single addresses and the rest are ranges,
+ * which the set is only able to hold as their first address. Every round looks
+ * up the same random addresses in both, and the set also has to turn each
+ * address into a string first like it used to. The trie is checked against a
+ * linear scan of the entries for a sample of the addresses. The results are
+ * written to <code>./benchmarks/ban-list.txt</code>.
+ *
+ * @author lare96
+ */
+public final class BanListBenchmark {
+
+    /** The amount of banned hosts and ranges. */
+    private static final int ENTRIES = 100000;
+
+    /** One in this many entries is a range instead of a single address. */
+    private static final int RANGE_RATE = 5;
+
+    /** The amount of addresses looked up every round. */
+    private static final int LOOKUPS = 100000;
+
+    /** The amount of addresses checked against a linear scan. */
+    private static final int CHECKS = 2000;
+
+    /** The amount of rounds to time. */
+    private static final int ROUNDS = 20;
+
+    /** The amount of rounds to run before timing anything. */
+    private static final int WARMUP_ROUNDS = 10;
+
+    /**
+     * The main method of this benchmark.
+     *
+     * @param args
+     *            the array of runtime arguments.
+     * @throws Exception
+     *             if an address could not be created.
+     */
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(0);
+        int[] addresses = new int[ENTRIES];
+        int[] lengths = new int[ENTRIES];
+        BanList trie = new BanList();
+        Set<String> set = Collections.synchronizedSet(new HashSet<String>());
+        List<String> entries = new ArrayList<>(ENTRIES);
+
+        for (int i = 0; i < ENTRIES; i++) {
+            lengths[i] = i % RANGE_RATE == 0 ? 16 + random.nextInt(13) : 32;
+            addresses[i] = random.nextInt()
+                & (int) (0xffffffff00000000L >>> lengths[i]);
+            entries.add(toString(addresses[i]) + (lengths[i] == 32 ? ""
+                : "/" + lengths[i]));
+            set.add(toString(addresses[i]));
+        }
+
+        if (trie.addAll(entries) != ENTRIES) {
+            throw new IllegalStateException("Invalid entries!");
+        }
+
+        // Look up banned addresses half of the time.
+        InetAddress[] lookups = new InetAddress[LOOKUPS];
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            int address = i % 2 == 0 ? addresses[random.nextInt(ENTRIES)]
+                : random.nextInt();
+            lookups[i] = InetAddress.getByAddress(new byte[] {
+                (byte) (address >>> 24), (byte) (address >>> 16),
+                (byte) (address >>> 8), (byte) address });
+        }
+
+        for (int i = 0; i < CHECKS; i++) {
+            int address = lookups[i].hashCode();
+            boolean expected = false;
+
+            for (int j = 0; j < ENTRIES && !expected; j++) {
+                int mask = (int) (0xffffffff00000000L >>> lengths[j]);
+                expected = (address & mask) == (addresses[j] & mask);
+            }
+
+            if (trie.contains(lookups[i]) != expected) {
+                throw new IllegalStateException("Wrong result for "
+                    + lookups[i]);
+            }
+        }
+
+        Benchmark legacy = new Benchmark("legacy", "ban-list");
+        Benchmark prefix = new Benchmark("trie", "ban-list");
+        int banned = 0;
+
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            boolean timed = round >= WARMUP_ROUNDS;
+
+            legacy.reset();
+
+            for (InetAddress address : lookups) {
+                if (set.contains(address.getHostAddress())) {
+                    banned++;
+                }
+            }
+
+            if (timed) {
+                legacy.collect();
+            }
+
+            prefix.reset();
+
+            for (InetAddress address : lookups) {
+                if (trie.contains(address)) {
+                    banned--;
+                }
+            }
+
+            if (timed) {
+                prefix.collect();
+            }
+        }
+
+        legacy.write(TimeUnit.MICROSECONDS);
+        prefix.write(TimeUnit.MICROSECONDS);
+        System.out.println((-banned / (WARMUP_ROUNDS + ROUNDS))
+            + " more lookups matched a range in the trie every round.");
+    }
+
+    /**
+     * Writes an IPv4 address in dotted decimal notation.
+     *
+     * @param address
+     *            the address to write.
+     * @return the written address.
+     */
+    private static String toString(int address) {
+        return (address >>> 24) + "." + ((address >>> 16) & 0xff) + "."
+            + ((address >>> 8) & 0xff) + "." + (address & 0xff);
+    }
+
+    private BanListBenchmark() {}
+}
@@ -0,0 +1,75 @@
+package com.asteria.benchmark;
+
+import com.asteria.world.entity.Entity;
+import com.asteria.world.entity.Hit;
+import com.asteria.world.entity.combat.CombatFactory.CombatType;
+import com.asteria.world.entity.combat.CombatStrategy;
+import com.asteria.world.map.Position;
+
+/**
+ * A bare {@link Entity} used by benchmarks that only need something with a
+ * slot and a position, without loading any definitions or opening a session.
+ * 
+ * @author lare96
+ */
+final class BenchmarkEntity extends Entity {
+
+    /**
+     * Create a new {@link BenchmarkEntity}.
+     * 
+     * @param position
+     *            the position of this entity.
+     */
+    public BenchmarkEntity(Position position) {
+        getPosition().setAs(position);
+    }
+
+    @Override
+    public void pulse() throws Exception {}
+
+    @Override
+    public int getAttackSpeed() {
+        return 0;
+    }
+
+    @Override
+    public void move(Position position) {
+        getPosition().setAs(position);
+    }
+
+    @Override
+    public int getCurrentHealth() {
+        return 0;
+    }
+
+    @Override
+    public EntityType type() {
+        return EntityType.NPC;
+    }
+
+    @Override
+    public Hit decrementHealth(Hit hit) {
+        return hit;
+    }
+
+    @Override
+    public CombatStrategy determineStrategy() {
+        return null;
+    }
+
+    @Override
+    public int getBaseAttack(CombatType type) {
+        return 0;
+    }
+
+    @Override
+    public int getBaseDefence(CombatType type) {
+        return 0;
+    }
+
+    @Override
+    public void poisonVictim(Entity victim, CombatType type) {}
+
+    @Override
+    public void heal(int damage) {}
+}
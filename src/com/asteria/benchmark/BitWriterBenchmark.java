@@ -0,0 +1,297 @@
+package com.asteria.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.asteria.engine.net.ProtocolBuffer;
+import com.asteria.util.Benchmark;
+
+/**
+ * Compares the accumulator bit writer and bulk byte copies of the
+ * {@link ProtocolBuffer} against the byte at a time implementation they
+ * replaced. Every round encodes the same randomly generated packets with both
+ * implementations, shaped like update packets: a run of bit fields followed by
+ * an appended block of bytes. The output of both implementations must be
+ * identical byte for byte. The results are written to
+ * <code>./benchmarks/bit-writer.txt</code>.
+ *
+ * @author lare96
+ */
+public final class BitWriterBenchmark {
+
+    /** The amount of packets encoded every round. */
+    private static final int PACKETS = 2000;
+
+    /** The amount of rounds to time. */
+    private static final int ROUNDS = 50;
+
+    /** The amount of rounds to run before timing anything. */
+    private static final int WARMUP_ROUNDS = 50;
+
+    /** The bit field sizes used by the update packets. */
+    private static final int[] FIELD_SIZES = { 1, 1, 1, 2, 3, 3, 5, 5, 7, 8,
+            11, 14, 26, 32 };
+
+    /**
+     * The main method of this benchmark.
+     *
+     * @param args
+     *            the array of runtime arguments.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        int[][] amounts = new int[PACKETS][];
+        int[][] values = new int[PACKETS][];
+        byte[][] blocks = new byte[PACKETS][];
+
+        for (int i = 0; i < PACKETS; i++) {
+            int fields = 20 + random.nextInt(400);
+            amounts[i] = new int[fields];
+            values[i] = new int[fields];
+
+            for (int j = 0; j < fields; j++) {
+                amounts[i][j] = FIELD_SIZES[random.nextInt(FIELD_SIZES.length)];
+
+                // Values are deliberately allowed to overflow their field.
+                values[i][j] = random.nextInt();
+            }
+            blocks[i] = new byte[random.nextInt(600)];
+            random.nextBytes(blocks[i]);
+        }
+
+        Benchmark legacy = new Benchmark("legacy", "bit-writer");
+        Benchmark accumulator = new Benchmark("accumulator", "bit-writer");
+        ProtocolBuffer current = new ProtocolBuffer(16384);
+        ProtocolBuffer block = new ProtocolBuffer(1024);
+        LegacyBuffer old = new LegacyBuffer(16384);
+
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            boolean timed = round >= WARMUP_ROUNDS;
+            long checksum = 0;
+
+            legacy.reset();
+
+            for (int i = 0; i < PACKETS; i++) {
+                old.clear();
+                old.writeByte(81);
+                old.startBitAccess();
+
+                for (int j = 0; j < amounts[i].length; j++) {
+                    old.writeBits(amounts[i][j], values[i][j]);
+                }
+                old.finishBitAccess();
+                old.writeBytesReverse(blocks[i]);
+                checksum += old.buf.position();
+            }
+
+            if (timed) {
+                legacy.collect();
+            }
+
+            accumulator.reset();
+
+            for (int i = 0; i < PACKETS; i++) {
+                current.clear();
+                current.writeByte(81);
+                current.startBitAccess();
+
+                for (int j = 0; j < amounts[i].length; j++) {
+                    current.writeBits(amounts[i][j], values[i][j]);
+                }
+                current.finishBitAccess();
+                current.writeBytesReverse(blocks[i]);
+                checksum -= current.getBuffer().position();
+            }
+
+            if (timed) {
+                accumulator.collect();
+            }
+
+            if (checksum != 0) {
+                throw new IllegalStateException("Packets differ in length!");
+            }
+        }
+
+        // Then check every packet byte for byte, including appended blocks.
+        for (int i = 0; i < PACKETS; i++) {
+            old.clear();
+            current.clear();
+            block.clear();
+            old.startBitAccess();
+            current.startBitAccess();
+
+            for (int j = 0; j < amounts[i].length; j++) {
+                old.writeBits(amounts[i][j], values[i][j]);
+                current.writeBits(amounts[i][j], values[i][j]);
+            }
+            old.finishBitAccess();
+            current.finishBitAccess();
+
+            block.writeBytes(blocks[i], blocks[i].length);
+            old.writeBytes(block.getBuffer());
+            current.writeBytes(block.getBuffer());
+            old.writeBytesReverse(blocks[i]);
+            current.writeBytesReverse(blocks[i]);
+
+            byte[] expected = Arrays.copyOf(old.buf.array(), old.buf
+                .position());
+            byte[] actual = Arrays.copyOf(current.getBuffer().array(), current
+                .getBuffer().position());
+
+            if (!Arrays.equals(expected, actual)) {
+                throw new IllegalStateException("Packet " + i
+                    + " is not identical!");
+            }
+        }
+
+        legacy.write(TimeUnit.MICROSECONDS);
+        accumulator.write(TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * A copy of the byte at a time writer that the {@link ProtocolBuffer} used
+     * to have, kept to compare against.
+     *
+     * @author lare96
+     */
+    private static final class LegacyBuffer {
+
+        /** The backing byte buffer. */
+        private ByteBuffer buf;
+
+        /** The current bit position. */
+        private int bitPosition;
+
+        /**
+         * Create a new {@link LegacyBuffer}.
+         *
+         * @param cap
+         *            the capacity of this buffer.
+         */
+        public LegacyBuffer(int cap) {
+            buf = ByteBuffer.allocate(cap);
+        }
+
+        /**
+         * Clears this buffer, zeroing the bytes written since bit access only
+         * overwrites the bits it writes.
+         */
+        public void clear() {
+            Arrays.fill(buf.array(), 0, buf.position(), (byte) 0);
+            buf.clear();
+            bitPosition = 0;
+        }
+
+        /** Prepares the buffer for writing bits. */
+        public void startBitAccess() {
+            bitPosition = buf.position() * 8;
+        }
+
+        /** Prepares the buffer for writing bytes. */
+        public void finishBitAccess() {
+            buf.position((bitPosition + 7) / 8);
+        }
+
+        /**
+         * Checks if the buffer can hold the amount of requested bytes.
+         *
+         * @param requested
+         *            the amount of requested bytes.
+         */
+        private void requestSpace(int requested) {
+            if ((buf.position() + requested + 1) >= buf.capacity()) {
+                int oldPosition = buf.position();
+                byte[] oldBuffer = buf.array();
+                buf = ByteBuffer.allocate(buf.capacity() * 2);
+                buf.position(oldPosition);
+                System.arraycopy(oldBuffer, 0, buf.array(), 0,
+                    oldBuffer.length);
+                requestSpace(requested);
+            }
+        }
+
+        /**
+         * Writes a value as a normal byte.
+         *
+         * @param value
+         *            the value to write.
+         */
+        public void writeByte(int value) {
+            requestSpace(1);
+            buf.put((byte) value);
+        }
+
+        /**
+         * Writes the bytes from the argued buffer into this buffer.
+         *
+         * @param from
+         *            the argued buffer that bytes will be written from.
+         */
+        public void writeBytes(ByteBuffer from) {
+            for (int i = 0; i < from.position(); i++) {
+                writeByte(from.get(i));
+            }
+        }
+
+        /**
+         * Writes the bytes from the argued byte array into this buffer, in
+         * reverse.
+         *
+         * @param data
+         *            the data to write.
+         */
+        public void writeBytesReverse(byte[] data) {
+            for (int i = data.length - 1; i >= 0; i--) {
+                writeByte(data[i]);
+            }
+        }
+
+        /**
+         * Writes the value as a variable amount of bits.
+         *
+         * @param amount
+         *            the amount of bits to write.
+         * @param value
+         *            the value of the bits.
+         */
+        public void writeBits(int amount, int value) {
+            int bytePos = bitPosition >> 3;
+            int bitOffset = 8 - (bitPosition & 7);
+            bitPosition = bitPosition + amount;
+
+            int requiredSpace = bytePos - buf.position() + 1;
+            requiredSpace += (amount + 7) / 8;
+            if (buf.remaining() < requiredSpace) {
+                ByteBuffer old = buf;
+                buf = ByteBuffer.allocate(old.capacity() + requiredSpace);
+                old.flip();
+                buf.put(old);
+            }
+
+            for (; amount > bitOffset; bitOffset = 8) {
+                byte tmp = buf.get(bytePos);
+                tmp &= ~ProtocolBuffer.BIT_MASK[bitOffset];
+                tmp |= (value >> (amount - bitOffset))
+                    & ProtocolBuffer.BIT_MASK[bitOffset];
+                buf.put(bytePos++, tmp);
+                amount -= bitOffset;
+            }
+            if (amount == bitOffset) {
+                byte tmp = buf.get(bytePos);
+                tmp &= ~ProtocolBuffer.BIT_MASK[bitOffset];
+                tmp |= value & ProtocolBuffer.BIT_MASK[bitOffset];
+                buf.put(bytePos, tmp);
+            } else {
+                byte tmp = buf.get(bytePos);
+                tmp &= ~(ProtocolBuffer.BIT_MASK[amount] << (bitOffset - amount));
+                tmp |= (value & ProtocolBuffer.BIT_MASK[amount]) << (bitOffset
+                    - amount);
+                buf.put(bytePos, tmp);
+            }
+        }
+    }
+
+    private BitWriterBenchmark() {}
+}
@@ -0,0 +1,114 @@
+package com.asteria.benchmark;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+import com.asteria.engine.net.packet.PacketDecoder;
+import com.asteria.engine.net.packet.PacketOpcodeHeader;
+import com.asteria.util.Benchmark;
+
+/**
+ * Compares loading the {@link PacketDecoder}s from their static table against
+ * the way they used to be loaded, by listing the source directory of the
+ * decoders and creating each one reflectively. Every round loads the decoders
+ * through a new class loader, so both ways pay for loading the decoder
+ * classes like they would on startup. This has to be run from the root of the
+ * project, since the old way needs the source directory. The results are
+ * written to <code>./benchmarks/decoder-registry.txt</code>.
+ *
+ * @author lare96
+ */
+public final class DecoderRegistryBenchmark {
+
+    /** The amount of rounds to time. */
+    private static final int ROUNDS = 20;
+
+    /** The amount of rounds to run before timing anything. */
+    private static final int WARMUP_ROUNDS = 5;
+
+    /**
+     * The main method of this benchmark.
+     *
+     * @param args
+     *            the array of runtime arguments.
+     * @throws Exception
+     *             if the decoders could not be loaded.
+     */
+    public static void main(String[] args) throws Exception {
+        String[] paths = System.getProperty("java.class.path").split(
+            File.pathSeparator);
+        URL[] classpath = new URL[paths.length];
+
+        for (int i = 0; i < paths.length; i++) {
+            classpath[i] = new File(paths[i]).toURI().toURL();
+        }
+
+        Benchmark legacy = new Benchmark("legacy", "decoder-registry");
+        Benchmark table = new Benchmark("table", "decoder-registry");
+
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            boolean timed = round >= WARMUP_ROUNDS;
+
+            try (URLClassLoader loader = new URLClassLoader(classpath, null)) {
+                legacy.reset();
+                Class.forName(DecoderRegistryBenchmark.class.getName(), true,
+                    loader).getMethod("loadLegacy").invoke(null);
+
+                if (timed) {
+                    legacy.collect();
+                }
+            }
+
+            try (URLClassLoader loader = new URLClassLoader(classpath, null)) {
+                table.reset();
+                Class.forName(PacketDecoder.class.getName(), true, loader)
+                    .getMethod("loadDecoders").invoke(null);
+
+                if (timed) {
+                    table.collect();
+                }
+            }
+        }
+
+        legacy.write(TimeUnit.MICROSECONDS);
+        table.write(TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * A copy of the way the decoders used to be loaded, kept to compare
+     * against. This is public so it can be invoked through a new class loader.
+     *
+     * @return the loaded decoders.
+     * @throws Exception
+     *             if an error occurs while loading the decoders.
+     */
+    public static PacketDecoder[] loadLegacy() throws Exception {
+        PacketDecoder[] packets = new PacketDecoder[256];
+        File[] files = new File("./src/com/asteria/engine/net/packet/impl/")
+            .listFiles();
+
+        for (File file : files) {
+            Class<?> c = Class.forName("com.asteria.engine.net.packet.impl."
+                + file.getName().replaceAll(".java", ""));
+
+            if (!(c.getSuperclass() == PacketDecoder.class)) {
+                throw new IllegalStateException(
+                    "Illegal packet decoder! Not an instance of PacketDecoder: "
+                        + file.getName());
+            }
+
+            PacketDecoder packet = (PacketDecoder) c.getDeclaredConstructor()
+                .newInstance();
+
+            for (int opcode : packet.getClass().getAnnotation(
+                PacketOpcodeHeader.class).value()) {
+                packets[opcode] = packet;
+            }
+        }
+        return packets;
+    }
+
+    private DecoderRegistryBenchmark() {}
+}
@@ -0,0 +1,249 @@
+package com.asteria.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.asteria.engine.net.ProtocolBuffer;
+import com.asteria.util.Benchmark;
+import com.asteria.world.entity.EntityContainer;
+import com.asteria.world.entity.LocalInterest;
+import com.asteria.world.map.Position;
+
+/**
+ * Compares removing local entities as soon as they leave the viewport, which
+ * is how updating used to work, against keeping them through the
+ * {@link LocalInterest} hysteresis. Half of the bots stand around in the
+ * middle, and the other half wander back and forth around the edge of their
+ * viewport. Every tick each bot builds the movement and local list part of a
+ * player update packet for its local list, appending an appearance block for
+ * every bot it adds, exactly the same way in both runs. The time of every
+ * round is written to <code>./benchmarks/local-interest.txt</code>, along
+ * with the churn and the bytes written every tick.
+ *
+ * @author lare96
+ */
+public final class LocalInterestBenchmark {
+
+    /** The amount of bots, half of them wander around the viewport edge. */
+    private static final int BOTS = 200;
+
+    /** The amount of ticks simulated every round. */
+    private static final int TICKS = 200;
+
+    /** The amount of rounds to time. */
+    private static final int ROUNDS = 10;
+
+    /** The amount of rounds to run before timing anything. */
+    private static final int WARMUP_ROUNDS = 5;
+
+    /** The size of the appearance block sent for every added bot. */
+    private static final int APPEARANCE_SIZE = 60;
+
+    /** The position the bots gather around. */
+    private static final Position CENTER = new Position(3200, 3200);
+
+    /** The x offsets from the center that the wandering bots stay between. */
+    private static final int WANDER_FROM = 10, WANDER_TO = 19;
+
+    /** The direction of walking east and west, as sent to the client. */
+    private static final int EAST = 4, WEST = 3, NONE = -1;
+
+    /** The amount of entities added and removed in the last round. */
+    private static long churn;
+
+    /** The amount of bytes written in the last round. */
+    private static long bytes;
+
+    /**
+     * The main method of this benchmark.
+     *
+     * @param args
+     *            the array of runtime arguments.
+     * @throws Exception
+     *             if the results could not be written.
+     */
+    public static void main(String[] args) throws Exception {
+        Benchmark legacy = new Benchmark("legacy", "local-interest");
+        Benchmark hysteresis = new Benchmark("hysteresis", "local-interest");
+        long legacyChurn = 0, legacyBytes = 0;
+
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            boolean timed = round >= WARMUP_ROUNDS;
+
+            run(legacy, false);
+
+            if (timed) {
+                legacy.collect();
+            }
+            legacyChurn = churn;
+            legacyBytes = bytes;
+
+            run(hysteresis, true);
+
+            if (timed) {
+                hysteresis.collect();
+            }
+        }
+
+        legacy.write(TimeUnit.MICROSECONDS);
+        hysteresis.write(TimeUnit.MICROSECONDS);
+
+        try (FileWriter writer = new FileWriter(new File(
+            "./benchmarks/local-interest.txt"), true)) {
+            writer.write("[legacy] Churn: " + legacyChurn / TICKS
+                + "/tick, bytes: " + legacyBytes / TICKS + "/tick\n");
+            writer.write("[hysteresis] Churn: " + churn / TICKS
+                + "/tick, bytes: " + bytes / TICKS + "/tick\n\n\n");
+        }
+        System.out.println("Churn " + legacyChurn / TICKS + " -> " + churn
+            / TICKS + " per tick, bytes " + legacyBytes / TICKS + " -> "
+            + bytes / TICKS + " per tick.");
+    }
+
+    /**
+     * Simulates a round of {@link #TICKS} ticks. Moving the bots is timed as
+     * well, but it's exactly the same in both runs.
+     *
+     * @param benchmark
+     *            the benchmark to reset once the bots are created.
+     * @param hysteresis
+     *            if entities should be kept through {@link LocalInterest}.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void run(Benchmark benchmark, boolean hysteresis) {
+        Random random = new Random(0);
+        EntityContainer<BenchmarkEntity> bots = new EntityContainer<>(
+            BOTS + 1, true);
+        int capacity = bots.getCapacity();
+        Set<BenchmarkEntity>[] locals = new Set[capacity];
+        long[][] ticksAdded = new long[capacity][capacity];
+        boolean[] wandering = new boolean[capacity];
+        int[] directions = new int[capacity];
+        Arrays.fill(directions, NONE);
+        byte[] appearance = new byte[APPEARANCE_SIZE];
+        ProtocolBuffer out = new ProtocolBuffer(16384);
+        ProtocolBuffer block = new ProtocolBuffer(16384);
+        List<BenchmarkEntity> viewable = new ArrayList<>();
+        churn = 0;
+        bytes = 0;
+
+        for (int i = 0; i < BOTS; i++) {
+            boolean wanders = i % 2 == 1;
+            int x = wanders ? WANDER_FROM + random.nextInt(WANDER_TO
+                - WANDER_FROM + 1) : random.nextInt(5) - 2;
+            BenchmarkEntity bot = new BenchmarkEntity(new Position(CENTER
+                .getX() + x, CENTER.getY() + random.nextInt(5) - 2));
+            bots.add(bot);
+            locals[bot.getSlot()] = new LinkedHashSet<>();
+            wandering[bot.getSlot()] = wanders;
+        }
+
+        // Only time the ticks, not creating the bots.
+        benchmark.reset();
+
+        for (int tick = 0; tick < TICKS; tick++) {
+
+            // Step half of the bots randomly, the rest stand still.
+            for (BenchmarkEntity bot : bots) {
+                if (bot == null || !wandering[bot.getSlot()]) {
+                    continue;
+                }
+
+                int x = bot.getPosition().getX() - CENTER.getX();
+                int step = random.nextInt(3) - 1;
+
+                if (step == 0 || x + step < WANDER_FROM || x
+                    + step > WANDER_TO) {
+                    directions[bot.getSlot()] = NONE;
+                    continue;
+                }
+                directions[bot.getSlot()] = step == 1 ? EAST : WEST;
+                bot.getPosition().move(step, 0);
+                bots.reposition(bot);
+            }
+
+            for (BenchmarkEntity viewer : bots) {
+                if (viewer == null) {
+                    continue;
+                }
+
+                Set<BenchmarkEntity> local = locals[viewer.getSlot()];
+                long[] added = ticksAdded[viewer.getSlot()];
+                out.clear();
+                block.clear();
+                out.writeByte(81);
+                out.startBitAccess();
+                out.writeBits(8, local.size());
+
+                for (Iterator<BenchmarkEntity> i = local.iterator(); i
+                    .hasNext();) {
+                    BenchmarkEntity other = i.next();
+                    boolean keep = hysteresis ? LocalInterest.canKeep(viewer
+                        .getPosition(), other.getPosition(), tick
+                        - added[other.getSlot()]) : other.getPosition()
+                        .isViewableFrom(viewer.getPosition());
+
+                    if (!keep) {
+                        out.writeBit(true);
+                        out.writeBits(2, 3);
+                        i.remove();
+                        churn++;
+                    } else if (directions[other.getSlot()] != NONE) {
+                        out.writeBit(true);
+                        out.writeBits(2, 1);
+                        out.writeBits(3, directions[other.getSlot()]);
+                        out.writeBit(false);
+                    } else {
+                        out.writeBit(false);
+                    }
+                }
+
+                int additions = 0;
+
+                viewable.clear();
+
+                for (BenchmarkEntity other : bots.getRegionIndex()
+                    .getViewable(viewer.getPosition(), viewable)) {
+                    if (additions == 15 || local.size() >= 255) {
+                        break;
+                    }
+                    if (other == viewer || !local.add(other)) {
+                        continue;
+                    }
+
+                    added[other.getSlot()] = tick;
+                    out.writeBits(11, other.getSlot());
+                    out.writeBit(true);
+                    out.writeBit(true);
+                    out.writeBits(5, other.getPosition().getY() - viewer
+                        .getPosition().getY());
+                    out.writeBits(5, other.getPosition().getX() - viewer
+                        .getPosition().getX());
+                    block.writeBytes(appearance, appearance.length);
+                    additions++;
+                    churn++;
+                }
+
+                if (block.getBuffer().position() > 0) {
+                    out.writeBits(11, 2047);
+                    out.finishBitAccess();
+                    out.writeBytes(block.getBuffer());
+                } else {
+                    out.finishBitAccess();
+                }
+                bytes += out.getBuffer().position();
+            }
+        }
+
+    }
+
+    private LocalInterestBenchmark() {}
+}
@@ -0,0 +1,202 @@
+package com.asteria.benchmark;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.asteria.util.Benchmark;
+import com.asteria.world.entity.LocalList;
+import com.asteria.world.entity.UpdateBudget;
+import com.asteria.world.map.Position;
+
+/**
+ * Compares keeping local lists in a {@link LinkedHashSet}, which is how local
+ * lists used to be kept, against a {@link LocalList}. Every viewer starts
+ * with a full local list of {@link UpdateBudget#MAX_LOCAL} entities, and
+ * every tick walks it the way updating does, removing a few of them, before
+ * checking every candidate in view for membership and adding new entities
+ * until the list is full again. The results are written to
+ * <code>./benchmarks/local-list.txt</code>.
+ * <p>
+ * The entities don't override <code>equals</code> and <code>hashCode</code>,
+ * unlike players which compare usernames, so this favors the sets if
+ * anything.
+ *
+ * @author lare96
+ */
+public final class LocalListBenchmark {
+
+    /** The amount of entities that can be viewed. */
+    private static final int ENTITIES = 1000;
+
+    /** The amount of viewers, each with their own local list. */
+    private static final int VIEWERS = 200;
+
+    /** The amount of candidates checked for membership every tick. */
+    private static final int CANDIDATES = 300;
+
+    /** Every how many entities in the walk one of them is removed. */
+    private static final int REMOVE_EVERY = 51;
+
+    /** The amount of ticks simulated every round. */
+    private static final int TICKS = 100;
+
+    /** The amount of rounds to time. */
+    private static final int ROUNDS = 10;
+
+    /** The amount of rounds to run before timing anything. */
+    private static final int WARMUP_ROUNDS = 5;
+
+    /** The entities that can be viewed, indexed by slot. */
+    private static final BenchmarkEntity[] entities = new BenchmarkEntity[ENTITIES];
+
+    /**
+     * The main method of this benchmark.
+     *
+     * @param args
+     *            the array of runtime arguments.
+     */
+    public static void main(String[] args) {
+        for (int i = 0; i < ENTITIES; i++) {
+            entities[i] = new BenchmarkEntity(new Position(3200, 3200));
+            entities[i].setSlot(i);
+        }
+
+        Benchmark set = new Benchmark("linked-hash-set", "local-list");
+        Benchmark list = new Benchmark("local-list", "local-list");
+
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            boolean timed = round >= WARMUP_ROUNDS;
+
+            long setChecksum = runSets(set);
+
+            if (timed) {
+                set.collect();
+            }
+
+            long listChecksum = runLists(list);
+
+            if (timed) {
+                list.collect();
+            }
+
+            // Both have to walk exactly the same entities in the same order.
+            if (setChecksum != listChecksum) {
+                throw new IllegalStateException("Sets walked " + setChecksum
+                    + ", lists walked " + listChecksum);
+            }
+        }
+
+        set.write(TimeUnit.MICROSECONDS);
+        list.write(TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Simulates a round of {@link #TICKS} ticks with linked hash sets.
+     *
+     * @param benchmark
+     *            the benchmark to reset once the sets are filled.
+     * @return the checksum of the walked entities.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static long runSets(Benchmark benchmark) {
+        Set<BenchmarkEntity>[] locals = new Set[VIEWERS];
+        long checksum = 0;
+
+        for (int viewer = 0; viewer < VIEWERS; viewer++) {
+            locals[viewer] = new LinkedHashSet<>();
+
+            for (int i = 0; i < UpdateBudget.MAX_LOCAL; i++) {
+                locals[viewer].add(entities[(viewer + i) % ENTITIES]);
+            }
+        }
+
+        // Only time the ticks, not filling the sets.
+        benchmark.reset();
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (int viewer = 0; viewer < VIEWERS; viewer++) {
+                Set<BenchmarkEntity> local = locals[viewer];
+                int index = 0;
+
+                for (Iterator<BenchmarkEntity> i = local.iterator(); i
+                    .hasNext();) {
+                    BenchmarkEntity other = i.next();
+                    checksum = checksum * 31 + other.getSlot();
+
+                    if ((index++ + tick) % REMOVE_EVERY == 0) {
+                        i.remove();
+                    }
+                }
+
+                int start = (viewer + tick * 7) % ENTITIES;
+
+                for (int i = 0; i < CANDIDATES; i++) {
+                    BenchmarkEntity other = entities[(start + i) % ENTITIES];
+
+                    if (!local.contains(other) && local
+                        .size() < UpdateBudget.MAX_LOCAL) {
+                        local.add(other);
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Simulates a round of {@link #TICKS} ticks with local lists.
+     *
+     * @param benchmark
+     *            the benchmark to reset once the lists are filled.
+     * @return the checksum of the walked entities.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static long runLists(Benchmark benchmark) {
+        LocalList<BenchmarkEntity>[] locals = new LocalList[VIEWERS];
+        long checksum = 0;
+
+        for (int viewer = 0; viewer < VIEWERS; viewer++) {
+            locals[viewer] = new LocalList<>(ENTITIES, UpdateBudget.MAX_LOCAL);
+
+            for (int i = 0; i < UpdateBudget.MAX_LOCAL; i++) {
+                locals[viewer].add(entities[(viewer + i) % ENTITIES]);
+            }
+        }
+
+        // Only time the ticks, not filling the lists.
+        benchmark.reset();
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            for (int viewer = 0; viewer < VIEWERS; viewer++) {
+                LocalList<BenchmarkEntity> local = locals[viewer];
+                int index = 0;
+
+                for (Iterator<BenchmarkEntity> i = local.iterator(); i
+                    .hasNext();) {
+                    BenchmarkEntity other = i.next();
+                    checksum = checksum * 31 + other.getSlot();
+
+                    if ((index++ + tick) % REMOVE_EVERY == 0) {
+                        i.remove();
+                    }
+                }
+
+                int start = (viewer + tick * 7) % ENTITIES;
+
+                for (int i = 0; i < CANDIDATES; i++) {
+                    BenchmarkEntity other = entities[(start + i) % ENTITIES];
+
+                    if (!local.contains(other) && local
+                        .size() < UpdateBudget.MAX_LOCAL) {
+                        local.add(other);
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private LocalListBenchmark() {}
+}
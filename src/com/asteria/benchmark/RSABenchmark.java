@@ -0,0 +1,114 @@
+package com.asteria.benchmark;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.asteria.engine.net.RSAKey;
+import com.asteria.engine.net.Session;
+import com.asteria.util.Benchmark;
+
+/**
+ * Compares decrypting login blocks with a single exponentiation modulo the
+ * whole modulus against decrypting them with the Chinese Remainder Theorem,
+ * using the key in {@link Session#RSA_KEY_FILE}. Every round decrypts the same
+ * random login blocks both ways on the calling thread, and both ways must
+ * produce the same plaintext. The results are written to
+ * <code>./benchmarks/rsa.txt</code>, and the logins per second a single core
+ * is able to decrypt are printed.
+ *
+ * @author lare96
+ */
+public final class RSABenchmark {
+
+    /** The amount of login blocks decrypted every round. */
+    private static final int BLOCKS = 200;
+
+    /** The amount of rounds to time. */
+    private static final int ROUNDS = 20;
+
+    /** The amount of rounds to run before timing anything. */
+    private static final int WARMUP_ROUNDS = 10;
+
+    /**
+     * The main method of this benchmark.
+     *
+     * @param args
+     *            the array of runtime arguments.
+     * @throws Exception
+     *             if the key could not be loaded.
+     */
+    public static void main(String[] args) throws Exception {
+        RSAKey key = RSAKey.load(new File(Session.RSA_KEY_FILE));
+
+        if (!key.isCrt()) {
+            throw new IllegalStateException(
+                "The key has no CRT parameters to benchmark!");
+        }
+
+        Random random = new Random(0);
+        BigInteger[] blocks = new BigInteger[BLOCKS];
+
+        for (int i = 0; i < BLOCKS; i++) {
+            blocks[i] = new BigInteger(key.getModulus().bitLength() - 1,
+                random);
+        }
+
+        Benchmark plain = new Benchmark("plain", "rsa");
+        Benchmark crt = new Benchmark("crt", "rsa");
+        long plainTotal = 0, crtTotal = 0;
+
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            boolean timed = round >= WARMUP_ROUNDS;
+            BigInteger[] expected = new BigInteger[BLOCKS];
+
+            plain.reset();
+            long start = System.nanoTime();
+
+            for (int i = 0; i < BLOCKS; i++) {
+                expected[i] = key.decryptPlain(blocks[i]);
+            }
+
+            if (timed) {
+                plain.collect();
+                plainTotal += System.nanoTime() - start;
+            }
+
+            crt.reset();
+            start = System.nanoTime();
+
+            for (int i = 0; i < BLOCKS; i++) {
+                if (!key.decrypt(blocks[i]).equals(expected[i])) {
+                    throw new IllegalStateException("Block " + i
+                        + " decrypted differently!");
+                }
+            }
+
+            if (timed) {
+                crt.collect();
+                crtTotal += System.nanoTime() - start;
+            }
+        }
+
+        plain.write(TimeUnit.MICROSECONDS);
+        crt.write(TimeUnit.MICROSECONDS);
+        System.out.println("Plain: " + loginsPerSecond(plainTotal)
+            + " logins/s per core");
+        System.out.println("CRT: " + loginsPerSecond(crtTotal)
+            + " logins/s per core");
+    }
+
+    /**
+     * Calculates the amount of logins decrypted per second.
+     *
+     * @param nanos
+     *            the time taken to decrypt every timed block.
+     * @return the logins decrypted per second.
+     */
+    private static long loginsPerSecond(long nanos) {
+        return (long) BLOCKS * ROUNDS * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private RSABenchmark() {}
+}
@@ -0,0 +1,134 @@
+package com.asteria.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.asteria.util.Benchmark;
+import com.asteria.world.entity.EntityContainer;
+import com.asteria.world.map.Position;
+
+/**
+ * Compares finding viewable entities by scanning every slot of an
+ * {@link EntityContainer}, which is how updating used to discover new local
+ * entities, against probing the chunks of its region index. Every simulated
+ * cycle moves each entity one random step and then looks up the viewable
+ * entities for every entity. The results are written to
+ * <code>./benchmarks/region-index.txt</code>.
+ *
+ * @author lare96
+ */
+public final class RegionIndexBenchmark {
+
+    /** The amount of entities to benchmark with. */
+    private static final int[] POPULATIONS = { 200, 1000, 2000 };
+
+    /** The amount of cycles to simulate for each population. */
+    private static final int CYCLES = 50;
+
+    /** The amount of cycles to simulate before timing anything. */
+    private static final int WARMUP_CYCLES = 20;
+
+    /** The length of the square area the entities are spread across. */
+    private static final int AREA_SIZE = 160;
+
+    /**
+     * The main method of this benchmark.
+     *
+     * @param args
+     *            the array of runtime arguments.
+     */
+    public static void main(String[] args) {
+        for (int population : POPULATIONS) {
+            run(population);
+        }
+    }
+
+    /**
+     * Runs the benchmark for the argued amount of entities.
+     *
+     * @param population
+     *            the amount of entities.
+     */
+    private static void run(int population) {
+        Random random = new Random(population);
+        EntityContainer<BenchmarkEntity> container = new EntityContainer<>(
+            population + 1, true);
+
+        for (int i = 0; i < population; i++) {
+            container.add(new BenchmarkEntity(new Position(3200 + random
+                .nextInt(AREA_SIZE), 3200 + random.nextInt(AREA_SIZE))));
+        }
+
+        List<BenchmarkEntity> viewable = new ArrayList<>();
+        Benchmark scan = new Benchmark("scan-" + population, "region-index");
+        Benchmark indexed = new Benchmark("indexed-" + population,
+            "region-index");
+
+        for (int cycle = 0; cycle < WARMUP_CYCLES + CYCLES; cycle++) {
+            boolean timed = cycle >= WARMUP_CYCLES;
+
+            // Move every entity, the index has to be maintained as they move.
+            indexed.reset();
+
+            for (BenchmarkEntity entity : container) {
+                if (entity == null) {
+                    continue;
+                }
+
+                entity.getPosition().move(random.nextInt(3) - 1,
+                    random.nextInt(3) - 1);
+                container.reposition(entity);
+            }
+
+            long indexedCount = 0;
+
+            for (BenchmarkEntity entity : container) {
+                if (entity != null) {
+                    indexedCount += container.getRegionIndex().getViewable(
+                        entity.getPosition(), viewable).size();
+                    viewable.clear();
+                }
+            }
+
+            if (timed) {
+                indexed.collect();
+            }
+
+            // Then do the same lookup by scanning every slot.
+            scan.reset();
+            long scanCount = 0;
+
+            for (BenchmarkEntity entity : container) {
+                if (entity == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < container.getCapacity(); i++) {
+                    BenchmarkEntity other = container.get(i);
+
+                    if (other != null && other.getPosition().isViewableFrom(
+                        entity.getPosition())) {
+                        scanCount++;
+                    }
+                }
+            }
+
+            if (timed) {
+                scan.collect();
+            }
+
+            // Both lookups must find exactly the same entities.
+            if (scanCount != indexedCount) {
+                throw new IllegalStateException("Index found " + indexedCount
+                    + " entities, scan found " + scanCount);
+            }
+        }
+
+        scan.write(TimeUnit.MICROSECONDS);
+        indexed.write(TimeUnit.MICROSECONDS);
+    }
+
+    private RegionIndexBenchmark() {}
+}
@@ -5,6 +5,10 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import com.asteria.engine.TickRecorder.Phase;
+import com.asteria.engine.net.BufferPool;
+import com.asteria.engine.net.LoginPipeline;
+import com.asteria.engine.net.PacketCapture;
 import com.asteria.engine.net.ServerEngine;
 import com.asteria.engine.task.TaskManager;
 import com.asteria.world.World;
@@ -43,21 +47,38 @@ public final class GameEngine implements Runnable {
     @Override
     public void run() {
         try {
+            TickRecorder.begin();
+
+            // Admit all of the logins completed since the last cycle.
+            LoginPipeline.tick();
+            TickRecorder.mark(Phase.LOGIN);
 
             // Handle all cycle-based tasks.
             TaskManager.tick();
+            TickRecorder.mark(Phase.TASKS);
 
             // Handle all networking events.
             ServerEngine.tick();
+            TickRecorder.mark(Phase.NETWORK);
 
             // Handle processing for entities.
             World.tick();
+
+            // Record the buffers allocated during this cycle.
+            BufferPool.tick();
+
+            // Append the packets captured during this cycle.
+            PacketCapture.tick();
         } catch (Exception e) {
 
             // Exceptions should never be thrown this far up, but if somehow
             // they are then we print the error and save all online players.
             e.printStackTrace();
             World.savePlayers();
+        } finally {
+
+            // Always record the cycle, especially the ones that failed.
+            TickRecorder.end();
         }
     }
 
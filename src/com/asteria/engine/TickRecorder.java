@@ -0,0 +1,286 @@
+package com.asteria.engine;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.asteria.util.Statistic;
+import com.asteria.world.World;
+
+/**
+ * A flight recorder that times every phase of every game tick, and keeps the
+ * timings of the last {@link #HISTORY_SIZE} ticks in memory. The slowest
+ * tasks, packets and players of the current tick are sampled as well, and when
+ * a tick goes over {@link #TICK_BUDGET} a report is written to
+ * <code>./benchmarks/slow-ticks.txt</code>. This recorder should only ever be
+ * used from the game thread, and doesn't allocate anything unless a report is
+ * written.
+ *
+ * @author lare96
+ */
+public final class TickRecorder {
+
+    /** A logger for printing information. */
+    private static Logger logger = Logger.getLogger(TickRecorder.class
+        .getSimpleName());
+
+    /** The amount of ticks kept in memory. */
+    public static final int HISTORY_SIZE = 100;
+
+    /** The time in milliseconds a tick can take before it gets reported. */
+    public static final int TICK_BUDGET = 200;
+
+    /** The amount of the slowest samples kept for each kind of sample. */
+    public static final int SAMPLE_SIZE = 5;
+
+    /**
+     * The phases of a game tick, in the order they're carried out.
+     *
+     * @author lare96
+     */
+    public enum Phase {
+        LOGIN,
+        TASKS,
+        NETWORK,
+        PULSE,
+        UPDATE,
+        RESET,
+        FLUSH
+    }
+
+    /**
+     * The kinds of work that can be sampled during a tick.
+     *
+     * @author lare96
+     */
+    public enum Sample {
+        TASK,
+        PACKET,
+        PLAYER
+    }
+
+    /** The time spent in each phase of the last ticks, in nanoseconds. */
+    private static final long[][] history = new long[HISTORY_SIZE][Phase
+        .values().length];
+
+    /** The labels of the slowest samples of this tick. */
+    private static final Object[][] sampleLabels = new Object[Sample
+        .values().length][SAMPLE_SIZE];
+
+    /** The times of the slowest samples of this tick, in nanoseconds. */
+    private static final long[][] sampleTimes = new long[Sample
+        .values().length][SAMPLE_SIZE];
+
+    /** The time taken by every tick. */
+    private static final Statistic tickTime = new Statistic("Tick time", "us");
+
+    /** The number of the tick being recorded, as counted by the world. */
+    private static long tick;
+
+    /** The time the last finished tick took, in nanoseconds. */
+    private static long lastTickTime;
+
+    /** The time the current tick was started, in nanoseconds. */
+    private static long tickStart;
+
+    /** The time the last phase was finished, in nanoseconds. */
+    private static long lastMark;
+
+    /** The phase timings of the current tick. */
+    private static long[] current = history[0];
+
+    /** Starts recording a new tick. This should be called before any phase. */
+    public static void begin() {
+        tick = World.getTick();
+        int index = (int) (tick % HISTORY_SIZE);
+        current = history[index];
+
+        for (int i = 0; i < current.length; i++) {
+            current[i] = 0;
+        }
+        for (int i = 0; i < sampleTimes.length; i++) {
+            for (int j = 0; j < SAMPLE_SIZE; j++) {
+                sampleLabels[i][j] = null;
+                sampleTimes[i][j] = 0;
+            }
+        }
+        tickStart = lastMark = System.nanoTime();
+    }
+
+    /**
+     * Records the time since the last phase was finished, or since the tick
+     * was started, as time spent in the argued phase.
+     *
+     * @param phase
+     *            the phase that was just finished.
+     */
+    public static void mark(Phase phase) {
+        long now = System.nanoTime();
+        current[phase.ordinal()] += now - lastMark;
+        lastMark = now;
+    }
+
+    /**
+     * Offers a sample of work done during this tick. The sample is only kept
+     * if it's one of the slowest of its kind so far.
+     *
+     * @param sample
+     *            the kind of work that was sampled.
+     * @param label
+     *            what did the work, such as a player or the class of a task.
+     * @param time
+     *            the time the work took, in nanoseconds.
+     */
+    public static void sample(Sample sample, Object label, long time) {
+        long[] times = sampleTimes[sample.ordinal()];
+        int fastest = 0;
+
+        for (int i = 1; i < SAMPLE_SIZE; i++) {
+            if (times[i] < times[fastest]) {
+                fastest = i;
+            }
+        }
+
+        if (time > times[fastest]) {
+            times[fastest] = time;
+            sampleLabels[sample.ordinal()][fastest] = label;
+        }
+    }
+
+    /**
+     * Finishes recording the current tick, and writes a report if the tick
+     * went over budget.
+     */
+    public static void end() {
+        long elapsed = System.nanoTime() - tickStart;
+        tickTime.record(elapsed / 1000);
+        lastTickTime = elapsed;
+
+        if (elapsed > TimeUnit.MILLISECONDS.toNanos(TICK_BUDGET)) {
+            final String report = report(elapsed);
+            logger.warning("Tick " + (tick) + " took " + TimeUnit
+                .NANOSECONDS.toMillis(elapsed) + "ms, writing a report.");
+
+            // No use writing the report on the game thread.
+            GameEngine.getServiceExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try (FileWriter writer = new FileWriter(new File(
+                        "./benchmarks/slow-ticks.txt"), true)) {
+                        writer.write(report);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds the report for the current tick.
+     *
+     * @param elapsed
+     *            the time the current tick took, in nanoseconds.
+     * @return the report.
+     */
+    private static String report(long elapsed) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[tick ").append(tick).append("] ").append(new Date())
+            .append("\n");
+        sb.append("[tick ").append(tick).append("] Took ").append(
+            micros(elapsed)).append("us of a ").append(TICK_BUDGET).append(
+            "ms budget.\n");
+
+        // The time spent in each phase, along with the recent history.
+        int ticks = (int) Math.min(tick + 1, HISTORY_SIZE);
+
+        for (Phase phase : Phase.values()) {
+            long total = 0, max = 0;
+
+            for (int i = 0; i < ticks; i++) {
+                total += history[i][phase.ordinal()];
+                max = Math.max(max, history[i][phase.ordinal()]);
+            }
+            sb.append("[tick ").append(tick).append("] ").append(
+                phase.name()).append(": ").append(
+                micros(current[phase.ordinal()])).append("us (last ").append(
+                ticks).append(" ticks: avg= ").append(micros(total / ticks))
+                .append("us, max= ").append(micros(max)).append("us)\n");
+        }
+
+        // Then the slowest samples of each kind, slowest first.
+        for (Sample sample : Sample.values()) {
+            long[] times = sampleTimes[sample.ordinal()].clone();
+            Object[] labels = sampleLabels[sample.ordinal()].clone();
+            sb.append("[tick ").append(tick).append("] Slowest ").append(
+                sample.name()).append(":\n");
+
+            for (int i = 0; i < SAMPLE_SIZE; i++) {
+                int slowest = i;
+
+                for (int j = i + 1; j < SAMPLE_SIZE; j++) {
+                    if (times[j] > times[slowest]) {
+                        slowest = j;
+                    }
+                }
+
+                if (labels[slowest] == null) {
+                    break;
+                }
+
+                sb.append("    ").append(micros(times[slowest])).append(
+                    "us - ").append(describe(labels[slowest])).append("\n");
+                times[slowest] = times[i];
+                labels[slowest] = labels[i];
+            }
+        }
+        sb.append("\n\n");
+        return sb.toString();
+    }
+
+    /**
+     * Describes the argued sample label. Classes are described by their name,
+     * since most tasks are anonymous and wouldn't have a simple name.
+     *
+     * @param label
+     *            the label to describe.
+     * @return the description of the label.
+     */
+    private static String describe(Object label) {
+        return label instanceof Class ? ((Class<?>) label).getName() : label
+            .toString();
+    }
+
+    /**
+     * Converts the argued nanoseconds to microseconds.
+     *
+     * @param nanos
+     *            the nanoseconds to convert.
+     * @return the converted microseconds.
+     */
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Gets the time taken by every tick.
+     *
+     * @return the tick time.
+     */
+    public static Statistic getTickTime() {
+        return tickTime;
+    }
+
+    /**
+     * Gets the time the last finished tick took.
+     *
+     * @return the last tick time, in milliseconds.
+     */
+    public static long getLastTickTime() {
+        return TimeUnit.NANOSECONDS.toMillis(lastTickTime);
+    }
+
+    private TickRecorder() {}
+}
@@ -0,0 +1,256 @@
+package com.asteria.engine.net;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A list of banned IPv4 hosts and ranges of hosts. Entries are written as
+ * either a single address, such as <code>10.0.0.1</code>, or a range in CIDR
+ * notation, such as <code>10.0.0.0/8</code>.
+ * <p>
+ * Entries are stored in a prefix trie with two levels. The first level is
+ * indexed directly by the first sixteen bits of an address, and ranges at
+ * least that wide are spread across every slot they cover. Every slot points
+ * to a sorted array of the non-overlapping ranges of the last sixteen bits
+ * that are banned, which is binary searched. A lookup only ever touches the
+ * first level and a single small array, which is much friendlier to the cache
+ * than walking a node for every bit.
+ * <p>
+ * Once published, nothing in the trie is modified again. Adding entries
+ * copies the first level and the arrays of the slots that changed, then swaps
+ * in the new first level, so lookups never have to lock.
+ *
+ * @author lare96
+ */
+public final class BanList {
+
+    /** The ranges of a slot where every address is banned. */
+    private static final int[] FULL = { pack(0, 0xffff) };
+
+    /** The first level of the trie, indexed by the first sixteen bits. */
+    private volatile int[][] slots = new int[1 << 16][];
+
+    /** The amount of entries added to this list. */
+    private volatile int size;
+
+    /**
+     * Determines if the argued address is banned. Only IPv4 addresses can be
+     * banned, this doesn't allocate anything.
+     *
+     * @param address
+     *            the address to check.
+     * @return true if the address is banned.
+     */
+    public boolean contains(InetAddress address) {
+
+        // The hash code of an IPv4 address is the address itself.
+        return address instanceof Inet4Address && contains(address
+            .hashCode());
+    }
+
+    /**
+     * Determines if the argued IPv4 address is banned.
+     *
+     * @param address
+     *            the address to check.
+     * @return true if the address is banned.
+     */
+    public boolean contains(int address) {
+        int[] ranges = slots[address >>> 16];
+
+        if (ranges == null) {
+            return false;
+        }
+
+        int low = address & 0xffff;
+        int from = 0, to = ranges.length - 1;
+
+        while (from <= to) {
+            int middle = (from + to) >>> 1;
+
+            if (low < ranges[middle] >>> 16) {
+                to = middle - 1;
+            } else if (low > (ranges[middle] & 0xffff)) {
+                from = middle + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds an entry to this list.
+     *
+     * @param entry
+     *            the single address or range in CIDR notation.
+     * @return <code>true</code> if the entry was added, <code>false</code> if
+     *         it isn't a valid IPv4 address or range.
+     */
+    public boolean add(String entry) {
+        return addAll(Collections.singleton(entry)) == 1;
+    }
+
+    /**
+     * Adds every valid entry in the argued collection to this list at once,
+     * so the first level of the trie only has to be copied a single time.
+     *
+     * @param entries
+     *            the single addresses and ranges in CIDR notation.
+     * @return the amount of entries that were valid and added.
+     */
+    public synchronized int addAll(Collection<String> entries) {
+        int[][] slots = this.slots.clone();
+        int added = 0;
+
+        for (String entry : entries) {
+            long range = parse(entry);
+
+            if (range == -1) {
+                continue;
+            }
+
+            int address = (int) (range >>> 8);
+            int length = (int) (range & 0xff);
+
+            // Wide ranges ban every address in the slots they cover.
+            if (length <= 16) {
+                int count = 1 << (16 - length);
+                int first = (address >>> 16) & -count;
+                Arrays.fill(slots, first, first + count, FULL);
+            } else {
+                int slot = address >>> 16;
+                int start = address & 0xffff & -(1 << (32 - length));
+                slots[slot] = insert(slots[slot], start, start + (1 << (32
+                    - length)) - 1);
+            }
+            added++;
+        }
+
+        this.slots = slots;
+        size += added;
+        return added;
+    }
+
+    /**
+     * Creates a copy of the argued ranges with another range added, merging
+     * every range it overlaps or touches.
+     *
+     * @param ranges
+     *            the sorted ranges, or <code>null</code> if there are none.
+     * @param start
+     *            the first value of the range to add.
+     * @param end
+     *            the last value of the range to add.
+     * @return the new sorted ranges.
+     */
+    private static int[] insert(int[] ranges, int start, int end) {
+        if (ranges == null) {
+            return new int[] { pack(start, end) };
+        }
+
+        int[] merged = new int[ranges.length + 1];
+        int size = 0;
+        boolean placed = false;
+
+        for (int range : ranges) {
+            int from = range >>> 16, to = range & 0xffff;
+
+            if (to + 1 < start) {
+                merged[size++] = range;
+            } else if (from > end + 1) {
+                if (!placed) {
+                    merged[size++] = pack(start, end);
+                    placed = true;
+                }
+                merged[size++] = range;
+            } else {
+                start = Math.min(start, from);
+                end = Math.max(end, to);
+            }
+        }
+
+        if (!placed) {
+            merged[size++] = pack(start, end);
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Packs the first and last value of a range into an <code>int</code>.
+     *
+     * @param start
+     *            the first value of the range.
+     * @param end
+     *            the last value of the range.
+     * @return the packed range.
+     */
+    private static int pack(int start, int end) {
+        return (start << 16) | end;
+    }
+
+    /**
+     * Determines if the argued entry is a valid single address or range.
+     *
+     * @param entry
+     *            the entry to check.
+     * @return true if the entry is valid.
+     */
+    public static boolean isValid(String entry) {
+        return parse(entry) != -1;
+    }
+
+    /**
+     * Parses a single address or range written in CIDR notation.
+     *
+     * @param entry
+     *            the entry to parse.
+     * @return the address shifted left by eight bits and combined with the
+     *         length of the prefix, or <tt>-1</tt> if it isn't valid.
+     */
+    private static long parse(String entry) {
+        int split = entry.indexOf('/');
+        String[] octets = (split == -1 ? entry : entry.substring(0, split))
+            .trim().split("\\.");
+        long address = 0;
+        int length = 32;
+
+        if (octets.length != 4) {
+            return -1;
+        }
+
+        try {
+            for (String octet : octets) {
+                int value = Integer.parseInt(octet);
+
+                if (value < 0 || value > 255) {
+                    return -1;
+                }
+                address = (address << 8) | value;
+            }
+
+            if (split != -1) {
+                length = Integer.parseInt(entry.substring(split + 1).trim());
+            }
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        if (length < 0 || length > 32) {
+            return -1;
+        }
+        return (address << 8) | length;
+    }
+
+    /**
+     * Gets the amount of entries added to this list.
+     *
+     * @return the amount of entries.
+     */
+    public int size() {
+        return size;
+    }
+}
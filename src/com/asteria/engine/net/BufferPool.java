@@ -0,0 +1,279 @@
+package com.asteria.engine.net;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.asteria.Main;
+import com.asteria.util.Statistic;
+
+/**
+ * A pool of reusable {@link ProtocolBuffer}s that packets are encoded into.
+ * Buffers are grouped into size classes, and every thread keeps its own cache
+ * of released buffers for each size class, so the game thread and the update
+ * workers can acquire and release buffers without ever contending with each
+ * other. Once every cache has warmed up, encoding a packet does not allocate
+ * anything.
+ * <p>
+ * When {@link Main#DEBUG} is enabled, a sample of the acquired buffers are
+ * tracked, and a warning is logged with the place it was acquired whenever a
+ * tracked buffer is garbage collected without having been released.
+ *
+ * @author lare96
+ */
+public final class BufferPool {
+
+    /** A logger for printing information. */
+    private static Logger logger = Logger.getLogger(BufferPool.class
+        .getSimpleName());
+
+    /** The capacities of the buffers in each size class, smallest first. */
+    public static final int[] SIZE_CLASSES = { 64, 256, 1024, 4096, 16384 };
+
+    /** The amount of buffers each thread caches for every size class. */
+    public static final int CACHE_SIZE = 32;
+
+    /** One in this many acquired buffers is tracked for leaks when debugging. */
+    public static final int LEAK_SAMPLE_RATE = 64;
+
+    /** The caches of every thread that has used this pool. */
+    private static final List<Cache> caches = new CopyOnWriteArrayList<>();
+
+    /** The cache of the current thread. */
+    private static final ThreadLocal<Cache> cache = new ThreadLocal<Cache>() {
+        @Override
+        protected Cache initialValue() {
+            Cache cache = new Cache();
+            caches.add(cache);
+            return cache;
+        }
+    };
+
+    /** The leases currently being tracked for leaks. */
+    private static final Set<Lease> leases = Collections
+        .newSetFromMap(new ConcurrentHashMap<Lease, Boolean>());
+
+    /** The queue tracked buffers are put in once garbage collected. */
+    private static final ReferenceQueue<ProtocolBuffer> collected = new ReferenceQueue<>();
+
+    /** The amount of buffers acquired every cycle. */
+    private static final Statistic acquisitions = new Statistic(
+        "Buffers acquired", "");
+
+    /** The amount of buffers that had to be allocated every cycle. */
+    private static final Statistic allocations = new Statistic(
+        "Buffers allocated", "");
+
+    /** The total amount of buffers acquired as of the last cycle. */
+    private static long lastAcquired;
+
+    /** The total amount of buffers allocated as of the last cycle. */
+    private static long lastAllocated;
+
+    /**
+     * Acquires a cleared buffer that can hold at least the argued amount of
+     * bytes. The buffer should be released once it is no longer needed, which
+     * happens automatically when it is sent as a packet.
+     *
+     * @param size
+     *            the amount of bytes the buffer should be able to hold.
+     * @return the acquired buffer.
+     */
+    public static ProtocolBuffer acquire(int size) {
+        Cache cache = BufferPool.cache.get();
+        cache.acquired++;
+
+        // Leave room for the extra byte the buffer reserves before growing.
+        int sizeClass = sizeClass(size + 1);
+        ProtocolBuffer buffer = null;
+
+        if (sizeClass != -1 && cache.counts[sizeClass] > 0) {
+            int index = --cache.counts[sizeClass];
+            buffer = cache.buffers[sizeClass][index];
+            cache.buffers[sizeClass][index] = null;
+            buffer.clear();
+        } else {
+            cache.allocated++;
+            buffer = new ProtocolBuffer(sizeClass == -1 ? size
+                : SIZE_CLASSES[sizeClass]);
+            buffer.setPooled(true);
+        }
+
+        buffer.setLeased(true);
+
+        if (Main.DEBUG && cache.acquired % LEAK_SAMPLE_RATE == 0) {
+            Lease lease = new Lease(buffer);
+            leases.add(lease);
+            buffer.setLease(lease);
+        }
+        return buffer;
+    }
+
+    /**
+     * Releases an acquired buffer back into the cache of the current thread.
+     * The buffer must not be used after it has been released.
+     *
+     * @param buffer
+     *            the buffer to release.
+     */
+    static void release(ProtocolBuffer buffer) {
+        if (!buffer.isLeased()) {
+            throw new IllegalStateException(
+                "This buffer has already been released!");
+        }
+
+        buffer.setLeased(false);
+
+        if (buffer.getLease() != null) {
+            leases.remove(buffer.getLease());
+            buffer.getLease().clear();
+            buffer.setLease(null);
+        }
+
+        // Buffers that have grown are put back into the largest size class
+        // they can still serve, buffers that are too small are thrown away.
+        Cache cache = BufferPool.cache.get();
+        int capacity = buffer.getBuffer().capacity();
+
+        for (int i = SIZE_CLASSES.length - 1; i >= 0; i--) {
+            if (capacity >= SIZE_CLASSES[i]) {
+                if (cache.counts[i] < CACHE_SIZE) {
+                    cache.buffers[i][cache.counts[i]++] = buffer;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records that a pooled buffer had to allocate a larger backing buffer
+     * because it was acquired with too small of a size.
+     */
+    static void recordGrowth() {
+        cache.get().allocated++;
+    }
+
+    /**
+     * Records the amount of buffers acquired and allocated since the last
+     * cycle, and reports any leaked buffers. This should be called once at
+     * the end of every cycle.
+     */
+    public static void tick() {
+        long acquired = 0, allocated = 0;
+
+        for (Cache cache : caches) {
+            acquired += cache.acquired;
+            allocated += cache.allocated;
+        }
+        acquisitions.record(acquired - lastAcquired);
+        allocations.record(allocated - lastAllocated);
+        lastAcquired = acquired;
+        lastAllocated = allocated;
+
+        Lease lease;
+
+        while ((lease = (Lease) collected.poll()) != null) {
+            if (leases.remove(lease)) {
+                logger.log(Level.WARNING, "A buffer was never released!",
+                    lease.getSite());
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the smallest size class that can hold the argued
+     * amount of bytes.
+     *
+     * @param size
+     *            the amount of bytes.
+     * @return the index of the size class, or <tt>-1</tt> if the amount of
+     *         bytes is larger than every size class.
+     */
+    private static int sizeClass(int size) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (size <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the amount of buffers acquired every cycle.
+     *
+     * @return the amount of buffers acquired.
+     */
+    public static Statistic getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * Gets the amount of buffers that had to be allocated every cycle.
+     *
+     * @return the amount of buffers allocated.
+     */
+    public static Statistic getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * The buffers cached by a single thread. The counters are only ever
+     * written by the owning thread.
+     *
+     * @author lare96
+     */
+    private static final class Cache {
+
+        /** The cached buffers for every size class. */
+        private final ProtocolBuffer[][] buffers = new ProtocolBuffer[SIZE_CLASSES.length][CACHE_SIZE];
+
+        /** The amount of cached buffers for every size class. */
+        private final int[] counts = new int[SIZE_CLASSES.length];
+
+        /** The amount of buffers acquired by this thread. */
+        private volatile long acquired;
+
+        /** The amount of buffers allocated by this thread. */
+        private volatile long allocated;
+    }
+
+    /**
+     * A tracked buffer that has been acquired but not yet released.
+     *
+     * @author lare96
+     */
+    static final class Lease extends WeakReference<ProtocolBuffer> {
+
+        /** Where the buffer was acquired. */
+        private final Throwable site;
+
+        /**
+         * Create a new {@link Lease}.
+         *
+         * @param buffer
+         *            the buffer being tracked.
+         */
+        public Lease(ProtocolBuffer buffer) {
+            super(buffer, collected);
+            this.site = new Throwable("Acquired by " + Thread.currentThread()
+                .getName());
+        }
+
+        /**
+         * Gets where the buffer was acquired.
+         *
+         * @return the acquisition site.
+         */
+        public Throwable getSite() {
+            return site;
+        }
+    }
+
+    private BufferPool() {}
+}
@@ -2,19 +2,22 @@ package com.asteria.engine.net;
 
 import java.io.File;
 import java.io.FileWriter;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Map;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Scanner;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
+import com.asteria.Main;
 import com.asteria.engine.GameEngine;
 
 /**
  * A static gateway type class that is used to limit the maximum amount of
- * connections per host.
+ * connections per host, and the speed at which a host can connect by limiting
+ * the maximum amount of connections they can make in a certain time interval.
  * 
  * @author blakeman8192
  * @author lare96
@@ -28,109 +31,162 @@ public class HostGateway {
     /** The maximum amount of connections from any host that isn't localhost. */
     public static final int MAX_CONNECTIONS_PER_HOST = 1;
 
-    /** Used to keep track of hosts and their amount of connections. */
-    private static Map<String, Integer> hostMap = new ConcurrentHashMap<>();
+    /**
+     * The maximum amount of connections allowed per
+     * <code>THROTTLE_TIME_INTERVAL_MILLISECONDS</code> for a single host.
+     */
+    public static final int AMOUNT_OF_CONNECTIONS_PER_INTERVAL = 1;
+
+    /** The amount of time the host must wait to connect in intervals. */
+    public static final int THROTTLE_TIME_INTERVAL_MILLISECONDS = 1000;
+
+    /** The maximum amount of hosts that can be tracked at once. */
+    public static final int MAX_TRACKED_HOSTS = 16384;
+
+    /** Used to keep track of hosts, their connections and attempts. */
+    private static HostTable hosts = new HostTable(MAX_TRACKED_HOSTS,
+            MAX_CONNECTIONS_PER_HOST, AMOUNT_OF_CONNECTIONS_PER_INTERVAL,
+            THROTTLE_TIME_INTERVAL_MILLISECONDS);
+
+    /** The amount of connections that have been rejected. */
+    private static int rejected;
+
+    /** The file that banned hosts are loaded from and saved to. */
+    public static final String BANNED_HOSTS_FILE = "./data/ip_ban_list.txt";
 
-    /** Used to keep track of banned hosts. */
-    private static Set<String> bannedHosts = Collections
-            .synchronizedSet(new HashSet<String>());
+    /** Used to keep track of banned hosts and ranges of hosts. */
+    private static BanList bannedHosts = new BanList();
+
+    /** The banned hosts waiting to be saved to the file. */
+    private static Queue<String> unsavedHosts = new ConcurrentLinkedQueue<>();
+
+    /** If the banned hosts are currently being saved to the file. */
+    private static AtomicBoolean saving = new AtomicBoolean();
 
     /**
-     * Checks the host into the gateway.
+     * Checks the host into the gateway. This doesn't allocate anything, so
+     * floods of connections can be turned away cheaply.
      * 
-     * @param host
-     *            the host that needs to be checked.
-     * @return true if the host can connect, false if they have reached or
-     *         surpassed the maximum amount of connections.
+     * @param address
+     *            the address of the host that needs to be checked.
+     * @return true if the host can connect, false if they are connecting too
+     *         fast or have reached the maximum amount of connections.
      */
-    public static boolean enter(String host) {
+    public static synchronized boolean enter(InetAddress address) {
 
         // If the host is coming from the hosting computer we don't need to
         // check it.
-        if (host.equals("127.0.0.1") || host.equals("localhost")) {
-            logger.info("Session request from " + host + "<unlimited> accepted.");
+        if (address.isLoopbackAddress()) {
             return true;
         }
 
-        // Makes sure this host is not connecting too fast.
-        if (!HostThrottler.throttleHost(host)) {
-            return false;
-        }
+        HostTable.Result result = hosts.enter(key(address), System
+                .currentTimeMillis());
 
-        // Retrieve the amount of connections this host has.
-        Integer amount = hostMap.put(host, 1);
+        if (result != HostTable.Result.ACCEPTED) {
+            rejected++;
 
-        // If the host was not in the map, they're clear to go.
-        if (amount == null) {
-            logger.info("Session request from " + host + "<1> accepted.");
-            return true;
-        }
-
-        // If they've reached or surpassed the connection limit, reject the
-        // host.
-        if (amount >= MAX_CONNECTIONS_PER_HOST) {
-            logger.warning("Session request from " + host + "<" + amount + "> over connection limit, rejected.");
+            if (Main.DEBUG) {
+                logger.warning("Session request from " + address + " "
+                        + result + ", rejected.");
+            }
             return false;
         }
-
-        // Otherwise, replace the key with the next value if it was present.
-        hostMap.put(host, amount + 1);
-        logger.info("Session request from " + host + "<" + hostMap.get(host) + "> accepted.");
         return true;
     }
 
     /**
      * Unchecks the host from the gateway.
      * 
-     * @param host
-     *            the host that needs to be unchecked.
+     * @param address
+     *            the address of the host that needs to be unchecked.
      */
-    public static void exit(String host) {
+    public static synchronized void exit(InetAddress address) {
 
         // If we're connecting locally, no need to uncheck.
-        if (host.equals("127.0.0.1") || host.equals("localhost")) {
+        if (address.isLoopbackAddress()) {
             return;
         }
+        hosts.exit(key(address), System.currentTimeMillis());
+    }
 
-        // Get the amount of connections stored for the host.
-        Integer amount = hostMap.get(host);
-
-        if (amount < 1) {
-
-            // Remove the host from the map if it's below 1 connection.
-            hostMap.remove(host);
-            HostThrottler.getTimeMap().remove(host);
-            return;
-        } else if (amount > 1) {
+    /**
+     * Gets the key the argued address is tracked under. The hash code of an
+     * IPv4 address is the address itself, and IPv6 addresses are folded into
+     * an <code>int</code>.
+     * 
+     * @param address
+     *            the address to get the key of.
+     * @return the key of the address.
+     */
+    private static int key(InetAddress address) {
+        return address.hashCode();
+    }
 
-            // Otherwise decrement the amount of connections stored.
-            hostMap.put(host, amount - 1);
-        }
+    /**
+     * Determines if the argued address has been banned. This is checked as
+     * soon as a connection is accepted, and doesn't allocate anything.
+     * 
+     * @param address
+     *            the address to check.
+     * @return true if the address has been banned.
+     */
+    public static boolean isBanned(InetAddress address) {
+        return bannedHosts.contains(address);
     }
 
     /**
-     * Adds a new host to the text file of banned hosts.
+     * Bans a host or range of hosts straight away, and saves it to the text
+     * file of banned hosts in the background. Hosts banned while an earlier
+     * save is still being written are saved together afterwards.
      * 
      * @param host
-     *            the host to add to the text file.
+     *            the host, or range of hosts in CIDR notation, to ban.
+     * @return <code>true</code> if the host was banned, <code>false</code> if
+     *         it isn't a valid IPv4 address or range.
      */
-    public static void addBannedHost(final String host) {
-        GameEngine.getServiceExecutor().execute(new Runnable() {
-            @Override
-            public void run() {
-                try (FileWriter writer = new FileWriter(new File(
-                        "./data/ip_ban_list.txt"), true)) {
+    public static boolean addBannedHost(String host) {
+
+        // First add the host to the active list.
+        if (!bannedHosts.add(host)) {
+            return false;
+        }
+
+        // Then queue it to be added to the file.
+        unsavedHosts.add(host);
 
-                    // First add the host to the active list.
-                    bannedHosts.add(host);
+        if (saving.compareAndSet(false, true)) {
+            GameEngine.getServiceExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    saveBannedHosts();
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Appends every banned host that hasn't been saved yet to the text file
+     * of banned hosts, one host per line.
+     */
+    private static void saveBannedHosts() {
+        do {
+            try (FileWriter writer = new FileWriter(new File(
+                    BANNED_HOSTS_FILE), true)) {
+                String host;
 
-                    // Then add it to the file.
+                while ((host = unsavedHosts.poll()) != null) {
                     writer.write(host);
-                } catch (Exception e) {
-                    e.printStackTrace();
+                    writer.write(System.lineSeparator());
                 }
+            } catch (Exception e) {
+                e.printStackTrace();
             }
-        });
+            saving.set(false);
+
+            // Keep going if more hosts were banned after we finished.
+        } while (!unsavedHosts.isEmpty() && saving.compareAndSet(false, true));
     }
 
     /**
@@ -142,28 +198,52 @@ public class HostGateway {
      */
     public static void loadBannedHosts() throws Exception {
 
-        try (Scanner scanner = new Scanner(new File("./data/ip_ban_list.txt"))) {
+        List<String> hosts = new ArrayList<>();
+
+        try (Scanner scanner = new Scanner(new File(BANNED_HOSTS_FILE))) {
             while (scanner.hasNextLine()) {
-                bannedHosts.add(scanner.nextLine());
+                String line = scanner.nextLine().trim();
+
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                if (!BanList.isValid(line)) {
+                    logger.warning("Invalid banned host: " + line);
+                    continue;
+                }
+                hosts.add(line);
             }
         }
+
+        // Add them all at once, so the list is only copied a single time.
+        bannedHosts.addAll(hosts);
+    }
+
+    /**
+     * Gets the amount of hosts currently being tracked.
+     * 
+     * @return the amount of hosts.
+     */
+    public static synchronized int getTrackedHosts() {
+        return hosts.size();
     }
 
     /**
-     * Gets the map of connections.
+     * Gets the amount of connections that have been rejected.
      * 
-     * @return the map of connections.
+     * @return the amount of rejected connections.
      */
-    public static Map<String, Integer> getHostMap() {
-        return hostMap;
+    public static synchronized int getRejected() {
+        return rejected;
     }
 
     /**
-     * Gets the set of banned hosts.
+     * Gets the list of banned hosts.
      * 
-     * @return the set of banned hosts.
+     * @return the list of banned hosts.
      */
-    public static Set<String> getBannedHosts() {
+    public static BanList getBannedHosts() {
         return bannedHosts;
     }
 
@@ -0,0 +1,382 @@
+package com.asteria.engine.net;
+
+/**
+ * A fixed size table of the hosts that have recently connected, keyed by
+ * their IPv4 address as an <code>int</code>. Every host has a count of its
+ * open connections and of its connection attempts within the current
+ * throttle interval, all kept in parallel primitive arrays, so tracking a
+ * host never allocates anything.
+ * <p>
+ * Hosts without any open connections are scheduled on a hashed time wheel to
+ * be removed once their throttle interval is over, and the wheel is advanced
+ * every time the table is used. This means a flood of connections can only
+ * ever take up as many entries as there are hosts that connected within the
+ * last interval, up to the capacity of the table. This table is not thread
+ * safe, and should only be used while holding a lock.
+ *
+ * @author lare96
+ */
+final class HostTable {
+
+    /**
+     * The results of a host attempting to connect.
+     *
+     * @author lare96
+     */
+    public enum Result {
+        ACCEPTED,
+        TOO_FAST,
+        TOO_MANY,
+        FULL
+    }
+
+    /** The amount of milliseconds every slot on the time wheel covers. */
+    private static final int WHEEL_RESOLUTION = 100;
+
+    /** The amount of slots on the time wheel, a power of two. */
+    private static final int WHEEL_SLOTS = 32;
+
+    /** The index used for no entry. */
+    private static final int NONE = -1;
+
+    /** The most connections a single host can have open. */
+    private final int maxConnections;
+
+    /** The most connection attempts a single host can make every interval. */
+    private final int maxAttempts;
+
+    /** The length of the throttle interval in milliseconds. */
+    private final int interval;
+
+    /** The first entry in every hash bucket. */
+    private final int[] buckets;
+
+    /** The address of every entry. */
+    private final int[] keys;
+
+    /** The next entry in the same hash bucket, or the next free entry. */
+    private final int[] next;
+
+    /** The amount of open connections of every entry. */
+    private final int[] connections;
+
+    /** The amount of attempts made during the interval of every entry. */
+    private final int[] attempts;
+
+    /** The time the current interval of every entry started. */
+    private final long[] windowStart;
+
+    /** The time every scheduled entry should be removed. */
+    private final long[] deadline;
+
+    /** The slot on the time wheel of every entry, or {@link #NONE}. */
+    private final int[] wheelSlot;
+
+    /** The next entry in the same slot on the time wheel. */
+    private final int[] wheelNext;
+
+    /** The previous entry in the same slot on the time wheel. */
+    private final int[] wheelPrevious;
+
+    /** The first entry in every slot on the time wheel. */
+    private final int[] wheel = new int[WHEEL_SLOTS];
+
+    /** The first entry that isn't being used. */
+    private int free;
+
+    /** The amount of entries being used. */
+    private int size;
+
+    /** The time wheel tick that will be expired next. */
+    private long wheelTick = -1;
+
+    /**
+     * Create a new {@link HostTable}.
+     *
+     * @param capacity
+     *            the most hosts this table can track, a power of two.
+     * @param maxConnections
+     *            the most connections a single host can have open.
+     * @param maxAttempts
+     *            the most connection attempts a single host can make every
+     *            interval.
+     * @param interval
+     *            the length of the throttle interval in milliseconds, no
+     *            longer than the time wheel.
+     */
+    public HostTable(int capacity, int maxConnections, int maxAttempts,
+        int interval) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                "The capacity must be a power of two!");
+        }
+        if (interval >= WHEEL_RESOLUTION * (WHEEL_SLOTS - 1)) {
+            throw new IllegalArgumentException(
+                "The interval is longer than the time wheel!");
+        }
+
+        this.maxConnections = maxConnections;
+        this.maxAttempts = maxAttempts;
+        this.interval = interval;
+        buckets = new int[capacity];
+        keys = new int[capacity];
+        next = new int[capacity];
+        connections = new int[capacity];
+        attempts = new int[capacity];
+        windowStart = new long[capacity];
+        deadline = new long[capacity];
+        wheelSlot = new int[capacity];
+        wheelNext = new int[capacity];
+        wheelPrevious = new int[capacity];
+
+        // Chain every entry into the free list.
+        for (int i = 0; i < capacity; i++) {
+            buckets[i] = NONE;
+            next[i] = i + 1 == capacity ? NONE : i + 1;
+            wheelSlot[i] = NONE;
+        }
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel[i] = NONE;
+        }
+    }
+
+    /**
+     * Attempts to open a connection for the argued host.
+     *
+     * @param key
+     *            the address of the host.
+     * @param now
+     *            the current time in milliseconds.
+     * @return the result of the attempt.
+     */
+    public Result enter(int key, long now) {
+        expire(now);
+        int entry = find(key);
+
+        if (entry == NONE) {
+            if ((entry = add(key)) == NONE) {
+                return Result.FULL;
+            }
+            windowStart[entry] = now;
+        }
+
+        // Start a new interval if the last one is over.
+        if (now - windowStart[entry] >= interval) {
+            windowStart[entry] = now;
+            attempts[entry] = 0;
+        }
+
+        Result result = Result.ACCEPTED;
+
+        // Rejected attempts still count towards the interval.
+        if (attempts[entry] >= maxAttempts) {
+            result = Result.TOO_FAST;
+        } else {
+            attempts[entry]++;
+
+            if (connections[entry] >= maxConnections) {
+                result = Result.TOO_MANY;
+            } else {
+                connections[entry]++;
+            }
+        }
+
+        if (connections[entry] == 0) {
+            schedule(entry, windowStart[entry] + interval);
+        } else {
+            unschedule(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Closes a connection for the argued host.
+     *
+     * @param key
+     *            the address of the host.
+     * @param now
+     *            the current time in milliseconds.
+     */
+    public void exit(int key, long now) {
+        expire(now);
+        int entry = find(key);
+
+        if (entry == NONE || connections[entry] == 0) {
+            return;
+        }
+
+        if (--connections[entry] == 0) {
+            schedule(entry, Math.max(now, windowStart[entry] + interval));
+        }
+    }
+
+    /**
+     * Removes every entry without open connections whose interval is over,
+     * by advancing the time wheel up to the argued time.
+     *
+     * @param now
+     *            the current time in milliseconds.
+     */
+    private void expire(long now) {
+        long tick = now / WHEEL_RESOLUTION;
+
+        if (wheelTick == -1) {
+            wheelTick = tick;
+            return;
+        }
+
+        // Only expire the slots that are completely in the past.
+        long slots = Math.min(tick - wheelTick, WHEEL_SLOTS);
+
+        for (long i = 0; i < slots; i++) {
+            int entry = wheel[(int) ((wheelTick + i) & (WHEEL_SLOTS - 1))];
+
+            while (entry != NONE) {
+                int following = wheelNext[entry];
+
+                if (connections[entry] == 0 && deadline[entry] < now) {
+                    remove(entry);
+                }
+                entry = following;
+            }
+        }
+        wheelTick = Math.max(wheelTick, tick);
+    }
+
+    /**
+     * Schedules the argued entry to be removed at the argued time.
+     *
+     * @param entry
+     *            the entry to schedule.
+     * @param time
+     *            the time to remove the entry at.
+     */
+    private void schedule(int entry, long time) {
+        unschedule(entry);
+
+        // Slots that have already been expired won't come around again until
+        // the next turn of the wheel, so use the next slot instead.
+        long tick = Math.max(time / WHEEL_RESOLUTION, wheelTick);
+        int slot = (int) (tick & (WHEEL_SLOTS - 1));
+        deadline[entry] = time;
+        wheelSlot[entry] = slot;
+        wheelPrevious[entry] = NONE;
+        wheelNext[entry] = wheel[slot];
+
+        if (wheel[slot] != NONE) {
+            wheelPrevious[wheel[slot]] = entry;
+        }
+        wheel[slot] = entry;
+    }
+
+    /**
+     * Removes the argued entry from the time wheel, if it's scheduled.
+     *
+     * @param entry
+     *            the entry to unschedule.
+     */
+    private void unschedule(int entry) {
+        int slot = wheelSlot[entry];
+
+        if (slot == NONE) {
+            return;
+        }
+
+        if (wheelPrevious[entry] == NONE) {
+            wheel[slot] = wheelNext[entry];
+        } else {
+            wheelNext[wheelPrevious[entry]] = wheelNext[entry];
+        }
+        if (wheelNext[entry] != NONE) {
+            wheelPrevious[wheelNext[entry]] = wheelPrevious[entry];
+        }
+        wheelSlot[entry] = NONE;
+    }
+
+    /**
+     * Finds the entry of the argued host.
+     *
+     * @param key
+     *            the address of the host.
+     * @return the entry, or {@link #NONE} if the host isn't being tracked.
+     */
+    private int find(int key) {
+        int entry = buckets[bucket(key)];
+
+        while (entry != NONE && keys[entry] != key) {
+            entry = next[entry];
+        }
+        return entry;
+    }
+
+    /**
+     * Takes a free entry for the argued host.
+     *
+     * @param key
+     *            the address of the host.
+     * @return the entry, or {@link #NONE} if this table is full.
+     */
+    private int add(int key) {
+        int entry = free;
+
+        if (entry == NONE) {
+            return NONE;
+        }
+
+        int bucket = bucket(key);
+        free = next[entry];
+        keys[entry] = key;
+        connections[entry] = 0;
+        attempts[entry] = 0;
+        next[entry] = buckets[bucket];
+        buckets[bucket] = entry;
+        size++;
+        return entry;
+    }
+
+    /**
+     * Stops tracking the host of the argued entry, and frees the entry.
+     *
+     * @param entry
+     *            the entry to free.
+     */
+    private void remove(int entry) {
+        unschedule(entry);
+        int bucket = bucket(keys[entry]);
+
+        if (buckets[bucket] == entry) {
+            buckets[bucket] = next[entry];
+        } else {
+            int previous = buckets[bucket];
+
+            while (next[previous] != entry) {
+                previous = next[previous];
+            }
+            next[previous] = next[entry];
+        }
+
+        next[entry] = free;
+        free = entry;
+        size--;
+    }
+
+    /**
+     * Gets the hash bucket of the argued host.
+     *
+     * @param key
+     *            the address of the host.
+     * @return the hash bucket.
+     */
+    private int bucket(int key) {
+        return (key * 0x9e3779b9 >>> 16) & (buckets.length - 1);
+    }
+
+    /**
+     * Gets the amount of hosts being tracked.
+     *
+     * @return the amount of hosts.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,217 @@
+package com.asteria.engine.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A ring of the packets framed by a {@link Reactor} for a single session,
+ * waiting to be handled on the game thread. The reactor is the only thread
+ * that ever offers packets and the game thread is the only thread that ever
+ * reads them, so neither side has to lock.
+ * <p>
+ * Every packet is stored as its opcode, its length and then its payload.
+ * Payloads never cross a boundary of {@link #BLOCK_SIZE} bytes, which means
+ * they can always be read in place through a single reusable
+ * {@link ProtocolBuffer}, and that every packet keeps the same position when
+ * the ring grows. The ring starts out at {@link #INITIAL_CAPACITY} bytes and
+ * doubles whenever it runs out of space, up to {@link #MAX_CAPACITY} bytes.
+ *
+ * @author lare96
+ */
+final class InboundBuffer {
+
+    /** The size of the blocks that payloads never cross. */
+    public static final int BLOCK_SIZE = 512;
+
+    /** The amount of bytes every ring starts out with. */
+    public static final int INITIAL_CAPACITY = 1024;
+
+    /** The most bytes a ring can grow to before it's considered full. */
+    public static final int MAX_CAPACITY = 65536;
+
+    /** The backing array, its length is always a power of two. */
+    private volatile byte[] data = new byte[INITIAL_CAPACITY];
+
+    /** The position the next packet will be offered at. */
+    private volatile long writePosition;
+
+    /** The position of the next packet to be read. */
+    private volatile long readPosition;
+
+    /** The reusable buffer that payloads are read through. */
+    private ProtocolBuffer payload = new ProtocolBuffer(ByteBuffer.wrap(data));
+
+    /** The opcode of the packet at the read position. */
+    private int opcode = -1;
+
+    /** The length of the packet at the read position. */
+    private int length = -1;
+
+    /** The position the payload of the packet at the read position ends. */
+    private long end;
+
+    /**
+     * Offers a framed packet to this ring. This should only ever be called by
+     * the reactor that owns the session.
+     *
+     * @param opcode
+     *            the opcode of the packet.
+     * @param from
+     *            the buffer to copy the payload of the packet from.
+     * @param length
+     *            the length of the payload, no more than <tt>255</tt>.
+     * @return <code>true</code> if the packet was offered,
+     *         <code>false</code> if this ring is full.
+     */
+    public boolean offer(int opcode, ByteBuffer from, int length) {
+        long header = headerPosition(writePosition);
+        long start = payloadPosition(header, length);
+
+        // Grow if the packet would overwrite packets not yet read.
+        if (start + length - readPosition > data.length && !grow(start
+            + length - readPosition)) {
+            return false;
+        }
+
+        byte[] data = this.data;
+        int mask = data.length - 1;
+        data[(int) (header & mask)] = (byte) opcode;
+        data[(int) ((header + 1) & mask)] = (byte) length;
+        from.get(data, (int) (start & mask), length);
+        writePosition = start + length;
+        return true;
+    }
+
+    /**
+     * Doubles the backing array until it can hold the argued amount of bytes,
+     * copying every block that hasn't been read yet to the same position.
+     *
+     * @param required
+     *            the amount of bytes the array has to hold.
+     * @return <code>true</code> if the array has grown, <code>false</code> if
+     *         it can't grow any further.
+     */
+    private boolean grow(long required) {
+        byte[] old = data;
+        int capacity = old.length;
+
+        while (capacity < required) {
+            capacity <<= 1;
+        }
+
+        if (capacity > MAX_CAPACITY) {
+            return false;
+        }
+
+        byte[] data = new byte[capacity];
+        long write = writePosition;
+
+        for (long block = readPosition & -BLOCK_SIZE; block < write;
+            block += BLOCK_SIZE) {
+            System.arraycopy(old, (int) (block & (old.length - 1)), data,
+                (int) (block & (capacity - 1)), BLOCK_SIZE);
+        }
+        this.data = data;
+        return true;
+    }
+
+    /**
+     * Gets the opcode of the next packet to be read, without removing it.
+     * This should only ever be called by the game thread.
+     *
+     * @return the opcode, or <tt>-1</tt> if there are no packets to read.
+     */
+    public int peek() {
+        if (length != -1) {
+            return opcode;
+        }
+
+        long read = readPosition;
+
+        if (read == writePosition) {
+            return -1;
+        }
+
+        // The array has to be read after the write position, so it is at
+        // least as new as the packets that have been offered.
+        byte[] data = this.data;
+        int mask = data.length - 1;
+        long header = headerPosition(read);
+        opcode = data[(int) (header & mask)] & 0xff;
+        length = data[(int) ((header + 1) & mask)] & 0xff;
+        long start = payloadPosition(header, length);
+        end = start + length;
+
+        if (payload.getBuffer().array() != data) {
+            payload = new ProtocolBuffer(ByteBuffer.wrap(data));
+        }
+        payload.getBuffer().limit((int) (start & mask) + length);
+        payload.getBuffer().position((int) (start & mask));
+        return opcode;
+    }
+
+    /**
+     * Gets the length of the payload of the next packet to be read. This
+     * should only be called after {@link #peek()} has found a packet.
+     *
+     * @return the length of the payload.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the buffer that the payload of the next packet to be read can be
+     * read from in place. This should only be called after {@link #peek()}
+     * has found a packet, and the buffer must not be used after the packet
+     * has been polled.
+     *
+     * @return the payload of the packet.
+     */
+    public ProtocolBuffer getPayload() {
+        return payload;
+    }
+
+    /**
+     * Removes the next packet to be read, freeing its space for the reactor.
+     * This should only be called after {@link #peek()} has found a packet.
+     */
+    public void poll() {
+        readPosition = end;
+        length = -1;
+        opcode = -1;
+    }
+
+    /**
+     * Gets the position the header of a packet offered at the argued position
+     * is written to, skipping to the next block if there isn't room for it.
+     *
+     * @param position
+     *            the position the packet is offered at.
+     * @return the position of the header.
+     */
+    private static long headerPosition(long position) {
+        if (BLOCK_SIZE - (position & (BLOCK_SIZE - 1)) < 2) {
+            return (position | (BLOCK_SIZE - 1)) + 1;
+        }
+        return position;
+    }
+
+    /**
+     * Gets the position the payload following the argued header is written
+     * to, skipping to the next block if it would cross into it.
+     *
+     * @param header
+     *            the position of the header.
+     * @param length
+     *            the length of the payload.
+     * @return the position of the payload.
+     */
+    private static long payloadPosition(long header, int length) {
+        long start = header + 2;
+
+        if ((start & (BLOCK_SIZE - 1)) + length > BLOCK_SIZE) {
+            return (start | (BLOCK_SIZE - 1)) + 1;
+        }
+        return start;
+    }
+}
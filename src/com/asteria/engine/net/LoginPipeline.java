@@ -0,0 +1,326 @@
+package com.asteria.engine.net;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.asteria.engine.ThreadPoolFactory;
+import com.asteria.engine.TickRecorder;
+import com.asteria.util.Statistic;
+import com.asteria.util.Utility;
+
+/**
+ * A pipeline that carries out the expensive parts of logging in away from the
+ * game thread. Login blocks are decoded, authenticated, and have their
+ * character files loaded on a fixed amount of login threads. Completed logins
+ * are then queued and admitted into the world by the game thread in the order
+ * they were completed, but only so many are admitted every cycle. The amount
+ * is lowered while cycles are running slow and raised back up while they
+ * aren't, so a flood of logins after a restart is spread across many cycles.
+ * Logins that arrive while the pipeline is full are told to try again.
+ *
+ * @author lare96
+ */
+public final class LoginPipeline {
+
+    /** The amount of threads that will process logins. */
+    public static final int LOGIN_THREADS = 2;
+
+    /** The most logins that will be admitted in a single cycle. */
+    public static final int MAX_LOGINS_PER_TICK = 50;
+
+    /** The least logins that will be admitted in a single cycle. */
+    public static final int MIN_LOGINS_PER_TICK = 5;
+
+    /** The time in milliseconds a cycle can take before fewer are admitted. */
+    public static final int SLOW_TICK_THRESHOLD = 100;
+
+    /** The most logins that can be in the pipeline before more are refused. */
+    public static final int MAX_QUEUED_LOGINS = 500;
+
+    /** The thread pool that will process logins. */
+    private static final ThreadPoolExecutor loginExecutor = ThreadPoolFactory
+        .createThreadPool("Login-Thread", LOGIN_THREADS, Thread.NORM_PRIORITY,
+            5);
+
+    /** The logins that are waiting to be admitted by the game thread. */
+    private static final Queue<LoginRequest> completed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The amount of logins waiting in {@link #completed}, counted separately
+     * because the size of the queue is found by walking all of it.
+     */
+    private static final AtomicInteger waiting = new AtomicInteger();
+
+    /** The amount of logins currently being processed by the login threads. */
+    private static final AtomicInteger processing = new AtomicInteger();
+
+    /** The time it takes to decode the login block. */
+    private static final Statistic decodeLatency = new Statistic(
+        "Login decode", "us");
+
+    /** The time it takes to authenticate the user. */
+    private static final Statistic authenticateLatency = new Statistic(
+        "Login authenticate", "us");
+
+    /** The time it takes to load the character file. */
+    private static final Statistic loadLatency = new Statistic("Login load",
+        "us");
+
+    /** The time between a login block being received and being admitted. */
+    private static final Statistic loginLatency = new Statistic(
+        "Login latency", "ms");
+
+    /** The amount of logins in the pipeline at the start of every cycle. */
+    private static final Statistic queueDepth = new Statistic(
+        "Login queue depth", "");
+
+    /** The position in the admission queue of every completed login. */
+    private static final Statistic queuePosition = new Statistic(
+        "Login queue position", "");
+
+    /** The time completed logins wait to be admitted. */
+    private static final Statistic queueWait = new Statistic(
+        "Login queue wait", "ms");
+
+    /** The amount of logins admitted every cycle. */
+    private static final Statistic admitted = new Statistic(
+        "Logins admitted", "");
+
+    /** The amount of logins refused because the pipeline was full. */
+    private static final AtomicInteger refused = new AtomicInteger();
+
+    /** The amount of logins that can be admitted this cycle. */
+    private static int budget = MAX_LOGINS_PER_TICK;
+
+    /**
+     * Submits a login block to be processed by the login threads.
+     *
+     * @param session
+     *            the session that sent the login block.
+     * @param block
+     *            the login block.
+     */
+    public static void submit(Session session, byte[] block) {
+
+        // Tell the client to try again if too many logins are waiting.
+        if (processing.get() + waiting.get() >= MAX_QUEUED_LOGINS) {
+            refused.incrementAndGet();
+            session.refuseLogin(Utility.LOGIN_RESPONSE_PLEASE_TRY_AGAIN);
+            return;
+        }
+
+        processing.incrementAndGet();
+        loginExecutor.execute(new LoginRequest(session, block));
+    }
+
+    /**
+     * Admits as many of the completed logins as the budget for this cycle
+     * allows, oldest first. This should be called by the game thread at the
+     * start of every cycle.
+     */
+    public static void tick() {
+        queueDepth.record(processing.get() + waiting.get());
+
+        // Admit fewer logins while cycles are slow, and more while they aren't.
+        if (TickRecorder.getLastTickTime() > SLOW_TICK_THRESHOLD) {
+            budget = Math.max(MIN_LOGINS_PER_TICK, budget / 2);
+        } else {
+            budget = Math.min(MAX_LOGINS_PER_TICK, budget + 1);
+        }
+
+        int amount = 0;
+        LoginRequest request;
+
+        while (amount < budget && (request = completed.poll()) != null) {
+            waiting.decrementAndGet();
+
+            // Clients that left while waiting don't count towards the budget.
+            if (request.session.getStage() != Session.Stage.AUTHENTICATING) {
+                continue;
+            }
+
+            amount++;
+            queueWait.record((System.nanoTime() - request.queued) / 1000000);
+
+            try {
+                request.session.finishLogin(request.response);
+                loginLatency
+                    .record((System.nanoTime() - request.started) / 1000000);
+            } catch (Exception e) {
+                e.printStackTrace();
+                request.session.disconnect();
+            }
+        }
+        admitted.record(amount);
+    }
+
+    /**
+     * Gets the statistic for the time it takes to decode the login block.
+     *
+     * @return the decode latency statistic.
+     */
+    public static Statistic getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    /**
+     * Gets the statistic for the time it takes to authenticate the user.
+     *
+     * @return the authenticate latency statistic.
+     */
+    public static Statistic getAuthenticateLatency() {
+        return authenticateLatency;
+    }
+
+    /**
+     * Gets the statistic for the time it takes to load the character file.
+     *
+     * @return the load latency statistic.
+     */
+    public static Statistic getLoadLatency() {
+        return loadLatency;
+    }
+
+    /**
+     * Gets the statistic for the time between a login block being received and
+     * being admitted.
+     *
+     * @return the login latency statistic.
+     */
+    public static Statistic getLoginLatency() {
+        return loginLatency;
+    }
+
+    /**
+     * Gets the statistic for the amount of logins in the pipeline.
+     *
+     * @return the queue depth statistic.
+     */
+    public static Statistic getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the statistic for the position in the admission queue of every
+     * completed login.
+     *
+     * @return the queue position statistic.
+     */
+    public static Statistic getQueuePosition() {
+        return queuePosition;
+    }
+
+    /**
+     * Gets the statistic for the time completed logins wait to be admitted.
+     *
+     * @return the queue wait statistic.
+     */
+    public static Statistic getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Gets the statistic for the amount of logins admitted every cycle.
+     *
+     * @return the admitted statistic.
+     */
+    public static Statistic getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * Gets the amount of logins refused because the pipeline was full.
+     *
+     * @return the amount of refused logins.
+     */
+    public static int getRefused() {
+        return refused.get();
+    }
+
+    /**
+     * Gets the amount of logins that can be admitted this cycle.
+     *
+     * @return the login budget.
+     */
+    public static int getBudget() {
+        return budget;
+    }
+
+    /**
+     * A single login that passes through each stage of the pipeline on a login
+     * thread, before being queued for admission by the game thread.
+     *
+     * @author lare96
+     */
+    private static final class LoginRequest implements Runnable {
+
+        /** The session that is logging in. */
+        private final Session session;
+
+        /** The login block sent by the client. */
+        private final byte[] block;
+
+        /** The time this login was received. */
+        private final long started = System.nanoTime();
+
+        /** The time this login was queued for admission. */
+        private long queued;
+
+        /** The response code for this login. */
+        private int response = Utility.LOGIN_RESPONSE_COULD_NOT_COMPLETE_LOGIN;
+
+        /**
+         * Create a new {@link LoginRequest}.
+         *
+         * @param session
+         *            the session that is logging in.
+         * @param block
+         *            the login block sent by the client.
+         */
+        public LoginRequest(Session session, byte[] block) {
+            this.session = session;
+            this.block = block;
+        }
+
+        @Override
+        public void run() {
+            try {
+
+                // Decode the login block.
+                long time = System.nanoTime();
+                ProtocolBuffer credentials = session.decodeLoginBlock(block);
+                decodeLatency.record((System.nanoTime() - time) / 1000);
+
+                if (credentials == null) {
+                    return;
+                }
+
+                // Authenticate the user.
+                time = System.nanoTime();
+                response = session.authenticate(credentials);
+                authenticateLatency.record((System.nanoTime() - time) / 1000);
+
+                // Load the character file if the user is valid.
+                if (response == Utility.LOGIN_RESPONSE_OK) {
+                    time = System.nanoTime();
+                    response = session.loadProfile();
+                    loadLatency.record((System.nanoTime() - time) / 1000);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                response = Utility.LOGIN_RESPONSE_COULD_NOT_COMPLETE_LOGIN;
+            } finally {
+
+                // Hand the login over to the game thread.
+                queued = System.nanoTime();
+                queuePosition.record(waiting.getAndIncrement());
+                completed.add(this);
+                processing.decrementAndGet();
+            }
+        }
+    }
+
+    private LoginPipeline() {}
+}
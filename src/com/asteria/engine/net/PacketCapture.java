@@ -0,0 +1,233 @@
+package com.asteria.engine.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import com.asteria.engine.ThreadProvider;
+import com.asteria.world.World;
+import com.asteria.world.entity.player.Player;
+
+/**
+ * Records every packet that is decoded on the game thread to a binary file,
+ * so the traffic of a run can be fed back through the decoders later by the
+ * {@link PacketReplay}. A new file is created in {@link #CAPTURE_DIRECTORY}
+ * every time the server starts, and records are only ever appended to it.
+ * <p>
+ * The file starts with {@link #MAGIC} and {@link #VERSION}, followed by a
+ * record for every login, packet and logout. Every record starts with its
+ * type, the tick it happened on and the id of the session:
+ * <ul>
+ * <li>{@link #LOGIN}, followed by the username, the rights and the position
+ * the player logged in at.</li>
+ * <li>{@link #PACKET}, followed by the opcode, the length of the payload and
+ * the payload itself.</li>
+ * <li>{@link #LOGOUT}, with nothing else.</li>
+ * </ul>
+ * Records are buffered on the game thread and handed to a dedicated writer
+ * once every cycle, so capturing never blocks the game thread on the disk.
+ *
+ * @author lare96
+ */
+public final class PacketCapture {
+
+    /** If every decoded packet should be captured. */
+    public static final boolean CAPTURE_PACKETS = false;
+
+    /** The directory that captures are written to. */
+    public static final String CAPTURE_DIRECTORY = "./data/captures/";
+
+    /** The first four bytes of every capture. */
+    public static final int MAGIC = 0x41435054;
+
+    /** The version of the format captures are written in. */
+    public static final int VERSION = 1;
+
+    /** The type of the record written when a player logs in. */
+    public static final int LOGIN = 0;
+
+    /** The type of the record written when a packet is decoded. */
+    public static final int PACKET = 1;
+
+    /** The type of the record written when a player logs out. */
+    public static final int LOGOUT = 2;
+
+    /** A logger for printing information. */
+    private static Logger logger = Logger.getLogger(PacketCapture.class
+        .getSimpleName());
+
+    /** The records written on the game thread during the current cycle. */
+    private static final ByteArrayOutputStream pending = new ByteArrayOutputStream(
+        4096);
+
+    /** The stream used to write records into {@link #pending}. */
+    private static final DataOutputStream records = new DataOutputStream(
+        pending);
+
+    /** The thread that appends the records to the capture. */
+    private static ExecutorService writer;
+
+    /** The stream the capture is written to. */
+    private static OutputStream out;
+
+    /**
+     * Creates the capture for this run, if capturing is enabled. This should
+     * be called once on startup.
+     */
+    public static void init() {
+        if (!CAPTURE_PACKETS) {
+            return;
+        }
+
+        File file = new File(CAPTURE_DIRECTORY, System.currentTimeMillis()
+            + ".cap");
+
+        try {
+            file.getParentFile().mkdirs();
+            out = new FileOutputStream(file, true);
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            writer = Executors.newSingleThreadExecutor(new ThreadProvider(
+                "Capture-Thread", Thread.MIN_PRIORITY, false));
+            logger.info("Capturing packets to " + file + ".");
+        } catch (IOException e) {
+            logger.warning("Unable to create the capture " + file + "!");
+            out = null;
+        }
+    }
+
+    /**
+     * Determines if packets are being captured.
+     *
+     * @return <code>true</code> if packets are being captured.
+     */
+    public static boolean isCapturing() {
+        return out != null;
+    }
+
+    /**
+     * Records a player logging in. This should only be called on the game
+     * thread.
+     *
+     * @param session
+     *            the session of the player.
+     * @param player
+     *            the player that logged in.
+     */
+    public static void recordLogin(Session session, Player player) {
+        if (!isCapturing()) {
+            return;
+        }
+
+        try {
+            writeHeader(LOGIN, session);
+            records.writeUTF(player.getUsername());
+            records.writeByte(player.getRights().ordinal());
+            records.writeShort(player.getPosition().getX());
+            records.writeShort(player.getPosition().getY());
+            records.writeByte(player.getPosition().getZ());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records a packet that is about to be decoded, without moving the
+     * position of its payload. This should only be called on the game thread.
+     *
+     * @param session
+     *            the session the packet was received from.
+     * @param opcode
+     *            the opcode of the packet.
+     * @param payload
+     *            the payload of the packet.
+     */
+    public static void recordPacket(Session session, int opcode,
+        ProtocolBuffer payload) {
+        if (!isCapturing()) {
+            return;
+        }
+
+        try {
+            ByteBuffer buffer = payload.getBuffer();
+            writeHeader(PACKET, session);
+            records.writeByte(opcode);
+            records.writeByte(buffer.remaining());
+            records.write(buffer.array(), buffer.arrayOffset() + buffer
+                .position(), buffer.remaining());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records a player logging out. This should only be called on the game
+     * thread.
+     *
+     * @param session
+     *            the session of the player.
+     */
+    public static void recordLogout(Session session) {
+        if (!isCapturing()) {
+            return;
+        }
+
+        try {
+            writeHeader(LOGOUT, session);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the part every record starts with.
+     *
+     * @param type
+     *            the type of the record.
+     * @param session
+     *            the session the record is for.
+     * @throws IOException
+     *             if the record could not be written.
+     */
+    private static void writeHeader(int type, Session session)
+        throws IOException {
+        records.writeByte(type);
+        records.writeInt((int) World.getTick());
+        records.writeInt(session.getId());
+    }
+
+    /**
+     * Hands the records written during this cycle to the writer, to be
+     * appended to the capture. This should be called once at the end of every
+     * cycle.
+     */
+    public static void tick() {
+        if (!isCapturing() || pending.size() == 0) {
+            return;
+        }
+
+        final byte[] data = pending.toByteArray();
+        pending.reset();
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    out.write(data);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private PacketCapture() {}
+}
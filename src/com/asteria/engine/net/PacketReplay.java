@@ -0,0 +1,229 @@
+package com.asteria.engine.net;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.asteria.Main;
+import com.asteria.engine.net.Session.Stage;
+import com.asteria.engine.net.packet.PacketDecoder;
+import com.asteria.engine.task.TaskManager;
+import com.asteria.util.Benchmark;
+import com.asteria.util.Statistic;
+import com.asteria.util.Utility;
+import com.asteria.world.World;
+import com.asteria.world.entity.player.Player;
+import com.asteria.world.entity.player.PlayerRights;
+import com.asteria.world.map.Position;
+
+/**
+ * A tool that feeds a capture written by the {@link PacketCapture} back
+ * through the {@link PacketDecoder}s as fast as possible, against a world
+ * without any networking. Every captured player logs in through a
+ * {@link Session} that isn't connected to anything, so everything sent to it
+ * is discarded and it's never saved.
+ * <p>
+ * The whole capture is replayed {@link #ROUNDS} times after
+ * {@link #WARMUP_ROUNDS} untimed rounds, and the time of every round is
+ * written to <code>./benchmarks/replay.txt</code> along with how long every
+ * decoder took on average. This tool takes the path of the capture as its
+ * only argument, and has to be run from the root of the project.
+ *
+ * @author lare96
+ */
+public final class PacketReplay {
+
+    /** The amount of rounds to time. */
+    private static final int ROUNDS = 10;
+
+    /** The amount of rounds to run before timing anything. */
+    private static final int WARMUP_ROUNDS = 3;
+
+    /**
+     * If the tasks and the world should be ticked between the captured
+     * cycles, so packets are decoded against the same kind of state they
+     * were captured against.
+     */
+    private static final boolean TICK_WORLD = true;
+
+    /** The time every decoder took, indexed by opcode. */
+    private static final Statistic[] decodeTime = new Statistic[256];
+
+    /** The amount of packets decoded in a single round. */
+    private static int packets;
+
+    /**
+     * The main method of this tool.
+     *
+     * @param args
+     *            the array of runtime arguments.
+     * @throws Exception
+     *             if the capture could not be replayed.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.out.println("Usage: PacketReplay <capture>");
+            return;
+        }
+
+        ByteBuffer capture = ByteBuffer.wrap(Files.readAllBytes(new File(
+            args[0]).toPath()));
+
+        if (capture.getInt() != PacketCapture.MAGIC || capture
+            .get() != PacketCapture.VERSION) {
+            throw new IllegalStateException("Not a capture: " + args[0]);
+        }
+
+        Main.loadUtilities();
+
+        // Logins and logouts would otherwise be logged every round.
+        Logger.getLogger("").setLevel(Level.WARNING);
+
+        Benchmark benchmark = new Benchmark("replay", "replay");
+
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            boolean timed = round >= WARMUP_ROUNDS;
+
+            benchmark.reset();
+            replay(capture.duplicate(), timed);
+
+            if (timed) {
+                benchmark.collect();
+            }
+        }
+
+        benchmark.write(TimeUnit.MICROSECONDS);
+
+        // Write how long every decoder took along with the rounds.
+        try (FileWriter writer = new FileWriter(new File(
+            "./benchmarks/replay.txt"), true)) {
+            writer.write("[replay] " + args[0] + ", " + packets
+                + " packets every round.\n");
+
+            for (Statistic statistic : decodeTime) {
+                if (statistic != null) {
+                    writer.write("[replay] " + statistic + "\n");
+                }
+            }
+            writer.write("\n\n");
+        }
+
+        long average = 0;
+
+        for (long time : benchmark.getBenchmarks()) {
+            average += time / ROUNDS;
+        }
+        System.out.println("Replayed " + packets + " packets in " + TimeUnit
+            .NANOSECONDS.toMicros(average) + "us on average.");
+    }
+
+    /**
+     * Replays every record of the argued capture once.
+     *
+     * @param capture
+     *            the records of the capture, after the header.
+     * @param timed
+     *            if the time taken by every decoder should be recorded.
+     */
+    private static void replay(ByteBuffer capture, boolean timed) {
+        Map<Integer, Session> sessions = new HashMap<>();
+        ProtocolBuffer payload = new ProtocolBuffer(capture.duplicate());
+        int lastTick = -1;
+        packets = 0;
+
+        while (capture.hasRemaining()) {
+            int type = capture.get();
+            int tick = capture.getInt();
+            int id = capture.getInt();
+
+            // Finish the last cycle once the records of the next one start.
+            if (tick != lastTick && lastTick != -1) {
+                tick();
+            }
+            lastTick = tick;
+
+            if (type == PacketCapture.LOGIN) {
+                byte[] username = new byte[capture.getShort() & 0xffff];
+                capture.get(username);
+                Session session = new Session(new String(username,
+                    StandardCharsets.UTF_8));
+                Player player = session.getPlayer();
+                player.setRights(PlayerRights.values()[capture.get()]);
+                player.getPosition().setAs(new Position(capture
+                    .getShort() & 0xffff, capture.getShort() & 0xffff,
+                    capture.get()));
+                player.setNewPlayer(false);
+                session.finishLogin(Utility.LOGIN_RESPONSE_OK);
+                sessions.put(id, session);
+            } else if (type == PacketCapture.PACKET) {
+                int opcode = capture.get() & 0xff;
+                int length = capture.get() & 0xff;
+                int start = capture.position();
+                capture.position(start + length);
+                Session session = sessions.get(id);
+
+                if (session == null || session.getStage() != Stage.LOGGED_IN) {
+                    continue;
+                }
+
+                // Decode the payload in place, like the server does.
+                payload.getBuffer().limit(start + length);
+                payload.getBuffer().position(start);
+                session.setPacketOpcode(opcode);
+                session.setPacketLength(length);
+                PacketDecoder decoder = PacketDecoder.getPackets()[opcode];
+                long begin = System.nanoTime();
+
+                try {
+                    decoder.decode(session.getPlayer(), payload);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+
+                if (timed) {
+                    if (decodeTime[opcode] == null) {
+                        decodeTime[opcode] = new Statistic(decoder.getClass()
+                            .getSimpleName() + " (" + opcode + ")", "ns");
+                    }
+                    decodeTime[opcode].record(System.nanoTime() - begin);
+                }
+                session.setPacketOpcode(-1);
+                session.setPacketLength(-1);
+                packets++;
+            } else if (type == PacketCapture.LOGOUT) {
+                Session session = sessions.remove(id);
+
+                if (session != null) {
+                    session.disconnect();
+                }
+            } else {
+                throw new IllegalStateException("Unknown record type: "
+                    + type);
+            }
+        }
+
+        // Finish the last cycle, and log out anyone still online.
+        tick();
+
+        for (Session session : sessions.values()) {
+            session.disconnect();
+        }
+    }
+
+    /** Finishes a captured cycle, if the world should be ticked. */
+    private static void tick() {
+        if (TICK_WORLD) {
+            TaskManager.tick();
+            World.tick();
+        }
+    }
+
+    private PacketReplay() {}
+}
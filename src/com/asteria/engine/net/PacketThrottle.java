@@ -0,0 +1,216 @@
+package com.asteria.engine.net;
+
+/**
+ * A limiter on the packets a single session can have handled every cycle.
+ * Every opcode belongs to a {@link PacketGroup}, and every group has a bucket
+ * of tokens that is topped up once every cycle. Handling a packet takes a
+ * token from the bucket of its group, and packets that arrive once the bucket
+ * is empty are dealt with more harshly the longer the session keeps it up:
+ * <ol>
+ * <li>They're deferred, and the rest of the packets sent by the session are
+ * left to be handled next cycle.</li>
+ * <li>After {@link #MAX_DEFERRED_TICKS} cycles of deferring they're dropped.</li>
+ * <li>After {@link #MAX_DROPPING_TICKS} cycles of dropping packets, the
+ * session is disconnected.</li>
+ * </ol>
+ * Every cycle without running out of tokens winds the escalation back by a
+ * single cycle, so sessions that flood in bursts are still caught. This
+ * throttle should only ever be used from the game thread.
+ *
+ * @author lare96
+ */
+public final class PacketThrottle {
+
+    /** The cycles packets are deferred before they're dropped. */
+    public static final int MAX_DEFERRED_TICKS = 5;
+
+    /** The cycles packets are dropped before disconnecting. */
+    public static final int MAX_DROPPING_TICKS = 10;
+
+    /**
+     * The groups of opcodes that share a budget, along with the tokens each
+     * group is given every cycle and the most tokens it can save up.
+     *
+     * @author lare96
+     */
+    public enum PacketGroup {
+        MOVEMENT(3, 10, 248, 164, 98),
+        CLICK(10, 30),
+        CHAT(2, 5, 4, 95, 126, 188, 215, 133, 74),
+        COMMAND(2, 5, 103),
+        MISC(10, 30, 0, 3, 36, 77, 78, 86, 121, 150, 165, 189, 202, 210, 226,
+            241);
+
+        /** The group of every opcode, opcodes not listed are clicks. */
+        private static final PacketGroup[] GROUPS = new PacketGroup[256];
+
+        /** The tokens given to this group every cycle. */
+        private final int rate;
+
+        /** The most tokens this group can save up. */
+        private final int burst;
+
+        /** The opcodes that belong to this group. */
+        private final int[] opcodes;
+
+        /**
+         * Create a new {@link PacketGroup}.
+         *
+         * @param rate
+         *            the tokens given to this group every cycle.
+         * @param burst
+         *            the most tokens this group can save up.
+         * @param opcodes
+         *            the opcodes that belong to this group.
+         */
+        private PacketGroup(int rate, int burst, int... opcodes) {
+            this.rate = rate;
+            this.burst = burst;
+            this.opcodes = opcodes;
+        }
+
+        static {
+            for (int i = 0; i < GROUPS.length; i++) {
+                GROUPS[i] = CLICK;
+            }
+            for (PacketGroup group : values()) {
+                for (int opcode : group.opcodes) {
+                    GROUPS[opcode] = group;
+                }
+            }
+        }
+
+        /**
+         * Gets the group the argued opcode belongs to.
+         *
+         * @param opcode
+         *            the opcode.
+         * @return the group of the opcode.
+         */
+        public static PacketGroup forOpcode(int opcode) {
+            return GROUPS[opcode & 0xff];
+        }
+    }
+
+    /** The tokens left in the bucket of each group. */
+    private final int[] tokens = new int[PacketGroup.values().length];
+
+    /** The cycles this session has recently run out of tokens. */
+    private int limitedTicks;
+
+    /** The cycles this session has recently had packets dropped. */
+    private int droppingTicks;
+
+    /** If this session has run out of tokens during this cycle. */
+    private boolean limited;
+
+    /** If this session has had packets dropped during this cycle. */
+    private boolean dropping;
+
+    /** The amount of times packets have been deferred for this session. */
+    private int deferred;
+
+    /** The amount of packets that have been dropped for this session. */
+    private int dropped;
+
+    /** Create a new {@link PacketThrottle} with full buckets. */
+    public PacketThrottle() {
+        for (PacketGroup group : PacketGroup.values()) {
+            tokens[group.ordinal()] = group.burst;
+        }
+    }
+
+    /**
+     * Tops up the bucket of every group. This should be called once at the
+     * start of every cycle, before any packets are handled.
+     */
+    public void refill() {
+        for (PacketGroup group : PacketGroup.values()) {
+            tokens[group.ordinal()] = Math.min(group.burst,
+                tokens[group.ordinal()] + group.rate);
+        }
+        limited = false;
+        dropping = false;
+    }
+
+    /**
+     * Attempts to take a token for a packet with the argued opcode.
+     *
+     * @param opcode
+     *            the opcode of the packet.
+     * @return <code>true</code> if the packet can be handled,
+     *         <code>false</code> if its group has run out of tokens.
+     */
+    public boolean acquire(int opcode) {
+        int group = PacketGroup.forOpcode(opcode).ordinal();
+
+        if (tokens[group] == 0) {
+            limited = true;
+            return false;
+        }
+
+        tokens[group]--;
+        return true;
+    }
+
+    /**
+     * Determines if packets that have run out of tokens should be dropped
+     * instead of deferred.
+     *
+     * @return true if packets should be dropped.
+     */
+    public boolean isDropping() {
+        return limitedTicks >= MAX_DEFERRED_TICKS;
+    }
+
+    /** Records that the remaining packets were deferred to the next cycle. */
+    public void defer() {
+        deferred++;
+    }
+
+    /** Records that a packet was dropped. */
+    public void drop() {
+        dropped++;
+        dropping = true;
+    }
+
+    /**
+     * Escalates or resets the throttle depending on how this cycle went. This
+     * should be called once at the end of every cycle, after all the packets
+     * have been handled.
+     *
+     * @return <code>true</code> if the session should stay connected,
+     *         <code>false</code> if it should be disconnected.
+     */
+    public boolean finishTick() {
+        limitedTicks = limited ? limitedTicks + 1 : Math.max(0,
+            limitedTicks - 1);
+        droppingTicks = dropping ? droppingTicks + 1 : Math.max(0,
+            droppingTicks - 1);
+        return droppingTicks < MAX_DROPPING_TICKS;
+    }
+
+    /**
+     * Gets the amount of times packets have been deferred for this session.
+     *
+     * @return the amount of deferrals.
+     */
+    public int getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Gets the amount of packets that have been dropped for this session.
+     *
+     * @return the amount of dropped packets.
+     */
+    public int getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return "Packet throttle: deferred= " + deferred + ", dropped= "
+            + dropped;
+    }
+}
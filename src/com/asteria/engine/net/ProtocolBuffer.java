@@ -30,8 +30,20 @@ public final class ProtocolBuffer {
     /** The position of the buffer when a var length packet header is created. */
     private int variableLengthPos = 0;
 
-    /** The current bit position. */
-    private int bitPosition = 0;
+    /** The bits written in bit access mode that haven't been spilled yet. */
+    private long bitBuffer;
+
+    /** The amount of bits waiting in the bit buffer. */
+    private int bitCount;
+
+    /** If this buffer belongs to the {@link BufferPool}. */
+    private boolean pooled;
+
+    /** If this buffer has been acquired from the pool and not released. */
+    private boolean leased;
+
+    /** The lease tracking this buffer for leaks, if any. */
+    private BufferPool.Lease lease;
 
     /**
      * An enum whose values represent the possible order in which bytes are
@@ -87,14 +99,49 @@ public final class ProtocolBuffer {
         this(DEFAULT_CAP);
     }
 
-    /** Prepares the buffer for writing bits. */
+    /**
+     * Clears this buffer so it can be reused for building another packet. The
+     * backing byte buffer is kept, including any space it has grown to. The
+     * old bytes don't need to be zeroed, since bit access writes whole bytes.
+     * 
+     * @return this protocol buffer.
+     */
+    public ProtocolBuffer clear() {
+        buf.clear();
+        session = null;
+        variableLengthPos = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+        return this;
+    }
+
+    /**
+     * Prepares the buffer for writing bits. Bits are packed into an
+     * accumulator and spilled into the buffer a whole word at a time, so
+     * nothing but bits should be written until <code>finishBitAccess()</code>
+     * is called.
+     */
     public void startBitAccess() {
-        bitPosition = buf.position() * 8;
+        bitBuffer = 0;
+        bitCount = 0;
     }
 
-    /** Prepares the buffer for writing bytes. */
+    /**
+     * Prepares the buffer for writing bytes, by spilling any bits left in the
+     * accumulator. The unused bits of the last byte are left as zero.
+     */
     public void finishBitAccess() {
-        buf.position((bitPosition + 7) / 8);
+        requestSpace(4);
+
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            buf.put((byte) (bitBuffer >>> bitCount));
+        }
+        if (bitCount > 0) {
+            buf.put((byte) (bitBuffer << (8 - bitCount)));
+        }
+        bitBuffer = 0;
+        bitCount = 0;
     }
 
     /**
@@ -111,12 +158,34 @@ public final class ProtocolBuffer {
             byte[] oldBuffer = buf.array();
             int newLength = (buf.capacity() * 2);
             buf = ByteBuffer.allocate(newLength);
+            recordGrowth();
             buf.position(oldPosition);
             System.arraycopy(oldBuffer, 0, buf.array(), 0, oldBuffer.length);
             requestSpace(requested);
         }
     }
 
+    /** Records that this buffer has grown, if it belongs to the pool. */
+    private void recordGrowth() {
+        if (pooled) {
+            BufferPool.recordGrowth();
+        }
+    }
+
+    /**
+     * Releases this buffer back into the {@link BufferPool}, if it was
+     * acquired from the pool. This buffer must not be used after it has been
+     * released.
+     * 
+     * @return this protocol buffer.
+     */
+    public ProtocolBuffer release() {
+        if (pooled) {
+            BufferPool.release(this);
+        }
+        return this;
+    }
+
     /**
      * Builds a new packet header.
      * 
@@ -207,8 +276,15 @@ public final class ProtocolBuffer {
      * @return this protocol buffer.
      */
     public ProtocolBuffer writeBytes(ByteBuffer from) {
-        for (int i = 0; i < from.position(); i++) {
-            writeByte(from.get(i));
+        int size = from.position();
+        requestSpace(size);
+
+        if (from.hasArray()) {
+            buf.put(from.array(), from.arrayOffset(), size);
+        } else {
+            ByteBuffer data = from.duplicate();
+            data.flip();
+            buf.put(data);
         }
         return this;
     }
@@ -233,9 +309,13 @@ public final class ProtocolBuffer {
      *            the data to write.
      */
     public ProtocolBuffer writeBytesReverse(byte[] data) {
-        for (int i = data.length - 1; i >= 0; i--) {
-            writeByte(data[i]);
+        requestSpace(data.length);
+        int position = buf.position();
+
+        for (int i = 0; i < data.length; i++) {
+            buf.put(position + i, data[data.length - 1 - i]);
         }
+        buf.position(position + data.length);
         return this;
     }
 
@@ -256,40 +336,17 @@ public final class ProtocolBuffer {
                     "Number of bits must be between 1 and 32 inclusive.");
         }
 
-        // Modify the bit and byte positions.
-        int bytePos = bitPosition >> 3;
-        int bitOffset = 8 - (bitPosition & 7);
-
-        bitPosition = bitPosition + amount;
-
-        // Re-size the buffer if need be.
-        int requiredSpace = bytePos - buf.position() + 1;
-        requiredSpace += (amount + 7) / 8;
-        if (buf.remaining() < requiredSpace) {
-            ByteBuffer old = buf;
-            buf = ByteBuffer.allocate(old.capacity() + requiredSpace);
-            old.flip();
-            buf.put(old);
-        }
-
-        // Write the bits.
-        for (; amount > bitOffset; bitOffset = 8) {
-            byte tmp = buf.get(bytePos);
-            tmp &= ~BIT_MASK[bitOffset];
-            tmp |= (value >> (amount - bitOffset)) & BIT_MASK[bitOffset];
-            buf.put(bytePos++, tmp);
-            amount -= bitOffset;
-        }
-        if (amount == bitOffset) {
-            byte tmp = buf.get(bytePos);
-            tmp &= ~BIT_MASK[bitOffset];
-            tmp |= value & BIT_MASK[bitOffset];
-            buf.put(bytePos, tmp);
-        } else {
-            byte tmp = buf.get(bytePos);
-            tmp &= ~(BIT_MASK[amount] << (bitOffset - amount));
-            tmp |= (value & BIT_MASK[amount]) << (bitOffset - amount);
-            buf.put(bytePos, tmp);
+        // Pack the bits into the accumulator, there's always room because
+        // less than a word is ever left in it.
+        bitBuffer = (bitBuffer << amount)
+                | ((value & BIT_MASK[amount]) & 0xffffffffL);
+        bitCount += amount;
+
+        // Spill a whole word once there is one.
+        if (bitCount >= 32) {
+            requestSpace(4);
+            bitCount -= 32;
+            buf.putInt((int) (bitBuffer >>> bitCount));
         }
         return this;
     }
@@ -1051,6 +1108,8 @@ public final class ProtocolBuffer {
 
     /**
      * Sends the packet to the session that was used to encrypt the header.
+     * The packet is copied into the staging buffer of the session, so pooled
+     * buffers are released once sent and must not be used afterwards.
      * 
      * @return this protocol buffer.
      */
@@ -1061,6 +1120,7 @@ public final class ProtocolBuffer {
         }
 
         session.send(this);
+        release();
         return this;
     }
 
@@ -1072,4 +1132,52 @@ public final class ProtocolBuffer {
     public ByteBuffer getBuffer() {
         return buf;
     }
+
+    /**
+     * Sets if this buffer belongs to the {@link BufferPool}.
+     * 
+     * @param pooled
+     *            if this buffer belongs to the pool.
+     */
+    void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * Determines if this buffer has been acquired and not yet released.
+     * 
+     * @return true if this buffer is leased.
+     */
+    boolean isLeased() {
+        return leased;
+    }
+
+    /**
+     * Sets if this buffer has been acquired and not yet released.
+     * 
+     * @param leased
+     *            if this buffer is leased.
+     */
+    void setLeased(boolean leased) {
+        this.leased = leased;
+    }
+
+    /**
+     * Gets the lease tracking this buffer for leaks.
+     * 
+     * @return the lease, or <code>null</code> if this buffer isn't tracked.
+     */
+    BufferPool.Lease getLease() {
+        return lease;
+    }
+
+    /**
+     * Sets the lease tracking this buffer for leaks.
+     * 
+     * @param lease
+     *            the lease, or <code>null</code> to stop tracking.
+     */
+    void setLease(BufferPool.Lease lease) {
+        this.lease = lease;
+    }
 }
@@ -0,0 +1,179 @@
+package com.asteria.engine.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * A private RSA key used to decrypt the login block. When the key was loaded
+ * with its Chinese Remainder Theorem parameters, decryption is done with two
+ * half-sized exponentiations modulo each prime instead of one full-sized
+ * exponentiation modulo the modulus, which is several times faster.
+ * <p>
+ * Keys are loaded from text files of <code>name=value</code> lines, as
+ * written by <code>Utility.RSAKeyGen</code>. The <code>modulus</code> and
+ * <code>exponent</code> are required, while the <code>prime_p</code>,
+ * <code>prime_q</code>, <code>exponent_p</code>, <code>exponent_q</code> and
+ * <code>coefficient</code> are only needed for the faster decryption.
+ *
+ * @author lare96
+ */
+public final class RSAKey {
+
+    /** The modulus of this key. */
+    private final BigInteger modulus;
+
+    /** The private exponent of this key. */
+    private final BigInteger exponent;
+
+    /** The first prime factor of the modulus, <tt>p</tt>. */
+    private final BigInteger primeP;
+
+    /** The second prime factor of the modulus, <tt>q</tt>. */
+    private final BigInteger primeQ;
+
+    /** The private exponent modulo <tt>p - 1</tt>. */
+    private final BigInteger exponentP;
+
+    /** The private exponent modulo <tt>q - 1</tt>. */
+    private final BigInteger exponentQ;
+
+    /** The inverse of <tt>q</tt> modulo <tt>p</tt>. */
+    private final BigInteger coefficient;
+
+    /**
+     * Create a new {@link RSAKey} with its Chinese Remainder Theorem
+     * parameters.
+     *
+     * @param modulus
+     *            the modulus of this key.
+     * @param exponent
+     *            the private exponent of this key.
+     * @param primeP
+     *            the first prime factor of the modulus.
+     * @param primeQ
+     *            the second prime factor of the modulus.
+     * @param exponentP
+     *            the private exponent modulo <tt>p - 1</tt>.
+     * @param exponentQ
+     *            the private exponent modulo <tt>q - 1</tt>.
+     * @param coefficient
+     *            the inverse of <tt>q</tt> modulo <tt>p</tt>.
+     */
+    public RSAKey(BigInteger modulus, BigInteger exponent, BigInteger primeP,
+        BigInteger primeQ, BigInteger exponentP, BigInteger exponentQ,
+        BigInteger coefficient) {
+        this.modulus = modulus;
+        this.exponent = exponent;
+        this.primeP = primeP;
+        this.primeQ = primeQ;
+        this.exponentP = exponentP;
+        this.exponentQ = exponentQ;
+        this.coefficient = coefficient;
+    }
+
+    /**
+     * Create a new {@link RSAKey} without its Chinese Remainder Theorem
+     * parameters.
+     *
+     * @param modulus
+     *            the modulus of this key.
+     * @param exponent
+     *            the private exponent of this key.
+     */
+    public RSAKey(BigInteger modulus, BigInteger exponent) {
+        this(modulus, exponent, null, null, null, null, null);
+    }
+
+    /**
+     * Loads a key from the argued file.
+     *
+     * @param file
+     *            the file to load the key from.
+     * @return the loaded key.
+     * @throws IOException
+     *             if the file could not be read, or is missing the modulus
+     *             or exponent.
+     */
+    public static RSAKey load(File file) throws IOException {
+        Map<String, BigInteger> values = new HashMap<>();
+
+        try (Scanner scanner = new Scanner(file)) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine().trim();
+                int split = line.indexOf('=');
+
+                if (line.isEmpty() || line.startsWith("#") || split == -1) {
+                    continue;
+                }
+
+                values.put(line.substring(0, split).trim(), new BigInteger(
+                    line.substring(split + 1).trim()));
+            }
+        }
+
+        if (!values.containsKey("modulus") || !values.containsKey("exponent")) {
+            throw new IOException("Missing the modulus or exponent in "
+                + file + "!");
+        }
+
+        return new RSAKey(values.get("modulus"), values.get("exponent"),
+            values.get("prime_p"), values.get("prime_q"), values
+                .get("exponent_p"), values.get("exponent_q"), values
+                .get("coefficient"));
+    }
+
+    /**
+     * Decrypts the argued value with this key, using the Chinese Remainder
+     * Theorem if this key has the parameters for it.
+     *
+     * @param value
+     *            the value to decrypt.
+     * @return the decrypted value.
+     */
+    public BigInteger decrypt(BigInteger value) {
+        if (!isCrt()) {
+            return value.modPow(exponent, modulus);
+        }
+
+        // Exponentiate modulo each prime, then combine the two halves.
+        BigInteger m1 = value.mod(primeP).modPow(exponentP, primeP);
+        BigInteger m2 = value.mod(primeQ).modPow(exponentQ, primeQ);
+        BigInteger h = coefficient.multiply(m1.subtract(m2)).mod(primeP);
+        return m2.add(h.multiply(primeQ));
+    }
+
+    /**
+     * Decrypts the argued value with this key, without using the Chinese
+     * Remainder Theorem.
+     *
+     * @param value
+     *            the value to decrypt.
+     * @return the decrypted value.
+     */
+    public BigInteger decryptPlain(BigInteger value) {
+        return value.modPow(exponent, modulus);
+    }
+
+    /**
+     * Determines if this key has its Chinese Remainder Theorem parameters.
+     *
+     * @return true if decryption uses the Chinese Remainder Theorem.
+     */
+    public boolean isCrt() {
+        return primeP != null && primeQ != null && exponentP != null
+            && exponentQ != null && coefficient != null;
+    }
+
+    /**
+     * Gets the modulus of this key.
+     *
+     * @return the modulus.
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+}
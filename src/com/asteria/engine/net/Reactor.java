@@ -0,0 +1,193 @@
+package com.asteria.engine.net;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.asteria.engine.ThreadProvider;
+import com.asteria.engine.net.Session.Stage;
+
+/**
+ * A reactor that runs on its own thread and owns a shard of all the connected
+ * sessions. The reactor continuously reads from its sessions and frames the
+ * data into packets, which are handed to the game thread through the inbound
+ * queue of each session. It also writes the data staged for its sessions when
+ * they're flushed, and keeps writing their outbound queues whenever their
+ * sockets become writable. Packets are never handled on a reactor thread, so
+ * game logic stays on the game thread.
+ *
+ * @author lare96
+ */
+final class Reactor implements Runnable {
+
+    /** A logger for printing information. */
+    private static Logger logger = Logger.getLogger(Reactor.class
+        .getSimpleName());
+
+    /** The selector that selects the sessions ready to be read. */
+    private final Selector selector;
+
+    /** The connections waiting to be registered with this reactor. */
+    private final Queue<SocketChannel> pendingConnections = new ConcurrentLinkedQueue<>();
+
+    /** The sessions waiting to be flushed by this reactor. */
+    private final Queue<Session> pendingFlushes = new ConcurrentLinkedQueue<>();
+
+    /** If the selector has already been woken up for pending work. */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    /**
+     * Create a new {@link Reactor} and start its thread.
+     *
+     * @param provider
+     *            the thread provider to create the thread with.
+     * @throws IOException
+     *             if the selector could not be opened.
+     */
+    public Reactor(ThreadProvider provider) throws IOException {
+        this.selector = Selector.open();
+        provider.newThread(this).start();
+    }
+
+    /**
+     * Hands a newly accepted connection to this reactor. The connection is
+     * registered and given a session on the reactor thread.
+     *
+     * @param socket
+     *            the accepted connection.
+     */
+    public void register(SocketChannel socket) {
+        pendingConnections.add(socket);
+        wakeup();
+    }
+
+    /**
+     * Queues a session owned by this reactor to have its staged data written.
+     *
+     * @param session
+     *            the session to flush.
+     */
+    public void flush(Session session) {
+        pendingFlushes.add(session);
+        wakeup();
+    }
+
+    /** Wakes up the selector, if it hasn't already been woken up. */
+    private void wakeup() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                wakeupPending.set(false);
+
+                registerConnections();
+                handleSelectedKeys();
+                flushSessions();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error in reactor!", e);
+            }
+        }
+    }
+
+    /** Registers all of the connections handed to this reactor. */
+    private void registerConnections() {
+        SocketChannel socket;
+
+        while ((socket = pendingConnections.poll()) != null) {
+            try {
+                socket.configureBlocking(false);
+                SelectionKey key = socket.register(selector,
+                    SelectionKey.OP_READ);
+                key.attach(new Session(key, this));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error while registering client!",
+                    e);
+
+                try {
+                    socket.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads and frames the data sent by every readable session, and writes
+     * the outbound queue of every writable session.
+     */
+    private void handleSelectedKeys() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+
+            Session session = (Session) key.attachment();
+
+            if (session == null) {
+                continue;
+            }
+
+            try {
+                if (key.isWritable() && !session.flush()) {
+                    ServerEngine.queueDisconnect(session);
+                    continue;
+                }
+
+                if (!key.isReadable()) {
+                    continue;
+                }
+
+                if (!session.read()) {
+                    ServerEngine.queueDisconnect(session);
+                    continue;
+                }
+            } catch (CancelledKeyException e) {
+
+                // The session was disconnected by the game thread.
+                continue;
+            }
+
+            // Answer the handshake right away instead of waiting for the end
+            // of the cycle.
+            if (session.getStage() != Stage.LOGGED_IN) {
+                session.flush();
+            }
+        }
+    }
+
+    /** Writes the staged data of every session queued to be flushed. */
+    private void flushSessions() {
+        long start = System.nanoTime();
+        int amount = 0;
+        Session session;
+
+        while ((session = pendingFlushes.poll()) != null) {
+            amount++;
+
+            if (!session.flush() && session.getStage() != Stage.LOGGED_OUT) {
+                ServerEngine.queueDisconnect(session);
+            }
+        }
+
+        if (amount > 0) {
+            Session.getFlushLatency().record(
+                (System.nanoTime() - start) / 1000);
+        }
+    }
+}
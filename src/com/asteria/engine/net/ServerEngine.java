@@ -7,33 +7,48 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.asteria.Main;
 import com.asteria.engine.GameEngine;
+import com.asteria.engine.ThreadProvider;
+import com.asteria.engine.TickRecorder;
+import com.asteria.engine.TickRecorder.Sample;
 import com.asteria.engine.net.Session.Stage;
 import com.asteria.engine.net.packet.PacketDecoder;
-import com.asteria.util.Utility;
 import com.asteria.world.World;
 import com.asteria.world.entity.player.Player;
 
 /**
- * A reactor that runs on the main game thread. The reactor's job is to select
- * and handle various network events for all clients.
+ * The networking engine. Incoming connections are accepted on the main game
+ * thread and then handed off to one of the {@link Reactor}s, which read and
+ * frame packets for the connection from then on. The framed packets are handled
+ * here on the game thread once every cycle.
  * 
  * @author lare96
  * @author blakeman8192
  */
 public final class ServerEngine {
 
-    // TODO: Throttle packets?
+    /** The amount of reactor threads that sessions are sharded across. */
+    public static final int REACTOR_THREADS = 2;
 
     /** A logger for printing information. */
     private static Logger logger = Logger.getLogger(ServerEngine.class
         .getSimpleName());
 
+    /** The reactors that read and write for connected sessions. */
+    private static Reactor[] reactors;
+
+    /** The reactor that the next accepted connection will be handed to. */
+    private static int nextReactor;
+
+    /** The sessions that the reactors found to be disconnected. */
+    private static final Queue<Session> pendingDisconnects = new ConcurrentLinkedQueue<>();
+
     /** The selector that selects keys ready to receive network events. */
     private static Selector selector;
 
@@ -54,6 +69,17 @@ public final class ServerEngine {
                 "The reactor has already been started!");
         }
 
+        // Start the reactors, they're kept running across restarts.
+        if (reactors == null) {
+            ThreadProvider provider = new ThreadProvider("Reactor-Thread",
+                Thread.NORM_PRIORITY, true);
+            reactors = new Reactor[REACTOR_THREADS];
+
+            for (int i = 0; i < reactors.length; i++) {
+                reactors[i] = new Reactor(provider);
+            }
+        }
+
         // Create the networking objects.
         selector = Selector.open();
         server = ServerSocketChannel.open();
@@ -129,18 +155,19 @@ public final class ServerEngine {
                             continue;
                         }
 
-                        // Block if we fail the security check.
-                        if (!HostGateway.enter(socket.socket().getInetAddress()
-                            .getHostAddress())) {
+                        // Block if we're banned or fail the security check,
+                        // before a session is ever created.
+                        if (HostGateway.isBanned(socket.socket()
+                            .getInetAddress()) || !HostGateway.enter(socket
+                            .socket().getInetAddress())) {
                             socket.close();
                             continue;
                         }
 
-                        // Otherwise create a new session.
-                        socket.configureBlocking(false);
-                        SelectionKey newKey = socket.register(selector,
-                            SelectionKey.OP_READ);
-                        newKey.attach(new Session(newKey));
+                        // Otherwise hand it to the next reactor, which will
+                        // create the session.
+                        reactors[nextReactor].register(socket);
+                        nextReactor = (nextReactor + 1) % reactors.length;
                     }
                 } catch (IOException e) {
                     logger.log(Level.WARNING,
@@ -151,147 +178,82 @@ public final class ServerEngine {
     }
 
     /**
-     * Decodes and handles all incoming packets sent from the client for this
-     * cycle.
+     * Handles the packets framed by the reactor for the argued session since
+     * the last cycle, as far as the {@link PacketThrottle} of the session
+     * allows. Packets over the budget of their group are left for the next
+     * cycle along with every packet after them, so they're still handled in
+     * the order they were sent.
      * 
-     * @param key
-     *            the selection key that holds the session instance.
+     * @param session
+     *            the session to handle packets for.
      */
-    private static void decodePackets(SelectionKey key) {
-
-        // Grab the session attachment from the key.
-        Session session = (Session) key.attachment();
-
-        if (session == null) {
-            return;
-        }
-
-        try {
-
-            // Decode packets for the key, and handle login if needed.
-            if (session.getSocketChannel().read(session.getInData()) == -1) {
-                session.disconnect();
-                return;
-            }
-
-            session.getInData().flip();
-
-            while (session.getInData().hasRemaining()) {
-
-                // There's data to be read, reset the timeout.
-                session.getTimeout().reset();
-
-                // Handle login here if needed.
-                if (session.getStage() != Stage.LOGGED_IN) {
-                    session.handleLogin();
+    private static void handlePackets(Session session) {
+        PacketThrottle throttle = session.getThrottle();
+        InboundBuffer inbound = session.getInbound();
+        int opcode;
+        throttle.refill();
+
+        while (session.getStage() == Stage.LOGGED_IN && (opcode = inbound
+            .peek()) != -1) {
+
+            // Check if the packet is within the budget of its group.
+            if (!throttle.acquire(opcode)) {
+                if (!throttle.isDropping()) {
+                    throttle.defer();
                     break;
                 }
+                inbound.poll();
+                throttle.drop();
+                continue;
+            }
 
-                // Decode the packet opcode and packet length.
-                if (session.getPacketOpcode() == -1) {
-                    session.setPacketOpcode(session.getInData().get() & 0xff);
-                    session.setPacketOpcode(session.getPacketOpcode() - session
-                        .getDecryptor().getKey() & 0xff);
-                }
-
-                if (session.getPacketLength() == -1) {
-                    session.setPacketLength(Utility.PACKET_LENGTHS[session
-                        .getPacketOpcode()]);
-
-                    if (session.getPacketLength() == -1) {
-                        if (!session.getInData().hasRemaining()) {
-                            session.getInData().flip();
-                            session.getInData().compact();
-                            break;
-                        }
-
-                        session
-                            .setPacketLength(session.getInData().get() & 0xff);
-                    }
-                }
-
-                // Handle the decoded packet and make sure all of the
-                // data is read
-                if (session.getInData().remaining() >= session
-                    .getPacketLength()) {
-                    int positionBefore = session.getInData().position();
-
-                    try {
-                        if (PacketDecoder.getPackets()[session
-                            .getPacketOpcode()] != null) {
-                            PacketDecoder.getPackets()[session
-                                .getPacketOpcode()].decode(session.getPlayer(),
-                                new ProtocolBuffer(session.getInData()));
-                        } else {
-                            if (Main.DEBUG)
-                                logger
-                                    .info(session.getPlayer() + " unhandled packet " + session
-                                        .getPacketOpcode());
-                        }
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                    } finally {
-                        int read = session.getInData().position() - positionBefore;
-
-                        for (int i = read; i < session.getPacketLength(); i++) {
-                            session.getInData().get();
-                        }
-                    }
-                    session.setPacketOpcode(-1);
-                    session.setPacketLength(-1);
-                } else {
-                    session.getInData().flip();
-                    session.getInData().compact();
-                    break;
-                }
+            // A packet has been received, reset the timeout.
+            session.getTimeout().reset();
+            session.setPacketOpcode(opcode);
+            session.setPacketLength(inbound.getLength());
+            PacketDecoder decoder = PacketDecoder.getPackets()[opcode];
+            PacketCapture.recordPacket(session, opcode, inbound.getPayload());
+            long start = System.nanoTime();
+
+            // The payload is read in place, so only free it once decoded.
+            try {
+                decoder.decode(session.getPlayer(), inbound.getPayload());
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            } finally {
+                inbound.poll();
             }
+            TickRecorder.sample(Sample.PACKET, decoder.getClass(), System
+                .nanoTime() - start);
+        }
+        session.setPacketOpcode(-1);
+        session.setPacketLength(-1);
 
-            // Clear the buffer for the next cycle.
-            session.getInData().clear();
-        } catch (Exception e) {
-            e.printStackTrace();
+        // Disconnect sessions that have kept flooding us for too long.
+        if (!throttle.finishTick() && session.getStage() != Stage.LOGGED_OUT) {
+            logger.warning(session + " disconnected, packets dropped for "
+                + PacketThrottle.MAX_DROPPING_TICKS + " cycles.");
             session.disconnect();
         }
     }
 
     /**
-     * Sends any previously queued data in the session's <code>outData</code>
-     * buffer to its socket channel.
+     * Queues a session to be disconnected on the game thread. This is used by
+     * the reactors when a connection is closed or fails, and for players that
+     * couldn't be updated.
      * 
-     * @param key
-     *            the selection key that holds the session instance.
+     * @param session
+     *            the session to disconnect.
      */
-    private static void sendQueuedData(SelectionKey key) {
-
-        // Grab the session attachment from the key.
-        Session session = (Session) key.attachment();
-
-        if (session == null) {
-            return;
-        }
-
-        try {
-
-            // Send any previously queued data if needed.
-            session.getOutData().flip();
-            session.getSocketChannel().write(session.getOutData());
-
-            if (!session.getOutData().hasRemaining()) {
-                session.getOutData().clear();
-            } else {
-                session.getOutData().compact();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            session.disconnect();
-        }
+    public static void queueDisconnect(Session session) {
+        pendingDisconnects.add(session);
     }
 
     /**
-     * Determines which clients are ready for networking events and handles
-     * those events straight away for them. Accept events are pushed to the
-     * engine and read/write events are handled right on the game thread as soon
-     * as they are received.
+     * Accepts any incoming connections, disconnects the sessions that the
+     * reactors have found to be closed or that have fallen too far behind, and
+     * then handles all of the packets framed by the reactors since the last
+     * cycle.
      */
     public static void tick() {
 
@@ -321,18 +283,26 @@ public final class ServerEngine {
                 } finally {
                     it.remove();
                 }
-            } else if (key.isReadable()) {
-                try {
-                    decodePackets(key);
-                } finally {
-                    it.remove();
-                }
-            } else if (key.isWritable()) {
-                try {
-                    sendQueuedData(key);
-                } finally {
-                    it.remove();
-                }
+            }
+        }
+
+        // Disconnect the sessions the reactors have found to be closed.
+        Session session;
+
+        while ((session = pendingDisconnects.poll()) != null) {
+            if (session.getStage() != Stage.LOGGED_OUT) {
+                session.disconnect();
+            }
+        }
+
+        // Handle the packets framed by the reactors.
+        for (Player player : World.getPlayers()) {
+            if (player == null) {
+                continue;
+            }
+
+            if (player.getSession().checkBackpressure()) {
+                handlePackets(player.getSession());
             }
         }
     }
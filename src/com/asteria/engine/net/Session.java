@@ -1,18 +1,26 @@
 package com.asteria.engine.net;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.net.InetAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import com.asteria.engine.net.packet.PacketEncoder;
 import com.asteria.engine.task.TaskManager;
+import com.asteria.util.Statistic;
 import com.asteria.util.Stopwatch;
 import com.asteria.util.Utility;
 import com.asteria.world.World;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.combat.effect.CombatPoisonEffect;
 import com.asteria.world.entity.combat.effect.CombatSkullEffect;
 import com.asteria.world.entity.combat.effect.CombatTeleblockEffect;
@@ -50,7 +58,29 @@ public final class Session {
      */
     public static final String SOCKET_FLOOD_USERNAME = "lare96";
 
-    /** The private RSA modulus and exponent key pairs. */
+    /**
+     * If outgoing packets should be staged and written to the socket all at
+     * once at the end of every cycle, rather than being written as soon as
+     * they are sent.
+     */
+    public static final boolean COALESCE_PACKETS = true;
+
+    /**
+     * The amount of bytes that can be waiting to be written to a session
+     * before it's considered to be falling behind.
+     */
+    public static final int OUTBOUND_HIGH_WATER = 65536;
+
+    /**
+     * The amount of consecutive cycles a session can stay above the
+     * high-water mark before it's disconnected.
+     */
+    public static final int OUTBOUND_EVICT_CYCLES = 10;
+
+    /** The file the private RSA key is loaded from. */
+    public static final String RSA_KEY_FILE = "./data/rsa/rsa_private.txt";
+
+    /** The private RSA modulus and exponent used if no key file is found. */
     private static final BigInteger RSA_MODULUS = new BigInteger(
         "94306533927366675756465748344550949689550982334568289470527341681445613288505954291473168510012417401156971344988779343797488043615702971738296505168869556915772193568338164756326915583511871429998053169912492097791139829802309908513249248934714848531624001166946082342750924060600795950241816621880914628143"),
         RSA_EXPONENT = new BigInteger(
@@ -60,20 +90,75 @@ public final class Session {
     private static Logger logger = Logger.getLogger(Session.class
         .getSimpleName());
 
+    /** The private RSA key that decrypts the login block. */
+    private static final RSAKey RSA_KEY = loadRSAKey();
+
+    /** The sessions that have staged data waiting to be flushed. */
+    private static final Queue<Session> flushQueue = new ConcurrentLinkedQueue<>();
+
+    /** The time it takes a reactor to flush all of its queued sessions. */
+    private static final Statistic flushLatency = new Statistic(
+        "Flush latency", "us");
+
+    /** The amount of bytes written to a socket in a single flush. */
+    private static final Statistic flushBytes = new Statistic(
+        "Bytes per flush", "b");
+
+    /** The amount of packets written to a socket in a single flush. */
+    private static final Statistic flushPackets = new Statistic(
+        "Packets per flush", "");
+
+    /** The id that will be assigned to the next session. */
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /** The id of this session, unique for this run. */
+    private final int id = nextId.incrementAndGet();
+
     /** The selection key assigned for this session. */
     private SelectionKey key;
 
+    /** The reactor that reads and writes for this session. */
+    private final Reactor reactor;
+
+    /** The packets framed by the reactor, waiting to be handled. */
+    private final InboundBuffer inbound = new InboundBuffer();
+
+    /** Limits the packets from this session handled every cycle. */
+    private final PacketThrottle throttle = new PacketThrottle();
+
     /** The buffer for reading data. */
     private final ByteBuffer inData;
 
-    /** The buffer for writing data. */
-    private final ByteBuffer outData;
+    /** The outbound queue, data the socket was unable to accept. */
+    private ByteBuffer outData;
+
+    /** If the reactor is waiting for the socket to be writable. */
+    private boolean writeInterest;
+
+    /** The amount of cycles the outbound queue has been above high-water. */
+    private int cyclesOverHighWater;
+
+    /** The amount of bytes waiting to be written, sampled every cycle. */
+    private final Statistic outboundDepth = new Statistic("Outbound queue",
+        "b");
+
+    /** The buffer that outgoing packets are staged in until flushed. */
+    private ByteBuffer staging;
+
+    /** The buffers that are written together when this session is flushed. */
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+
+    /** The amount of packets currently staged. */
+    private int stagedPackets;
+
+    /** If this session is currently waiting in the flush queue. */
+    private boolean queuedForFlush;
 
     /** The socket channel for this session. */
     private SocketChannel socketChannel;
 
     /** The login stage this session is currently in. */
-    private Stage stage;
+    private volatile Stage stage;
 
     /** The packet opcode for this session. */
     private int packetOpcode = -1;
@@ -81,6 +166,12 @@ public final class Session {
     /** The packet length for this session. */
     private int packetLength = -1;
 
+    /** The opcode of the packet currently being framed by the reactor. */
+    private int frameOpcode = -1;
+
+    /** The length of the packet currently being framed by the reactor. */
+    private int frameLength = -1;
+
     /** The packet encryptor for this session. */
     private ISAACCipher encryptor;
 
@@ -96,6 +187,9 @@ public final class Session {
     /** The host address for this session. */
     private String host;
 
+    /** The address this session is connected from. */
+    private InetAddress address;
+
     /** The packet timeout timer for this player. */
     private Stopwatch timeout = new Stopwatch();
 
@@ -107,6 +201,7 @@ public final class Session {
     public enum Stage {
         CONNECTED,
         LOGGING_IN,
+        AUTHENTICATING,
         LOGGED_IN,
         LOGGED_OUT
     }
@@ -116,31 +211,141 @@ public final class Session {
      * 
      * @param key
      *            the selection key assigned to this session.
+     * @param reactor
+     *            the reactor that reads and writes for this session.
      */
-    public Session(SelectionKey key) {
+    public Session(SelectionKey key, Reactor reactor) {
         this.key = key;
+        this.reactor = reactor;
         stage = Stage.CONNECTED;
         inData = ByteBuffer.allocateDirect(512);
         outData = ByteBuffer.allocateDirect(8192);
+        staging = ByteBuffer.allocateDirect(8192);
 
         if (key != null) {
             socketChannel = (SocketChannel) key.channel();
-            host = socketChannel.socket().getInetAddress().getHostAddress()
-                .toLowerCase();
+            address = socketChannel.socket().getInetAddress();
+            host = address.getHostAddress().toLowerCase();
             player = new Player(this);
             packetBuilder = new PacketEncoder(player);
         }
     }
 
+    /**
+     * Create a new {@link Session} that isn't connected to anything, used to
+     * replay captured packets. Packets sent to this session are encoded as
+     * usual and then discarded, and the player is never saved.
+     * 
+     * @param username
+     *            the username of the player.
+     */
+    Session(String username) {
+        this(null, null);
+        host = "replay";
+        player = new Player(this);
+        packetBuilder = new PacketEncoder(player);
+        player.setUsername(username);
+        player.setUsernameHash(Utility.nameToHash(username));
+        stage = Stage.AUTHENTICATING;
+
+        // Packets are still encoded as usual, so they need a cipher.
+        encryptor = new ISAACCipher(new int[4]);
+    }
+
+    /**
+     * Reads all of the data available from the socket, and frames it into
+     * packets that are queued to be handled on the game thread. Data sent
+     * before the player is logged in is handled as part of the login process
+     * instead. This is executed on the reactor thread for this session.
+     * 
+     * @return <code>true</code> if the data was read, <code>false</code> if
+     *         the connection has been closed or an error occurred.
+     */
+    boolean read() {
+        try {
+            if (socketChannel.read(inData) == -1) {
+                return false;
+            }
+
+            inData.flip();
+
+            while (inData.hasRemaining()) {
+
+                // Handle login here if needed.
+                if (stage != Stage.LOGGED_IN) {
+                    if (!handleLogin()) {
+                        break;
+                    }
+                    continue;
+                }
+
+                // Decode the packet opcode and packet length.
+                if (frameOpcode == -1) {
+                    frameOpcode = (inData.get() & 0xff) - decryptor
+                        .getKey() & 0xff;
+                }
+
+                if (frameLength == -1) {
+                    frameLength = Utility.PACKET_LENGTHS[frameOpcode];
+
+                    if (frameLength == -1) {
+                        if (!inData.hasRemaining()) {
+                            break;
+                        }
+                        frameLength = inData.get() & 0xff;
+                    }
+                }
+
+                // Wait for the rest of the packet if it hasn't all arrived.
+                if (inData.remaining() < frameLength) {
+                    break;
+                }
+
+                if (!inbound.offer(frameOpcode, inData, frameLength)) {
+                    logger.warning(this + " disconnected, "
+                        + InboundBuffer.MAX_CAPACITY
+                        + " bytes of packets waiting to be handled.");
+                    return false;
+                }
+                frameOpcode = -1;
+                frameLength = -1;
+            }
+
+            // Keep anything that hasn't been handled for the next read.
+            inData.compact();
+            return true;
+        } catch (ClosedChannelException e) {
+
+            // The session was disconnected by the game thread.
+            return false;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Gets the packets framed by the reactor, waiting to be handled on the
+     * game thread.
+     * 
+     * @return the inbound packets.
+     */
+    InboundBuffer getInbound() {
+        return inbound;
+    }
+
     /**
      * Handles the login process for this session.
+     * 
+     * @return <code>true</code> if a login message was handled and the
+     *         remaining data can be read, <code>false</code> if more data is
+     *         needed or the rest of the data should be ignored.
      */
-    public void handleLogin() throws Exception {
+    private boolean handleLogin() {
         switch (getStage()) {
         case CONNECTED:
             if (inData.remaining() < 2) {
-                inData.compact();
-                return;
+                return false;
             }
 
             // Validate the request.
@@ -149,32 +354,33 @@ public final class Session {
 
             if (request != 14) {
                 logger.warning("Invalid login request: " + request);
-                disconnect();
-                return;
+                rejectLogin();
+                return false;
             }
 
             // Write the response and send it.
-            ProtocolBuffer out = new ProtocolBuffer(17);
+            ProtocolBuffer out = BufferPool.acquire(17);
             out.writeLong(0); // First 8 bytes are ignored by the client.
             out.writeByte(0); // The response opcode, 0 for logging in.
             out.writeLong(new SecureRandom().nextLong()); // SSK.
             send(out.getBuffer());
+            out.release();
 
             stage = Stage.LOGGING_IN;
-            break;
+            return true;
         case LOGGING_IN:
             if (inData.remaining() < 2) {
-                inData.compact();
-                return;
+                return false;
             }
 
             // Validate the login type.
+            int start = inData.position();
             int loginType = inData.get();
 
             if (loginType != 16 && loginType != 18) {
                 logger.warning("Invalid login type: " + loginType);
-                disconnect();
-                return;
+                rejectLogin();
+                return false;
             }
 
             // Ensure that we can read all of the login block.
@@ -183,272 +389,353 @@ public final class Session {
 
             if (loginEncryptPacketSize <= 0) {
                 logger.warning("Zero RSA packet size");
-                disconnect();
-                return;
+                rejectLogin();
+                return false;
             }
 
             if (inData.remaining() < blockLength) {
-                inData.flip();
-                inData.compact();
-                return;
+                inData.position(start);
+                return false;
             }
 
-            // Read the login block.
-            ProtocolBuffer in = new ProtocolBuffer(inData);
-            in.readByte(); // Ignore the magic ID.
-
-            // Validate the client version.
-            int clientVersion = in.readShort();
+            // Copy the login block and hand it off to the login pipeline,
+            // the expensive work is done away from the game thread.
+            byte[] block = new byte[blockLength];
+            inData.get(block);
+            stage = Stage.AUTHENTICATING;
+            LoginPipeline.submit(this, block);
+            return true;
+        default:
+
+            // Ignore anything sent while the login is being processed.
+            inData.position(inData.limit());
+            return false;
+        }
+    }
 
-            if (clientVersion != 317) {
-                logger.warning("Invalid client version: " + clientVersion);
-                disconnect();
-                return;
-            }
+    /**
+     * Rejects a malformed login and ignores anything else sent by the client.
+     * This is called by the reactor thread, so the session is disconnected by
+     * the game thread.
+     */
+    private void rejectLogin() {
+        inData.position(inData.limit());
+        ServerEngine.queueDisconnect(this);
+    }
 
-            in.readByte(); // Skip the high/low memory version.
+    /**
+     * Decodes the login block and sets up the ISAAC ciphers for this session.
+     * This is the first stage of the login pipeline and is executed on a login
+     * thread.
+     * 
+     * @param block
+     *            the login block sent by the client.
+     * @return the buffer containing the user authentication, or
+     *         <code>null</code> if the login block was invalid.
+     */
+    ProtocolBuffer decodeLoginBlock(byte[] block) {
 
-            for (int i = 0; i < 9; i++) { // Skip the CRC keys.
-                in.readInt();
-            }
-            loginEncryptPacketSize--;
-            in.readByte();
+        // Read the login block.
+        ProtocolBuffer in = new ProtocolBuffer(ByteBuffer.wrap(block));
+        int loginEncryptPacketSize = block.length - (36 + 1 + 1 + 2);
+        in.readByte(); // Ignore the magic ID.
 
-            String username = null;
-            String password = null;
+        // Validate the client version.
+        int clientVersion = in.readShort();
 
-            // Either decode RSA or ignore it depending on the settings.
-            if (DECODE_RSA) {
+        if (clientVersion != 317) {
+            logger.warning("Invalid client version: " + clientVersion);
+            return null;
+        }
 
-                // Create the RSA buffer.
-                byte[] encryptionBytes = new byte[loginEncryptPacketSize];
-                in.getBuffer().get(encryptionBytes);
+        in.readByte(); // Skip the high/low memory version.
 
-                ByteBuffer rsaBuffer = ByteBuffer.wrap(new BigInteger(
-                    encryptionBytes).modPow(RSA_EXPONENT, RSA_MODULUS)
-                    .toByteArray());
+        for (int i = 0; i < 9; i++) { // Skip the CRC keys.
+            in.readInt();
+        }
+        loginEncryptPacketSize--;
+        in.readByte();
 
-                // Check if RSA block can be decoded.
-                int rsaOpcode = rsaBuffer.get();
+        // Either decode RSA or ignore it depending on the settings.
+        ByteBuffer rsaBuffer = in.getBuffer();
 
-                if (rsaOpcode != 10) {
-                    logger.warning("Unable to decode RSA block properly!");
-                    disconnect();
-                    return;
-                }
+        if (DECODE_RSA) {
 
-                // Set up the ISAAC ciphers.
-                long clientHalf = rsaBuffer.getLong();
-                long serverHalf = rsaBuffer.getLong();
+            // Create the RSA buffer.
+            byte[] encryptionBytes = new byte[loginEncryptPacketSize];
+            in.getBuffer().get(encryptionBytes);
 
-                int[] isaacSeed = { (int) (clientHalf >> 32), (int) clientHalf,
-                        (int) (serverHalf >> 32), (int) serverHalf };
+            rsaBuffer = ByteBuffer.wrap(RSA_KEY.decrypt(
+                new BigInteger(encryptionBytes)).toByteArray());
+        }
 
-                decryptor = new ISAACCipher(isaacSeed);
+        // Check if RSA block can be decoded.
+        int rsaOpcode = rsaBuffer.get();
 
-                for (int i = 0; i < isaacSeed.length; i++) {
-                    isaacSeed[i] += 50;
+        if (DECODE_RSA && rsaOpcode != 10) {
+            logger.warning("Unable to decode RSA block properly!");
+            return null;
+        }
 
-                }
+        // Set up the ISAAC ciphers.
+        long clientHalf = rsaBuffer.getLong();
+        long serverHalf = rsaBuffer.getLong();
 
-                encryptor = new ISAACCipher(isaacSeed);
+        int[] isaacSeed = { (int) (clientHalf >> 32), (int) clientHalf,
+                (int) (serverHalf >> 32), (int) serverHalf };
 
-                // Read the user authentication.
-                rsaBuffer.getInt(); // Skip the user ID.
-                ProtocolBuffer readStr = new ProtocolBuffer(rsaBuffer);
-                username = readStr.readString();
-                password = readStr.readString();
-            } else {
-                in.getBuffer().get();
+        decryptor = new ISAACCipher(isaacSeed);
 
-                // Set up the ISAAC ciphers.
-                long clientHalf = in.getBuffer().getLong();
-                long serverHalf = in.getBuffer().getLong();
+        for (int i = 0; i < isaacSeed.length; i++) {
+            isaacSeed[i] += 50;
 
-                int[] isaacSeed = { (int) (clientHalf >> 32), (int) clientHalf,
-                        (int) (serverHalf >> 32), (int) serverHalf };
+        }
 
-                decryptor = new ISAACCipher(isaacSeed);
+        encryptor = new ISAACCipher(isaacSeed);
 
-                for (int i = 0; i < isaacSeed.length; i++) {
-                    isaacSeed[i] += 50;
+        rsaBuffer.getInt(); // Skip the user ID.
+        return new ProtocolBuffer(rsaBuffer);
+    }
 
-                }
+    /**
+     * Reads and validates the user authentication. This is the second stage
+     * of the login pipeline and is executed on a login thread.
+     * 
+     * @param credentials
+     *            the buffer containing the user authentication.
+     * @return the login response code.
+     */
+    int authenticate(ProtocolBuffer credentials) {
 
-                encryptor = new ISAACCipher(isaacSeed);
+        // Read the user authentication.
+        String username = credentials.readString();
+        String password = credentials.readString();
 
-                // Read the user authentication.
-                in.getBuffer().getInt(); // Skip the user ID.
-                username = in.readString();
-                password = in.readString();
-            }
+        // Edit the username and password for security purposes.
+        username = username.toLowerCase().replaceAll("_", " ").trim();
+        password = password.toLowerCase();
 
-            // Edit the username and password for security purposes.
-            username = username.toLowerCase().replaceAll("_", " ").trim();
-            password = password.toLowerCase();
+        // Make sure the account credentials are valid.
+        boolean invalidCredentials = !username
+            .matches("^[a-zA-Z0-9_ ]{1,12}$") || password.isEmpty() || password
+            .length() > 20;
 
-            // Make sure the account credentials are valid.
-            boolean invalidCredentials = !username
-                .matches("^[a-zA-Z0-9_ ]{1,12}$") || password.isEmpty() || password
-                .length() > 20;
+        // Create the initial response code.
+        int response = invalidCredentials ? Utility.LOGIN_RESPONSE_INVALID_CREDENTIALS
+            : Utility.LOGIN_RESPONSE_OK;
 
-            // Create the initial response code.
-            int response = invalidCredentials ? Utility.LOGIN_RESPONSE_INVALID_CREDENTIALS
-                : Utility.LOGIN_RESPONSE_OK;
+        // Edit it for banned hosts, in case they were banned after they
+        // connected.
+        response = HostGateway.isBanned(address) ? Utility.LOGIN_RESPONSE_ACCOUNT_DISABLED
+            : response;
 
-            // Edit it for banned hosts.
-            response = HostGateway.getBannedHosts().contains(host) ? Utility.LOGIN_RESPONSE_ACCOUNT_DISABLED
-                : response;
+        if (response == Utility.LOGIN_RESPONSE_OK) {
 
-            // Do not load the character file if the response is invalid.
-            if (response == Utility.LOGIN_RESPONSE_OK) {
+            // Set the username and password.
+            player.setUsername(username);
+            player.setPassword(password);
 
-                // Set the username and password.
-                player.setUsername(username);
-                player.setPassword(password);
+            // Cache the username hash.
+            player.setUsernameHash(Utility.nameToHash(username));
+        }
+        return response;
+    }
 
-                // Cache the username hash.
-                player.setUsernameHash(Utility.nameToHash(username));
+    /**
+     * Loads the character file for the player. This is the third stage of the
+     * login pipeline and is executed on a login thread.
+     * 
+     * @return the login response code.
+     */
+    int loadProfile() {
+        ReadPlayerFileTask read = new ReadPlayerFileTask(player);
+        return read.call();
+    }
 
-                // Check if the player is already logged in.
-                if (World.getPlayerByHash(player.getUsernameHash()) != null) {
-                    response = Utility.LOGIN_RESPONSE_ACCOUNT_ONLINE;
-                }
+    /**
+     * Loads the private RSA key from {@link #RSA_KEY_FILE}, or falls back to
+     * the built in key without its Chinese Remainder Theorem parameters if the
+     * file could not be loaded.
+     * 
+     * @return the private RSA key.
+     */
+    private static RSAKey loadRSAKey() {
+        try {
+            RSAKey key = RSAKey.load(new File(RSA_KEY_FILE));
 
-                // Load the character.
-                if (response == 2) {
-                    ReadPlayerFileTask read = new ReadPlayerFileTask(player);
-                    response = read.call();
-                }
+            if (!key.isCrt()) {
+                logger.warning("The RSA key in " + RSA_KEY_FILE
+                    + " has no CRT parameters, logins will decrypt slower!");
             }
+            return key;
+        } catch (IOException e) {
+            logger.warning("Unable to load " + RSA_KEY_FILE
+                + ", using the built in RSA key instead.");
+            return new RSAKey(RSA_MODULUS, RSA_EXPONENT);
+        }
+    }
 
-            // Check if we even have enough space for the player.
-            if (World.getPlayers().getSize() >= World.getPlayers()
-                .getCapacity()) {
-                response = Utility.LOGIN_RESPONSE_WORLD_FULL;
-            }
+    /**
+     * Refuses the login of this session before it has been processed, with
+     * the argued response code. This is called by the reactor thread, so the
+     * session is disconnected by the game thread.
+     * 
+     * @param response
+     *            the response code to send to the client.
+     */
+    void refuseLogin(int response) {
+        ProtocolBuffer resp = BufferPool.acquire(3);
+        resp.writeByte(response);
+        resp.writeByte(0);
+        resp.writeByte(0);
+        send(resp.getBuffer());
+        resp.release();
+        ServerEngine.queueDisconnect(this);
+    }
 
-            // Write the rights and the client response code.
-            ProtocolBuffer resp = new ProtocolBuffer(3);
-            resp.writeByte(response);
-            resp.writeByte(player.getRights().getProtocolValue());
-            resp.writeByte(0);
-            send(resp.getBuffer());
-
-            // Disconnect the player if the response is not two.
-            if (response != Utility.LOGIN_RESPONSE_OK) {
-                disconnect();
-                return;
-            }
+    /**
+     * Admits the player into the game world, sending the response code and
+     * the initial packets needed to play. This is the final stage of the login
+     * pipeline and is executed on the game thread.
+     * 
+     * @param response
+     *            the response code from the login threads.
+     */
+    void finishLogin(int response) {
 
-            // Add the player to the entity container.
-            World.getPlayers().add(player);
-
-            // Send the map region, slot, and update appearance.
-            packetBuilder.sendMapRegion();
-            packetBuilder.sendDetails();
-            player.getFlags().flag(Flag.APPEARANCE);
-
-            // Send all of the sidebar interfaces.
-            packetBuilder.sendSidebarInterface(1, 3917);
-            packetBuilder.sendSidebarInterface(2, 638);
-            packetBuilder.sendSidebarInterface(3, 3213);
-            packetBuilder.sendSidebarInterface(4, 1644);
-            packetBuilder.sendSidebarInterface(5, 5608);
-            packetBuilder.sendSidebarInterface(6, player.getSpellbook()
-                .getSidebarInterface());
-            packetBuilder.sendSidebarInterface(8, 5065);
-            packetBuilder.sendSidebarInterface(9, 5715);
-            packetBuilder.sendSidebarInterface(10, 2449);
-            packetBuilder.sendSidebarInterface(11, 904);
-            packetBuilder.sendSidebarInterface(12, 147);
-            packetBuilder.sendSidebarInterface(13, 962);
-            packetBuilder.sendSidebarInterface(0, 2423);
-
-            // Teleport the player to the saved position.
-            if (SOCKET_FLOOD) {
-                if (player.getUsername().equals(SOCKET_FLOOD_USERNAME)) {
-                    player.move(player.getPosition());
-                } else {
-                    player.move(player.getPosition().move(200));
-                }
-            } else if (!SOCKET_FLOOD) {
+        // Do not continue if the client has already left.
+        if (stage != Stage.AUTHENTICATING) {
+            return;
+        }
+
+        // Check if the player is already logged in.
+        if (response == Utility.LOGIN_RESPONSE_OK && World
+            .getPlayerByHash(player.getUsernameHash()) != null) {
+            response = Utility.LOGIN_RESPONSE_ACCOUNT_ONLINE;
+        }
+
+        // Check if we even have enough space for the player.
+        if (World.getPlayers().getSize() >= World.getPlayers().getCapacity()) {
+            response = Utility.LOGIN_RESPONSE_WORLD_FULL;
+        }
+
+        // Write the rights and the client response code.
+        ProtocolBuffer resp = BufferPool.acquire(3);
+        resp.writeByte(response);
+        resp.writeByte(player.getRights().getProtocolValue());
+        resp.writeByte(0);
+        send(resp.getBuffer());
+        resp.release();
+
+        // Disconnect the player if the response is not two.
+        if (response != Utility.LOGIN_RESPONSE_OK) {
+            disconnect();
+            return;
+        }
+
+        // Add the player to the entity container.
+        World.getPlayers().add(player);
+
+        // Send the map region, slot, and update appearance.
+        packetBuilder.sendMapRegion();
+        packetBuilder.sendDetails();
+        player.updateAppearance();
+
+        // Send all of the sidebar interfaces.
+        packetBuilder.sendSidebarInterface(1, 3917);
+        packetBuilder.sendSidebarInterface(2, 638);
+        packetBuilder.sendSidebarInterface(3, 3213);
+        packetBuilder.sendSidebarInterface(4, 1644);
+        packetBuilder.sendSidebarInterface(5, 5608);
+        packetBuilder.sendSidebarInterface(6, player.getSpellbook()
+            .getSidebarInterface());
+        packetBuilder.sendSidebarInterface(8, 5065);
+        packetBuilder.sendSidebarInterface(9, 5715);
+        packetBuilder.sendSidebarInterface(10, 2449);
+        packetBuilder.sendSidebarInterface(11, 904);
+        packetBuilder.sendSidebarInterface(12, 147);
+        packetBuilder.sendSidebarInterface(13, 962);
+        packetBuilder.sendSidebarInterface(0, 2423);
+
+        // Teleport the player to the saved position.
+        if (SOCKET_FLOOD) {
+            if (player.getUsername().equals(SOCKET_FLOOD_USERNAME)) {
                 player.move(player.getPosition());
+            } else {
+                player.move(player.getPosition().move(200));
             }
+        } else if (!SOCKET_FLOOD) {
+            player.move(player.getPosition());
+        }
 
-            // Refresh skills, equipment, and the inventory.
-            Skills.refreshAll(player);
-            player.getEquipment().refresh();
-            player.getInventory().refresh();
-            player.writeBonus();
-
-            // Update private messages on login.
-            player.getPacketBuilder().sendPrivateMessagingList(2);
-            player.getPrivateMessage().updateThisList();
-            player.getPrivateMessage().updateOtherList(true);
-
-            // Send the context menus.
-            packetBuilder.sendContextMenu("Trade with", 4);
-            packetBuilder.sendContextMenu("Follow", 5);
-
-            // Send the starter package and makeover mage interface if this
-            // player is new.
-            if (player.isNewPlayer()) {
-                player.getInventory().add(Player.STARTER_PACKAGE);
-                packetBuilder.sendInterface(3559);
-                player.setNewPlayer(false);
-            }
+        // Refresh skills, equipment, and the inventory.
+        Skills.refreshAll(player);
+        player.getEquipment().refresh();
+        player.getInventory().refresh();
+        player.writeBonus();
+
+        // Update private messages on login.
+        player.getPacketBuilder().sendPrivateMessagingList(2);
+        player.getPrivateMessage().updateThisList();
+        player.getPrivateMessage().updateOtherList(true);
+
+        // Send the context menus.
+        packetBuilder.sendContextMenu("Trade with", 4);
+        packetBuilder.sendContextMenu("Follow", 5);
+
+        // Send the starter package and makeover mage interface if this
+        // player is new.
+        if (player.isNewPlayer()) {
+            player.getInventory().add(Player.STARTER_PACKAGE);
+            packetBuilder.sendInterface(3559);
+            player.setNewPlayer(false);
+        }
 
-            // Schedule various tasks.
-            if (player.isPoisoned()) {
-                TaskManager.submit(new CombatPoisonEffect(player));
-            }
-            if (player.getTeleblockTimer() > 0) {
-                TaskManager.submit(new CombatTeleblockEffect(player));
-            }
-            if (player.getSkullTimer() > 0) {
-                player.setSkullIcon(0);
-                TaskManager.submit(new CombatSkullEffect(player));
-            }
+        // Schedule various tasks.
+        if (player.isPoisoned()) {
+            TaskManager.submit(new CombatPoisonEffect(player));
+        }
+        if (player.getTeleblockTimer() > 0) {
+            TaskManager.submit(new CombatTeleblockEffect(player));
+        }
+        if (player.getSkullTimer() > 0) {
+            player.setSkullIcon(0);
+            TaskManager.submit(new CombatSkullEffect(player));
+        }
 
-            // Send the welcome message.
-            packetBuilder.sendMessage(Player.WELCOME_MESSAGE);
+        // Send the welcome message.
+        packetBuilder.sendMessage(Player.WELCOME_MESSAGE);
 
-            // Check dynamic minigame actions.
-            for (Minigame minigame : MinigameFactory.getMinigames().values()) {
-                if (minigame.inMinigame(player)) {
-                    minigame.fireOnLogin(player);
-                }
+        // Check dynamic minigame actions.
+        for (Minigame minigame : MinigameFactory.getMinigames().values()) {
+            if (minigame.inMinigame(player)) {
+                minigame.fireOnLogin(player);
             }
-
-            // Send the weapon interface and animation.
-            AssignWeaponInterface.assignInterface(player, player.getEquipment()
-                .get(Utility.EQUIPMENT_SLOT_WEAPON));
-            AssignWeaponAnimation.assignAnimation(player, player.getEquipment()
-                .get(Utility.EQUIPMENT_SLOT_WEAPON));
-
-            // Last but not least, send client configurations.
-            packetBuilder.sendConfig(173, player.getMovementQueue()
-                .isRunToggled() ? 1 : 0);
-            packetBuilder.sendConfig(172, player.isAutoRetaliate() ? 0 : 1);
-            packetBuilder.sendConfig(player.getFightType().getParentId(),
-                player.getFightType().getChildId());
-            packetBuilder.sendConfig(427, player.isAcceptAid() ? 1 : 0);
-            packetBuilder.sendConfig(108, 0);
-            packetBuilder.sendConfig(301, 0);
-            packetBuilder.sendString(player.getRunEnergy() + "%", 149);
-            CombatPrayer.resetAllGlows(player);
-
-            // The player is now online!
-            logger.info(player + " has logged in.");
-            stage = Stage.LOGGED_IN;
-            timeout.reset();
-            break;
-        case LOGGED_OUT:
-        case LOGGED_IN:
-            disconnect();
-            break;
         }
+
+        // Send the weapon interface and animation.
+        AssignWeaponInterface.assignInterface(player, player.getEquipment()
+            .get(Utility.EQUIPMENT_SLOT_WEAPON));
+        AssignWeaponAnimation.assignAnimation(player, player.getEquipment()
+            .get(Utility.EQUIPMENT_SLOT_WEAPON));
+
+        // Last but not least, send client configurations.
+        packetBuilder.sendConfig(173, player.getMovementQueue()
+            .isRunToggled() ? 1 : 0);
+        packetBuilder.sendConfig(172, player.isAutoRetaliate() ? 0 : 1);
+        packetBuilder.sendConfig(player.getFightType().getParentId(),
+            player.getFightType().getChildId());
+        packetBuilder.sendConfig(427, player.isAcceptAid() ? 1 : 0);
+        packetBuilder.sendConfig(108, 0);
+        packetBuilder.sendConfig(301, 0);
+        packetBuilder.sendString(player.getRunEnergy() + "%", 149);
+        CombatPrayer.resetAllGlows(player);
+
+        // The player is now online!
+        logger.info(player + " has logged in.");
+        stage = Stage.LOGGED_IN;
+        timeout.reset();
+        PacketCapture.recordLogin(this, player);
     }
 
     /**
@@ -464,7 +751,11 @@ public final class Session {
                     }
                 }
 
-                World.savePlayer(player);
+                // Replayed players are never saved.
+                if (key != null) {
+                    World.savePlayer(player);
+                }
+                PacketCapture.recordLogout(this);
                 TaskManager.cancelTasks(player);
                 player.getTradeSession().reset(false);
                 player.getPrivateMessage().updateOtherList(false);
@@ -475,11 +766,17 @@ public final class Session {
                 }
             }
 
-            key.attach(null);
-            key.cancel();
+            // Write anything still staged, such as the login response.
+            flush();
+
             stage = Stage.LOGGED_OUT;
-            socketChannel.close();
-            HostGateway.exit(host);
+
+            if (key != null) {
+                key.attach(null);
+                key.cancel();
+                socketChannel.close();
+                HostGateway.exit(address);
+            }
 
             if (player != null) {
                 logger.info(player + " has logged out.");
@@ -498,20 +795,15 @@ public final class Session {
      *            the buffer to send.
      */
     public void send(ByteBuffer buffer) {
-        if (!socketChannel.isOpen())
+        if (socketChannel == null || !socketChannel.isOpen())
             return;
 
         buffer.flip();
+        stage(buffer);
 
-        try {
-            socketChannel.write(buffer);
-
-            if (buffer.hasRemaining()) {
-                outData.put(buffer);
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            disconnect();
+        // Have the reactor write it straight away if we aren't coalescing.
+        if (!COALESCE_PACKETS) {
+            reactor.flush(this);
         }
     }
 
@@ -525,11 +817,296 @@ public final class Session {
         send(buffer.getBuffer());
     }
 
+    /**
+     * Sends a packet made of a header encoded for this session and a payload
+     * shared with other sessions, copying both straight into the staging
+     * buffer.
+     * 
+     * @param header
+     *            the array holding the header.
+     * @param headerLength
+     *            the length of the header.
+     * @param payload
+     *            the flipped payload, which is left unmodified.
+     */
+    public void send(byte[] header, int headerLength, ByteBuffer payload) {
+        if (socketChannel == null || !socketChannel.isOpen())
+            return;
+
+        stage(header, headerLength, payload);
+
+        // Have the reactor write it straight away if we aren't coalescing.
+        if (!COALESCE_PACKETS) {
+            reactor.flush(this);
+        }
+    }
+
+    /**
+     * Copies a header and a flipped payload into the staging buffer, and
+     * queues this session to be flushed if it isn't already.
+     * 
+     * @param header
+     *            the array holding the header.
+     * @param headerLength
+     *            the length of the header.
+     * @param payload
+     *            the flipped payload, which is left unmodified.
+     */
+    private synchronized void stage(byte[] header, int headerLength,
+        ByteBuffer payload) {
+        int position = payload.position();
+        staging = ensureCapacity(staging, headerLength + payload.remaining());
+        staging.put(header, 0, headerLength);
+        staging.put(payload);
+        payload.position(position);
+        stagedPackets++;
+
+        if (!queuedForFlush) {
+            queuedForFlush = true;
+            flushQueue.add(this);
+        }
+    }
+
+    /**
+     * Copies a flipped buffer into the staging buffer, and queues this session
+     * to be flushed if it isn't already.
+     * 
+     * @param buffer
+     *            the buffer to stage.
+     */
+    private synchronized void stage(ByteBuffer buffer) {
+        staging = ensureCapacity(staging, buffer.remaining());
+        staging.put(buffer);
+        stagedPackets++;
+
+        if (!queuedForFlush) {
+            queuedForFlush = true;
+            flushQueue.add(this);
+        }
+    }
+
+    /**
+     * Writes the data left over from the last flush along with all of the
+     * staged packets to the socket using a single gathering write. Anything
+     * the socket is unable to accept is kept in the outbound queue, and the
+     * reactor is asked to flush again as soon as the socket is writable.
+     * 
+     * @return <code>true</code> if the flush was successful,
+     *         <code>false</code> if an error occurred while writing.
+     */
+    public synchronized boolean flush() {
+        queuedForFlush = false;
+
+        if (staging.position() == 0 && outData.position() == 0) {
+            setWriteInterest(false);
+            return true;
+        }
+
+        // Don't bother writing to a closed socket.
+        if (!socketChannel.isOpen()) {
+            staging.clear();
+            outData.clear();
+            stagedPackets = 0;
+            return true;
+        }
+
+        outData.flip();
+        staging.flip();
+        gather[0] = outData;
+        gather[1] = staging;
+
+        try {
+            long written = socketChannel.write(gather);
+            flushBytes.record(written);
+            flushPackets.record(stagedPackets);
+
+            // Carry anything the socket couldn't take over to the next flush.
+            outData.compact();
+
+            if (staging.hasRemaining()) {
+                outData = ensureCapacity(outData, staging.remaining());
+                outData.put(staging);
+            }
+
+            setWriteInterest(outData.position() > 0);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            outData.clear();
+            return false;
+        } finally {
+            staging.clear();
+            stagedPackets = 0;
+        }
+    }
+
+    /**
+     * Sets if the reactor should flush this session whenever its socket is
+     * writable.
+     * 
+     * @param interested
+     *            if this session has data waiting in the outbound queue.
+     */
+    private void setWriteInterest(boolean interested) {
+        if (writeInterest == interested || !key.isValid()) {
+            return;
+        }
+
+        try {
+            key.interestOps(interested ? SelectionKey.OP_READ
+                | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            writeInterest = interested;
+        } catch (CancelledKeyException e) {
+
+            // The session was disconnected on another thread.
+        }
+    }
+
+    /**
+     * Checks how much data is waiting to be written to this session, and
+     * disconnects it if it has been above the high-water mark for too many
+     * cycles. This should be called once every cycle on the game thread.
+     * 
+     * @return <code>true</code> if this session is still connected,
+     *         <code>false</code> if it has been disconnected.
+     */
+    boolean checkBackpressure() {
+        int queued = getQueuedBytes();
+        outboundDepth.record(queued);
+
+        if (queued <= OUTBOUND_HIGH_WATER) {
+            cyclesOverHighWater = 0;
+            return true;
+        }
+
+        if (++cyclesOverHighWater >= OUTBOUND_EVICT_CYCLES) {
+            logger.warning(this + " disconnected, " + queued
+                + " bytes queued for " + cyclesOverHighWater + " cycles.");
+            disconnect();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the amount of bytes waiting to be written to this session.
+     * 
+     * @return the amount of queued bytes.
+     */
+    public synchronized int getQueuedBytes() {
+        return outData.position() + staging.position();
+    }
+
+    /**
+     * Hands every session that has staged data waiting to be written to its
+     * reactor to be flushed. This should be called once at the end of every
+     * cycle.
+     */
+    public static void flushAll() {
+        int amount = flushQueue.size();
+
+        // Only flush the sessions queued before this call, sessions that are
+        // queued again during the flush will be handled next cycle.
+        for (int i = 0; i < amount; i++) {
+            Session session = flushQueue.poll();
+
+            if (session == null) {
+                break;
+            }
+
+            session.reactor.flush(session);
+        }
+    }
+
+    /**
+     * Ensures the argued buffer has enough space remaining for the requested
+     * amount of bytes, doubling its capacity until it does.
+     * 
+     * @param buffer
+     *            the buffer in writing mode.
+     * @param requested
+     *            the amount of requested bytes.
+     * @return the argued buffer, or a larger copy of it.
+     */
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int requested) {
+        if (buffer.remaining() >= requested) {
+            return buffer;
+        }
+
+        int capacity = buffer.capacity() * 2;
+
+        while (capacity - buffer.position() < requested) {
+            capacity *= 2;
+        }
+
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    /**
+     * Gets the statistic for the time it takes a reactor to flush all of its
+     * queued sessions.
+     * 
+     * @return the flush latency statistic.
+     */
+    public static Statistic getFlushLatency() {
+        return flushLatency;
+    }
+
+    /**
+     * Gets the statistic for the amount of bytes written per flush.
+     * 
+     * @return the bytes per flush statistic.
+     */
+    public static Statistic getFlushBytes() {
+        return flushBytes;
+    }
+
+    /**
+     * Gets the statistic for the amount of bytes waiting to be written to
+     * this session, sampled every cycle.
+     * 
+     * @return the outbound queue depth statistic.
+     */
+    public Statistic getOutboundDepth() {
+        return outboundDepth;
+    }
+
+    /**
+     * Gets the throttle that limits the packets from this session handled
+     * every cycle.
+     * 
+     * @return the packet throttle.
+     */
+    public PacketThrottle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Gets the statistic for the amount of packets written per flush.
+     * 
+     * @return the packets per flush statistic.
+     */
+    public static Statistic getFlushPackets() {
+        return flushPackets;
+    }
+
     @Override
     public String toString() {
         return "SESSION[host= " + host + ", stage= " + stage.name() + "]";
     }
 
+    /**
+     * Gets the id of this session, unique for this run.
+     * 
+     * @return the id.
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Gets the remote host of the client.
      * 
@@ -622,24 +1199,6 @@ public final class Session {
         this.packetLength = packetLength;
     }
 
-    /**
-     * Gets the buffer for reading data.
-     * 
-     * @return the buffer for reading data.
-     */
-    public ByteBuffer getInData() {
-        return inData;
-    }
-
-    /**
-     * Gets the buffer for writing data.
-     * 
-     * @return the buffer for writing data.
-     */
-    public ByteBuffer getOutData() {
-        return outData;
-    }
-
     /**
      * Gets the packet builder
      * 
@@ -0,0 +1,155 @@
+package com.asteria.engine.net.packet;
+
+import java.nio.ByteBuffer;
+
+import com.asteria.engine.net.BufferPool;
+import com.asteria.engine.net.ProtocolBuffer;
+import com.asteria.engine.net.Session;
+import com.asteria.world.entity.player.Player;
+import com.asteria.world.map.Position;
+
+/**
+ * A packet that is sent to many players at once. The payload is encoded a
+ * single time, and only the header of the packet is written for each
+ * recipient, since the opcode is encrypted differently for every session. If
+ * the packet is placed at a position, the coordinates relative to the region
+ * of each recipient are written in front of it as well. The header and the
+ * payload are copied straight into the staging buffer of every recipient.
+ * <p>
+ * An example of usage below:
+ *
+ * <pre>
+ * BroadcastPacket packet = new BroadcastPacket(4, Length.FIXED, 7);
+ * packet.getPayload().writeByte(0).writeShort(id).writeByte(level)
+ *         .writeShort(0);
+ *
+ * for (Player player : players) {
+ *     packet.sendTo(player, position);
+ * }
+ * packet.release();
+ * </pre>
+ *
+ * @author lare96
+ */
+public final class BroadcastPacket {
+
+    /**
+     * The ways the length of a packet can be written.
+     *
+     * @author lare96
+     */
+    public enum Length {
+        FIXED,
+        VARIABLE,
+        VARIABLE_SHORT
+    }
+
+    /** The opcode of this packet. */
+    private final int opcode;
+
+    /** The way the length of this packet is written. */
+    private final Length length;
+
+    /** The payload of this packet, encoded once for every recipient. */
+    private final ProtocolBuffer payload;
+
+    /**
+     * The header written for the current recipient, which is at most a
+     * placement packet followed by an opcode and a short length.
+     */
+    private final byte[] header = new byte[6];
+
+    /**
+     * Create a new {@link BroadcastPacket}.
+     *
+     * @param opcode
+     *            the opcode of this packet.
+     * @param length
+     *            the way the length of this packet is written.
+     * @param size
+     *            the expected size of the payload.
+     */
+    public BroadcastPacket(int opcode, Length length, int size) {
+        this.opcode = opcode;
+        this.length = length;
+        this.payload = BufferPool.acquire(size);
+    }
+
+    /**
+     * Sends this packet to the argued player.
+     *
+     * @param player
+     *            the player to send this packet to.
+     * @return this broadcast packet.
+     */
+    public BroadcastPacket sendTo(Player player) {
+        return sendTo(player, null);
+    }
+
+    /**
+     * Sends this packet to the argued player, placed at the argued position.
+     *
+     * @param player
+     *            the player to send this packet to.
+     * @param position
+     *            the position to place this packet at, or <code>null</code>
+     *            if this packet isn't placed anywhere.
+     * @return this broadcast packet.
+     */
+    public BroadcastPacket sendTo(Player player, Position position) {
+        Session session = player.getSession();
+        ByteBuffer data = payload.getBuffer();
+        int size = data.position();
+        int headerLength = 0;
+
+        // Write the coordinates relative to the region of this player.
+        if (position != null) {
+            header[headerLength++] = (byte) (85 + session.getEncryptor()
+                .getKey());
+            header[headerLength++] = (byte) -(position.getY() - (player
+                .getCurrentRegion().getRegionY() * 8));
+            header[headerLength++] = (byte) -(position.getX() - (player
+                .getCurrentRegion().getRegionX() * 8));
+        }
+
+        // Then the header, the payload is copied after it by the session.
+        header[headerLength++] = (byte) (opcode + session.getEncryptor()
+            .getKey());
+
+        switch (length) {
+        case FIXED:
+            break;
+        case VARIABLE:
+            header[headerLength++] = (byte) size;
+            break;
+        case VARIABLE_SHORT:
+            header[headerLength++] = (byte) (size >> 8);
+            header[headerLength++] = (byte) size;
+            break;
+        }
+
+        data.flip();
+        session.send(header, headerLength, data);
+        data.limit(data.capacity());
+        data.position(size);
+        return this;
+    }
+
+    /**
+     * Releases the payload of this packet back into the pool. This packet
+     * must not be sent after it has been released.
+     */
+    public void release() {
+        payload.release();
+    }
+
+    /**
+     * Gets the payload of this packet, which should be written to before
+     * sending this packet to anyone.
+     *
+     * @return the payload.
+     */
+    public ProtocolBuffer getPayload() {
+        return payload;
+    }
+}
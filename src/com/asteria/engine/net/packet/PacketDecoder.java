@@ -1,8 +1,36 @@
 package com.asteria.engine.net.packet;
 
-import java.io.File;
+import java.util.Arrays;
+import java.util.logging.Logger;
 
+import com.asteria.Main;
 import com.asteria.engine.net.ProtocolBuffer;
+import com.asteria.engine.net.packet.impl.DecodeAttackPlayerMagicPacket;
+import com.asteria.engine.net.packet.impl.DecodeAttackPlayerPacket;
+import com.asteria.engine.net.packet.impl.DecodeCharacterSelectionPacket;
+import com.asteria.engine.net.packet.impl.DecodeChatOptionsPacket;
+import com.asteria.engine.net.packet.impl.DecodeChatPacket;
+import com.asteria.engine.net.packet.impl.DecodeClickButtonPacket;
+import com.asteria.engine.net.packet.impl.DecodeClickItemPacket;
+import com.asteria.engine.net.packet.impl.DecodeClickScreenPacket;
+import com.asteria.engine.net.packet.impl.DecodeCommandPacket;
+import com.asteria.engine.net.packet.impl.DecodeDefaultPacket;
+import com.asteria.engine.net.packet.impl.DecodeDropItemPacket;
+import com.asteria.engine.net.packet.impl.DecodeFollowPlayerPacket;
+import com.asteria.engine.net.packet.impl.DecodeForwardDialoguePacket;
+import com.asteria.engine.net.packet.impl.DecodeInterfaceClickPacket;
+import com.asteria.engine.net.packet.impl.DecodeItemInterfacePacket;
+import com.asteria.engine.net.packet.impl.DecodeItemOnItemPacket;
+import com.asteria.engine.net.packet.impl.DecodeItemOnObjectPacket;
+import com.asteria.engine.net.packet.impl.DecodeItemOnPlayerPacket;
+import com.asteria.engine.net.packet.impl.DecodeMovementPacket;
+import com.asteria.engine.net.packet.impl.DecodeNpcActionPacket;
+import com.asteria.engine.net.packet.impl.DecodeObjectActionPacket;
+import com.asteria.engine.net.packet.impl.DecodePickupItemPacket;
+import com.asteria.engine.net.packet.impl.DecodePrivateMessagingPacket;
+import com.asteria.engine.net.packet.impl.DecodeRequestPacket;
+import com.asteria.engine.net.packet.impl.DecodeRotateCameraPacket;
+import com.asteria.engine.net.packet.impl.DecodeUpdateRegionPacket;
 import com.asteria.world.entity.player.Player;
 
 /**
@@ -18,6 +46,9 @@ public abstract class PacketDecoder {
      */
     private static PacketDecoder[] packets = new PacketDecoder[256];
 
+    /** The decoder for packets that have no decoder of their own. */
+    private static final UnhandledPacketDecoder UNHANDLED = new UnhandledPacketDecoder();
+
     /**
      * Read and handle the packet for the specified player.
      * 
@@ -29,48 +60,69 @@ public abstract class PacketDecoder {
     public abstract void decode(Player player, ProtocolBuffer buf);
 
     /**
-     * Loads new decoders that will be able to read packets under a certain
-     * opcode.
-     * 
-     * @throws Exception
-     *             if an error occurs while loading the decoders.
+     * Loads the decoders into the slots of the opcodes they're able to read,
+     * and fills every other slot with the decoder for unhandled packets so
+     * dispatching never has to check for a missing decoder.
      */
-    public static void loadDecoders() throws Exception {
-
-        // List all the files in the specified directory and loop through them.
-        File[] files = new File("./src/com/asteria/engine/net/packet/impl/")
-                .listFiles();
-
-        for (File file : files) {
-            Class<?> c = Class.forName("com.asteria.engine.net.packet.impl."
-                    + file.getName().replaceAll(".java", ""));
-
-            // Check if this class is a decoder.
-            if (!(c.getSuperclass() == PacketDecoder.class)) {
-                throw new IllegalStateException(
-                        "Illegal packet decoder! Not an instance of PacketDecoder: "
-                                + file.getName());
-            }
+    public static void loadDecoders() {
+        PacketDecoder[] decoders = {
+            new DecodeAttackPlayerMagicPacket(),
+            new DecodeAttackPlayerPacket(),
+            new DecodeCharacterSelectionPacket(),
+            new DecodeChatOptionsPacket(),
+            new DecodeChatPacket(),
+            new DecodeClickButtonPacket(),
+            new DecodeClickItemPacket(),
+            new DecodeClickScreenPacket(),
+            new DecodeCommandPacket(),
+            new DecodeDefaultPacket(),
+            new DecodeDropItemPacket(),
+            new DecodeFollowPlayerPacket(),
+            new DecodeForwardDialoguePacket(),
+            new DecodeInterfaceClickPacket(),
+            new DecodeItemInterfacePacket(),
+            new DecodeItemOnItemPacket(),
+            new DecodeItemOnObjectPacket(),
+            new DecodeItemOnPlayerPacket(),
+            new DecodeMovementPacket(),
+            new DecodeNpcActionPacket(),
+            new DecodeObjectActionPacket(),
+            new DecodePickupItemPacket(),
+            new DecodePrivateMessagingPacket(),
+            new DecodeRequestPacket(),
+            new DecodeRotateCameraPacket(),
+            new DecodeUpdateRegionPacket() };
+        Arrays.fill(packets, UNHANDLED);
 
-            // Create the decoder instance.
-            PacketDecoder packet = (PacketDecoder) c.newInstance();
+        for (PacketDecoder decoder : decoders) {
 
             // Throw an exception if no header is found for the decoder.
-            if (packet.getClass().getAnnotation(PacketOpcodeHeader.class) == null) {
-                throw new PacketHeaderException(packet);
-            }
+            PacketOpcodeHeader header = decoder.getClass().getAnnotation(
+                PacketOpcodeHeader.class);
 
-            // Get all of the data from the header.
-            int packetOpcodes[] = packet.getClass()
-                    .getAnnotation(PacketOpcodeHeader.class).value();
+            if (header == null) {
+                throw new PacketHeaderException(decoder);
+            }
 
             // Add the decoder for all of its opcodes.
-            for (int opcode : packetOpcodes) {
-                packets[opcode] = packet;
+            for (int opcode : header.value()) {
+                packets[opcode] = decoder;
             }
         }
     }
 
+    /**
+     * Gets the amount of times packets with the argued opcode have been
+     * received without a decoder to handle them.
+     * 
+     * @param opcode
+     *            the opcode of the packets.
+     * @return the amount of unhandled packets.
+     */
+    public static int getUnhandled(int opcode) {
+        return UNHANDLED.hits[opcode];
+    }
+
     /**
      * Gets the array of packet decoders.
      * 
@@ -79,4 +131,29 @@ public abstract class PacketDecoder {
     public static PacketDecoder[] getPackets() {
         return packets;
     }
+
+    /**
+     * The decoder for packets that have no decoder of their own, which does
+     * nothing but count how many of them have been received.
+     * 
+     * @author lare96
+     */
+    private static final class UnhandledPacketDecoder extends PacketDecoder {
+
+        /** A logger for printing information. */
+        private static Logger logger = Logger
+            .getLogger(UnhandledPacketDecoder.class.getSimpleName());
+
+        /** The amount of unhandled packets received for every opcode. */
+        private final int[] hits = new int[256];
+
+        @Override
+        public void decode(Player player, ProtocolBuffer buf) {
+            int opcode = player.getSession().getPacketOpcode();
+            hits[opcode]++;
+
+            if (Main.DEBUG)
+                logger.info(player + " unhandled packet " + opcode);
+        }
+    }
 }
@@ -1,8 +1,10 @@
 package com.asteria.engine.net.packet;
 
+import com.asteria.engine.net.BufferPool;
 import com.asteria.engine.net.ProtocolBuffer;
 import com.asteria.engine.net.ProtocolBuffer.ByteOrder;
 import com.asteria.engine.net.ProtocolBuffer.ValueType;
+import com.asteria.engine.net.packet.BroadcastPacket.Length;
 import com.asteria.world.entity.player.Player;
 import com.asteria.world.item.Item;
 import com.asteria.world.item.ground.GroundItem;
@@ -43,7 +45,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendHideInterfaceLayer(int interfaceIndex,
             boolean hidden) {
-        ProtocolBuffer out = new ProtocolBuffer(4);
+        ProtocolBuffer out = BufferPool.acquire(4);
         out.build(171, player.getSession());
         out.writeByte(hidden ? 1 : 0);
         out.writeShort(interfaceIndex);
@@ -61,7 +63,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder updateSpecialBar(int amount, int id) {
-        ProtocolBuffer out = new ProtocolBuffer(7);
+        ProtocolBuffer out = BufferPool.acquire(7);
         out.build(70, player.getSession());
         out.writeShort(amount);
         out.writeShort(0, ProtocolBuffer.ByteOrder.LITTLE);
@@ -100,7 +102,7 @@ public final class PacketEncoder {
     public PacketEncoder sendObjectAnimation(Position position, int animation,
             int type, int orientation) {
         sendCoordinates(position);
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(160, player.getSession());
 
         // 0 has to be sent for the position or else it won't work.
@@ -126,16 +128,23 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendAllObjectAnimation(Position position,
             int animation, int type, int orientation) {
+        BroadcastPacket packet = new BroadcastPacket(160, Length.FIXED, 4);
+
+        // 0 has to be sent for the position or else it won't work.
+        packet.getPayload().writeByte(((0 & 7) << 4) + (0 & 7), ValueType.S)
+                .writeByte((type << 2) + (orientation & 3), ValueType.S)
+                .writeShort(animation, ValueType.A);
+
         for (Player player : this.player.getLocalPlayers()) {
             if (player == null) {
                 continue;
             }
 
             if (player.getPosition().isViewableFrom(position)) {
-                player.getPacketBuilder().sendObjectAnimation(position,
-                        animation, type, orientation);
+                packet.sendTo(player, position);
             }
         }
+        packet.release();
         return this;
     }
 
@@ -152,7 +161,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendGraphic(int id, Position position, int level) {
         sendCoordinates(position);
-        ProtocolBuffer out = new ProtocolBuffer(7);
+        ProtocolBuffer out = BufferPool.acquire(7);
         out.build(4, player.getSession()).writeByte(0).writeShort(id)
                 .writeByte(level).writeShort(0);
         out.sendPacket();
@@ -171,15 +180,20 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendAllGraphic(int id, Position position, int level) {
+        BroadcastPacket packet = new BroadcastPacket(4, Length.FIXED, 6);
+        packet.getPayload().writeByte(0).writeShort(id).writeByte(level)
+                .writeShort(0);
+
         for (Player player : this.player.getLocalPlayers()) {
             if (player == null) {
                 continue;
             }
 
             if (position.isViewableFrom(player.getPosition())) {
-                player.getPacketBuilder().sendGraphic(id, position, level);
+                packet.sendTo(player, position);
             }
         }
+        packet.release();
         return this;
     }
 
@@ -195,7 +209,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendSound(int id, int type, int delay) {
-        ProtocolBuffer out = new ProtocolBuffer(8);
+        ProtocolBuffer out = BufferPool.acquire(8);
         out.build(174, player.getSession()).writeShort(id).writeByte(type)
                 .writeShort(delay);
         out.sendPacket();
@@ -219,7 +233,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendWelcomeInterface(int recoveryChange,
             boolean memberWarning, int messages, int lastLoginIP, int lastLogin) {
-        ProtocolBuffer out = new ProtocolBuffer(20);
+        ProtocolBuffer out = BufferPool.acquire(20);
         out.build(176, player.getSession())
                 .writeByte(recoveryChange, ValueType.C)
                 .writeShort(messages, ValueType.A)
@@ -240,7 +254,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder interfaceAnimation(int interfaceId, int animation) {
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(200, player.getSession()).writeShort(interfaceId)
                 .writeShort(animation);
         out.sendPacket();
@@ -259,7 +273,7 @@ public final class PacketEncoder {
         // All possible states.
         // Off - 0
         // On - 1
-        ProtocolBuffer out = new ProtocolBuffer(2);
+        ProtocolBuffer out = BufferPool.acquire(2);
         out.build(61, player.getSession()).writeByte(state);
         out.sendPacket();
         return this;
@@ -277,7 +291,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendItemOnInterfaceSlot(int id, Item item, int slot) {
-        ProtocolBuffer out = new ProtocolBuffer(32);
+        ProtocolBuffer out = BufferPool.acquire(32);
         out.buildVarShort(34, player.getSession()).writeShort(id)
                 .writeByte(slot).writeShort(item.getId() + 1);
 
@@ -302,7 +316,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendMobHeadModel(int id, int size) {
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(75, player.getSession())
                 .writeShort(id, ValueType.A, ByteOrder.LITTLE)
                 .writeShort(size, ValueType.A, ByteOrder.LITTLE);
@@ -320,7 +334,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendCustomMapRegion(Palette palette) {
         sendMapRegion();
-        ProtocolBuffer out = new ProtocolBuffer(100);
+        ProtocolBuffer out = BufferPool.acquire(100);
         out.buildVarShort(241, player.getSession());
         out.writeShort(player.getPosition().getRegionY() + 6, ValueType.A);
         out.startBitAccess();
@@ -354,7 +368,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendPlayerHeadModel(int size) {
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(185, player.getSession()).writeShort(size, ValueType.A,
                 ByteOrder.LITTLE);
         out.sendPacket();
@@ -372,7 +386,7 @@ public final class PacketEncoder {
 
         // For some reason it seems as if all of the id's are negative.
         // -1, -2, -3, -4, -5, etc.
-        ProtocolBuffer out = new ProtocolBuffer(2);
+        ProtocolBuffer out = BufferPool.acquire(2);
         out.build(24, player.getSession()).writeByte(id, ValueType.A);
         out.sendPacket();
         return this;
@@ -386,7 +400,7 @@ public final class PacketEncoder {
     public PacketEncoder enterName() {
 
         // TODO: Do the packet decoding part of this.
-        ProtocolBuffer out = new ProtocolBuffer(1);
+        ProtocolBuffer out = BufferPool.acquire(1);
         out.build(187, player.getSession());
         out.sendPacket();
         return this;
@@ -405,7 +419,7 @@ public final class PacketEncoder {
         // Normal - 0
         // Normal, but unclickable - 1
         // Blacked out - 2
-        ProtocolBuffer out = new ProtocolBuffer(2);
+        ProtocolBuffer out = BufferPool.acquire(2);
         out.build(99, player.getSession()).writeByte(state);
         out.sendPacket();
         return this;
@@ -417,7 +431,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendResetCameraRotation() {
-        ProtocolBuffer out = new ProtocolBuffer(1);
+        ProtocolBuffer out = BufferPool.acquire(1);
         out.build(108, player.getSession());
         out.sendPacket();
         return this;
@@ -442,7 +456,7 @@ public final class PacketEncoder {
             int angle) {
 
         // TODO: Document the argued.
-        ProtocolBuffer out = new ProtocolBuffer(7);
+        ProtocolBuffer out = BufferPool.acquire(7);
         out.build(177, player.getSession()).writeByte(x / 64).writeByte(y / 64)
                 .writeShort(height).writeByte(speed).writeByte(angle);
         out.sendPacket();
@@ -468,7 +482,7 @@ public final class PacketEncoder {
             int speed, int angle) {
 
         // TODO: Document the argued.
-        ProtocolBuffer out = new ProtocolBuffer(7);
+        ProtocolBuffer out = BufferPool.acquire(7);
         out.build(166, player.getSession()).writeByte(x / 64).writeByte(y / 64)
                 .writeShort(height).writeByte(speed).writeByte(angle);
         out.sendPacket();
@@ -489,7 +503,7 @@ public final class PacketEncoder {
             throw new IllegalArgumentException("Intensity must be below 5!");
         }
 
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(35, player.getSession()).writeByte(intensity)
                 .writeByte(intensity).writeByte(intensity).writeByte(intensity);
         out.sendPacket();
@@ -502,7 +516,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendResetCamera() {
-        ProtocolBuffer out = new ProtocolBuffer(7);
+        ProtocolBuffer out = BufferPool.acquire(7);
         out.build(107, player.getSession());
         out.sendPacket();
         return this;
@@ -516,7 +530,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendMusic(int id) {
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(74, player.getSession()).writeShort(id, ByteOrder.LITTLE);
         out.sendPacket();
         return this;
@@ -532,7 +546,7 @@ public final class PacketEncoder {
     public PacketEncoder sendSystemUpdate(int time) {
 
         // TODO: Document the argued.
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(114, player.getSession()).writeShort(time, ByteOrder.LITTLE);
         out.sendPacket();
         return this;
@@ -544,7 +558,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendEnergy() {
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(110, player.getSession());
         out.writeByte(player.getRunEnergy());
         out.sendPacket();
@@ -567,7 +581,7 @@ public final class PacketEncoder {
         // Red = 0x6000
         // Yellow = 0x33FF66
         // Green = 0x3366;
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(122, player.getSession())
                 .writeShort(line, ValueType.A, ByteOrder.LITTLE)
                 .writeShort(color, ValueType.A, ByteOrder.LITTLE);
@@ -587,7 +601,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendItemOnInterface(int id, int zoom, int model) {
-        ProtocolBuffer out = new ProtocolBuffer(7);
+        ProtocolBuffer out = BufferPool.acquire(7);
         out.build(246, player.getSession())
                 .writeShort(id, ProtocolBuffer.ByteOrder.LITTLE)
                 .writeShort(zoom).writeShort(model);
@@ -623,7 +637,7 @@ public final class PacketEncoder {
             int angle, int speed, int gfxMoving, int startHeight,
             int endHeight, int lockon, int time) {
         this.sendCoordinates(position);
-        ProtocolBuffer out = new ProtocolBuffer(16);
+        ProtocolBuffer out = BufferPool.acquire(16);
         out.build(117, player.getSession()).writeByte(angle)
                 .writeByte(offset.getY()).writeByte(offset.getX())
                 .writeShort(lockon).writeShort(gfxMoving)
@@ -660,16 +674,54 @@ public final class PacketEncoder {
     public void sendAllProjectile(Position position, Position offset,
             int angle, int speed, int gfxMoving, int startHeight,
             int endHeight, int lockon, int time) {
+        BroadcastPacket packet = createProjectile(offset, angle, speed,
+                gfxMoving, startHeight, endHeight, lockon, time);
+
         for (Player all : player.getLocalPlayers()) {
             if (all == null) {
                 continue;
             }
 
             if (all.getPosition().isViewableFrom(position)) {
-                all.getPacketBuilder().sendProjectile(position, offset, angle,
-                        speed, gfxMoving, startHeight, endHeight, lockon, time);
+                packet.sendTo(all, position);
             }
         }
+        packet.release();
+    }
+
+    /**
+     * Encodes a projectile that can be sent to many players at once. The
+     * packet should be released once it has been sent to everyone.
+     * 
+     * @param offset
+     *            the offset position of the projectile.
+     * @param angle
+     *            the angle of the projectile.
+     * @param speed
+     *            the speed of the projectile.
+     * @param gfxMoving
+     *            the rate that projectile gfx moves in.
+     * @param startHeight
+     *            the starting height of the projectile.
+     * @param endHeight
+     *            the ending height of the projectile.
+     * @param lockon
+     *            the lockon value of this projectile.
+     * @param time
+     *            the time it takes for this projectile to hit its desired
+     *            position.
+     * @return the encoded projectile.
+     */
+    public static BroadcastPacket createProjectile(Position offset, int angle,
+            int speed, int gfxMoving, int startHeight, int endHeight,
+            int lockon, int time) {
+        BroadcastPacket packet = new BroadcastPacket(117, Length.FIXED, 15);
+        packet.getPayload().writeByte(angle).writeByte(offset.getY())
+                .writeByte(offset.getX()).writeShort(lockon)
+                .writeShort(gfxMoving).writeByte(startHeight)
+                .writeByte(endHeight).writeShort(time).writeShort(speed)
+                .writeByte(16).writeByte(64);
+        return packet;
     }
 
     /**
@@ -682,7 +734,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendConfig(int id, int state) {
-        ProtocolBuffer out = new ProtocolBuffer(4);
+        ProtocolBuffer out = BufferPool.acquire(4);
         out.build(36, player.getSession());
         out.writeShort(id, ByteOrder.LITTLE).writeByte(state);
         out.sendPacket();
@@ -698,7 +750,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendObject(WorldObject object) {
         sendCoordinates(object.getPosition());
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(151, player.getSession())
                 .writeByte(0, ValueType.S)
                 .writeShort(object.getId(), ByteOrder.LITTLE)
@@ -718,7 +770,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendRemoveObject(WorldObject object) {
         sendCoordinates(object.getPosition());
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(101, player.getSession())
                 .writeByte(
                         (object.getType() << 2) + (object.getRotation()
@@ -754,7 +806,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendSkill(int skillID, int level, int exp) {
-        ProtocolBuffer out = new ProtocolBuffer(8);
+        ProtocolBuffer out = BufferPool.acquire(8);
         out.build(134, player.getSession()).writeByte(skillID)
                 .writeInt(exp, ByteOrder.MIDDLE).writeByte(level);
         out.sendPacket();
@@ -767,7 +819,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendCloseWindows() {
-        ProtocolBuffer out = new ProtocolBuffer(1);
+        ProtocolBuffer out = BufferPool.acquire(1);
         out.build(219, player.getSession());
         out.sendPacket();
         return this;
@@ -781,7 +833,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendPrivateMessagingList(int i) {
-        ProtocolBuffer out = new ProtocolBuffer(2);
+        ProtocolBuffer out = BufferPool.acquire(2);
         out.build(221, player.getSession()).writeByte(i);
         out.sendPacket();
         return this;
@@ -800,7 +852,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendChatOptions(int publicChat, int privateChat,
             int tradeBlock) {
-        ProtocolBuffer out = new ProtocolBuffer(4);
+        ProtocolBuffer out = BufferPool.acquire(4);
         out.build(206, player.getSession()).writeByte(publicChat)
                 .writeByte(privateChat).writeByte(tradeBlock);
         out.sendPacket();
@@ -821,7 +873,7 @@ public final class PacketEncoder {
             world += 9;
         }
 
-        ProtocolBuffer out = new ProtocolBuffer(10);
+        ProtocolBuffer out = BufferPool.acquire(10);
         out.build(50, player.getSession()).writeLong(playerName)
                 .writeByte(world);
         out.sendPacket();
@@ -846,7 +898,7 @@ public final class PacketEncoder {
         // East - 4
         // South - 5
         // North - 6
-        ProtocolBuffer out = new ProtocolBuffer(7);
+        ProtocolBuffer out = BufferPool.acquire(7);
         out.build(254, player.getSession()).writeByte(position)
                 .writeShort(object.getX()).writeShort(object.getY())
                 .writeByte(object.getZ());
@@ -869,7 +921,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendPrivateMessage(long name, int rights,
             byte[] chatMessage, int messageSize) {
-        ProtocolBuffer out = new ProtocolBuffer(messageSize + 15);
+        ProtocolBuffer out = BufferPool.acquire(messageSize + 15);
         out.buildVar(196, player.getSession()).writeLong(name)
                 .writeInt(player.getPrivateMessage().getLastId())
                 .writeByte(rights).writeBytes(chatMessage, messageSize)
@@ -892,7 +944,7 @@ public final class PacketEncoder {
         // The types are:
         // Npc - 1
         // Player - 10
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(254, player.getSession()).writeByte(type).writeShort(id)
                 .writeByte(0);
         out.sendPacket();
@@ -907,7 +959,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendCoordinates(Position position) {
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(85, player.getSession())
                 .writeByte(
                         position.getY() - (player.getCurrentRegion()
@@ -927,7 +979,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendWalkable(int id) {
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(208, player.getSession()).writeShort(id, ByteOrder.LITTLE);
         out.sendPacket();
         return this;
@@ -942,7 +994,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendGroundItem(GroundItem item) {
         sendCoordinates(item.getPosition());
-        ProtocolBuffer out = new ProtocolBuffer(6);
+        ProtocolBuffer out = BufferPool.acquire(6);
         out.build(44, player.getSession())
                 .writeShort(item.getItem().getId(), ValueType.A,
                         ByteOrder.LITTLE)
@@ -960,7 +1012,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendRemoveGroundItem(GroundItem item) {
         sendCoordinates(item.getPosition());
-        ProtocolBuffer out = new ProtocolBuffer(4);
+        ProtocolBuffer out = BufferPool.acquire(4);
         out.build(156, player.getSession()).writeByte(0, ValueType.S)
                 .writeShort(item.getItem().getId());
         out.sendPacket();
@@ -977,7 +1029,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendContextMenu(String option, int slot) {
-        ProtocolBuffer out = new ProtocolBuffer(option.length() + 6);
+        ProtocolBuffer out = BufferPool.acquire(option.length() + 6);
         out.buildVar(104, player.getSession())
                 .writeByte(slot, ProtocolBuffer.ValueType.C)
                 .writeByte(0, ProtocolBuffer.ValueType.A).writeString(option)
@@ -996,7 +1048,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendString(String text, int id) {
-        ProtocolBuffer out = new ProtocolBuffer(text.length() + 6);
+        ProtocolBuffer out = BufferPool.acquire(text.length() + 6);
         out.buildVarShort(126, player.getSession()).writeString(text)
                 .writeShort(id, ValueType.A).endVarShort();
         out.sendPacket();
@@ -1016,7 +1068,7 @@ public final class PacketEncoder {
      */
     public PacketEncoder sendUpdateItems(int interfaceId, Item[] items,
             int length) {
-        ProtocolBuffer out = new ProtocolBuffer(500);
+        ProtocolBuffer out = BufferPool.acquire(500);
         out.buildVarShort(53, player.getSession()).writeShort(interfaceId);
         if (items == null) {
             out.writeShort(0)
@@ -1072,7 +1124,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendInventoryInterface(int interfaceId, int inventoryId) {
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(248, player.getSession());
         out.writeShort(interfaceId, ProtocolBuffer.ValueType.A);
         out.writeShort(inventoryId);
@@ -1088,7 +1140,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendInterface(int interfaceId) {
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(97, player.getSession());
         out.writeShort(interfaceId);
         out.sendPacket();
@@ -1103,7 +1155,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendMessage(String message) {
-        ProtocolBuffer out = new ProtocolBuffer(message.length() + 3);
+        ProtocolBuffer out = BufferPool.acquire(message.length() + 3);
         out.buildVar(253, player.getSession());
         out.writeString(message);
         out.endVar();
@@ -1121,7 +1173,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendSidebarInterface(int menuId, int form) {
-        ProtocolBuffer out = new ProtocolBuffer(4);
+        ProtocolBuffer out = BufferPool.acquire(4);
         out.build(71, player.getSession());
         out.writeShort(form);
         out.writeByte(menuId, ProtocolBuffer.ValueType.A);
@@ -1138,7 +1190,7 @@ public final class PacketEncoder {
         player.getCurrentRegion().setAs(player.getPosition());
         player.setNeedsPlacement(true);
         player.setUpdateRegion(true);
-        ProtocolBuffer out = new ProtocolBuffer(5);
+        ProtocolBuffer out = BufferPool.acquire(5);
         out.build(73, player.getSession());
         out.writeShort(player.getPosition().getRegionX() + 6,
                 ProtocolBuffer.ValueType.A);
@@ -1153,7 +1205,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendLogout() {
-        ProtocolBuffer out = new ProtocolBuffer(1);
+        ProtocolBuffer out = BufferPool.acquire(1);
         out.build(109, player.getSession());
         out.sendPacket();
         return this;
@@ -1166,7 +1218,7 @@ public final class PacketEncoder {
      * @return this packet builder.
      */
     public PacketEncoder sendDetails() {
-        ProtocolBuffer out = new ProtocolBuffer(4);
+        ProtocolBuffer out = BufferPool.acquire(4);
         out.build(249, player.getSession());
         out.writeByte(1, ValueType.A);
         out.writeShort(player.getSlot(), ValueType.A, ByteOrder.LITTLE);
@@ -1182,7 +1234,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder sendChatInterface(int frame) {
-        ProtocolBuffer out = new ProtocolBuffer(3);
+        ProtocolBuffer out = BufferPool.acquire(3);
         out.build(164, player.getSession());
         out.writeShort(frame, ByteOrder.LITTLE);
         out.sendPacket();
@@ -1195,7 +1247,7 @@ public final class PacketEncoder {
      * @return this packet encoder.
      */
     public PacketEncoder resetAnimation() {
-        ProtocolBuffer out = new ProtocolBuffer(1);
+        ProtocolBuffer out = BufferPool.acquire(1);
         out.build(1, player.getSession());
         out.sendPacket();
         return this;
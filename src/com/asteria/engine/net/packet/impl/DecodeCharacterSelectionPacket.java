@@ -4,7 +4,6 @@ import com.asteria.engine.net.ProtocolBuffer;
 import com.asteria.engine.net.packet.PacketDecoder;
 import com.asteria.engine.net.packet.PacketOpcodeHeader;
 import com.asteria.util.Utility;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.player.Player;
 
 /**
@@ -42,7 +41,7 @@ public class DecodeCharacterSelectionPacket extends PacketDecoder {
         player.getColors()[2] = charMod[10];
         player.getColors()[3] = charMod[11];
         player.getColors()[4] = charMod[12];
-        player.getFlags().flag(Flag.APPEARANCE);
+        player.updateAppearance();
         player.getPacketBuilder().sendCloseWindows();
     }
 }
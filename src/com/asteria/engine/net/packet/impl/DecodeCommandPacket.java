@@ -1,12 +1,18 @@
 package com.asteria.engine.net.packet.impl;
 
+import com.asteria.engine.TickRecorder;
+import com.asteria.engine.net.BufferPool;
 import com.asteria.engine.net.HostGateway;
+import com.asteria.engine.net.LoginPipeline;
 import com.asteria.engine.net.ProtocolBuffer;
+import com.asteria.engine.net.Session;
 import com.asteria.engine.net.packet.PacketDecoder;
 import com.asteria.engine.net.packet.PacketOpcodeHeader;
 import com.asteria.world.World;
 import com.asteria.world.entity.Animation;
 import com.asteria.world.entity.Graphic;
+import com.asteria.world.entity.LocalInterest;
+import com.asteria.world.entity.UpdateBudget;
 import com.asteria.world.entity.npc.Npc;
 import com.asteria.world.entity.player.Player;
 import com.asteria.world.entity.player.PlayerRights;
@@ -82,6 +88,11 @@ public class DecodeCommandPacket extends PacketDecoder {
                     ipban.logout();
                 }
                 break;
+            case "rangeban":
+                player.getPacketBuilder().sendMessage(
+                    HostGateway.addBannedHost(cmd[1]) ? "Successfully banned "
+                        + cmd[1] : "Invalid host or range: " + cmd[1]);
+                break;
             case "ban":
                 Player ban = World.getPlayerByName(cmd[1].replaceAll("_", " "));
 
@@ -202,6 +213,91 @@ public class DecodeCommandPacket extends PacketDecoder {
                     size == 1 ? "There is currently 1 player online!"
                         : "There are currently " + size + " players online!");
                 break;
+            case "stats":
+                player.getPacketBuilder().sendMessage(
+                    TickRecorder.getTickTime().toString());
+                player.getPacketBuilder().sendMessage(
+                    Session.getFlushLatency().toString());
+                player.getPacketBuilder().sendMessage(
+                    Session.getFlushBytes().toString());
+                player.getPacketBuilder().sendMessage(
+                    Session.getFlushPackets().toString());
+                player.getPacketBuilder().sendMessage(
+                    player.getSession().getOutboundDepth().toString());
+                player.getPacketBuilder().sendMessage(
+                    player.getSession().getThrottle().toString());
+                player.getPacketBuilder().sendMessage(
+                    LoginPipeline.getLoginLatency().toString());
+                player.getPacketBuilder().sendMessage(
+                    LoginPipeline.getQueueDepth().toString());
+                player.getPacketBuilder().sendMessage(
+                    LoginPipeline.getQueuePosition().toString());
+                player.getPacketBuilder().sendMessage(
+                    LoginPipeline.getQueueWait().toString());
+                player.getPacketBuilder().sendMessage(
+                    LoginPipeline.getAdmitted().toString());
+                player.getPacketBuilder().sendMessage(
+                    "Login budget: " + LoginPipeline.getBudget()
+                        + ", refused: " + LoginPipeline.getRefused());
+                player.getPacketBuilder().sendMessage(
+                    LoginPipeline.getDecodeLatency().toString());
+                player.getPacketBuilder().sendMessage(
+                    LoginPipeline.getAuthenticateLatency().toString());
+                player.getPacketBuilder().sendMessage(
+                    LoginPipeline.getLoadLatency().toString());
+                player.getPacketBuilder().sendMessage(
+                    World.getUpdateScheduler().getEfficiency().toString());
+                player.getPacketBuilder().sendMessage(
+                    World.getUpdateScheduler().getStragglerTime().toString());
+                player.getPacketBuilder().sendMessage(
+                    BufferPool.getAcquisitions().toString());
+                player.getPacketBuilder().sendMessage(
+                    BufferPool.getAllocations().toString());
+                player.getPacketBuilder().sendMessage(
+                    "Hosts tracked: " + HostGateway.getTrackedHosts()
+                        + ", rejected: " + HostGateway.getRejected());
+                player.getPacketBuilder().sendMessage(
+                    LocalInterest.getChurn().toString());
+                player.getPacketBuilder().sendMessage(
+                    UpdateBudget.getPlayerPacketSize().toString());
+                player.getPacketBuilder().sendMessage(
+                    UpdateBudget.getNpcPacketSize().toString());
+                player.getPacketBuilder().sendMessage(
+                    UpdateBudget.getDeferredAdditions().toString());
+                long hits = World.getUpdateScheduler().getCacheHits();
+                long misses = World.getUpdateScheduler().getCacheMisses();
+                player.getPacketBuilder().sendMessage(
+                    "Npc block cache hits: " + hits + ", misses: " + misses
+                        + ", hit rate: " + hits * 100 / Math.max(1, hits
+                            + misses) + "%");
+                StringBuilder unhandled = new StringBuilder("Unhandled packets:");
+
+                for (int i = 0; i < 256; i++) {
+                    if (PacketDecoder.getUnhandled(i) > 0) {
+                        unhandled.append(" " + i + "="
+                            + PacketDecoder.getUnhandled(i));
+                    }
+                }
+                player.getPacketBuilder().sendMessage(unhandled.toString());
+                break;
+            case "throttled":
+                int throttled = 0;
+
+                for (Player other : World.getPlayers()) {
+                    if (other == null || (other.getSession().getThrottle()
+                        .getDeferred() == 0 && other.getSession()
+                        .getThrottle().getDropped() == 0)) {
+                        continue;
+                    }
+
+                    player.getPacketBuilder().sendMessage(
+                        other.getUsername() + ": "
+                            + other.getSession().getThrottle());
+                    throttled++;
+                }
+                player.getPacketBuilder().sendMessage(
+                    throttled + " sessions have been throttled.");
+                break;
             case "gfx":
                 player.graphic(new Graphic(Integer.parseInt(cmd[1])));
                 break;
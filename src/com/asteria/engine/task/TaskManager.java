@@ -7,6 +7,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
+import com.asteria.engine.TickRecorder;
+import com.asteria.engine.TickRecorder.Sample;
+
 /**
  * Utility methods to manage stored pending and active tasks.
  * 
@@ -52,7 +55,10 @@ public final class TaskManager {
                 it.remove();
                 continue;
             }
+            long start = System.nanoTime();
             t.process(it);
+            TickRecorder.sample(Sample.TASK, t.getClass(), System.nanoTime()
+                - start);
         }
     }
 
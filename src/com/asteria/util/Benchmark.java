@@ -46,10 +46,13 @@ public final class Benchmark {
     /** The name of this benchmark. */
     private final String name;
 
-    /** The collector that will collect benchmarks. */
-    private final Stopwatch collector = new Stopwatch().reset();
+    /** The name of the file the results will be written to. */
+    private final String file;
 
-    /** A list of benchmarks collected by the <code>collector</code>. */
+    /** The time of the last collection, in nanoseconds. */
+    private long collector = System.nanoTime();
+
+    /** A list of benchmarks collected in nanoseconds. */
     private final List<Long> benchmarks = new LinkedList<>();
 
     /** A timestamp for when this benchmark was started. */
@@ -62,25 +65,48 @@ public final class Benchmark {
      *            the name of this benchmark.
      */
     public Benchmark(String name) {
+        this(name, name);
+    }
+
+    /**
+     * Create a new {@link Benchmark} that writes its results to a file shared
+     * with other benchmarks.
+     * 
+     * @param name
+     *            the name of this benchmark.
+     * @param file
+     *            the name of the file the results will be written to.
+     */
+    public Benchmark(String name, String file) {
         this.name = Objects.requireNonNull(name);
+        this.file = Objects.requireNonNull(file);
     }
 
     /**
      * Calculates the elapsed time since the last call to <code>collect()</code>
-     * or when this benchmark was constructed, and adds it to the list of
-     * benchmarks.
+     * or <code>reset()</code>, or when this benchmark was constructed, and
+     * adds it to the list of benchmarks.
      */
     public synchronized void collect() {
 
         // Add the benchmark and reset the collector.
-        benchmarks.add(collector.elapsed());
-        collector.reset();
+        long now = System.nanoTime();
+        benchmarks.add(now - collector);
+        collector = now;
     }
 
     /**
-     * Writes all of the collected data to the designated text file. If the file
-     * already exists from a previous benchmark the data will be written to the
-     * end of the file.
+     * Resets the collector without adding anything to the list of benchmarks,
+     * so any setup work done since the last collection isn't timed.
+     */
+    public synchronized void reset() {
+        collector = System.nanoTime();
+    }
+
+    /**
+     * Writes all of the collected data to the designated text file on the
+     * sequential pool. If the file already exists from a previous benchmark
+     * the data will be written to the end of the file.
      * 
      * @param unit
      *            the time unit to print the results off in.
@@ -96,35 +122,55 @@ public final class Benchmark {
         GameEngine.getServiceExecutor().execute(new Runnable() {
             @Override
             public void run() {
-                try (FileWriter writer = new FileWriter(new File(
-                        "./benchmarks/" + name + ".txt"), true)) {
-
-                    // Write all of the data to the beginning of the file.
-                    writer.write("[" + name + "] " + date + "\n");
-                    writer.write("[" + name + "] Benchmarks in " + unit.name() + ":\n[");
-                    long collections = 0, total = 0;
-
-                    for (long l : benchmarks) {
-                        total += l;
-                        collections++;
-                        writer.write(Long.toString(l));
-                        writer.write(", ");
-                    }
-                    writer.write("]\n");
-                    writer.write("[" + name + "] Average in " + unit.name() + ": " + (total / collections) + "\n");
-                    writer.write("[" + name + "] Memory usage: " + (Math
-                            .round((Runtime.getRuntime().maxMemory() - Runtime
-                                    .getRuntime().freeMemory()) / 1.0 * Math
-                                    .pow(10, -6) * 1000.0) / 1000.0) + "mb\n");
-                    writer.write("[" + name + "] Processors: " + Runtime
-                            .getRuntime().availableProcessors() + "\n\n\n");
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                write(unit);
             }
         });
     }
 
+    /**
+     * Writes all of the collected data to the designated text file on the
+     * calling thread. This should be used by standalone benchmarks that exit
+     * as soon as they're done.
+     * 
+     * @param unit
+     *            the time unit to print the results off in.
+     */
+    public synchronized void write(TimeUnit unit) {
+
+        // Check if we have anything to write.
+        if (benchmarks.size() == 0) {
+            throw new IllegalStateException("No benchmarks to write!");
+        }
+
+        try (FileWriter writer = new FileWriter(new File(
+                "./benchmarks/" + file + ".txt"), true)) {
+
+            // Write all of the data to the end of the file.
+            writer.write("[" + name + "] " + date + "\n");
+            writer.write("[" + name + "] Benchmarks in " + unit.name() + ":\n[");
+            long collections = 0, total = 0;
+
+            for (long l : benchmarks) {
+                total += l;
+                collections++;
+                writer.write(Long.toString(unit.convert(l,
+                        TimeUnit.NANOSECONDS)));
+                writer.write(", ");
+            }
+            writer.write("]\n");
+            writer.write("[" + name + "] Average in " + unit.name() + ": " + unit
+                    .convert(total / collections, TimeUnit.NANOSECONDS) + "\n");
+            writer.write("[" + name + "] Memory usage: " + (Math
+                    .round((Runtime.getRuntime().maxMemory() - Runtime
+                            .getRuntime().freeMemory()) / 1.0 * Math
+                            .pow(10, -6) * 1000.0) / 1000.0) + "mb\n");
+            writer.write("[" + name + "] Processors: " + Runtime
+                    .getRuntime().availableProcessors() + "\n\n\n");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Gets the name of this benchmark.
      * 
@@ -135,9 +181,9 @@ public final class Benchmark {
     }
 
     /**
-     * Gets the list of collected benchmarks. The returned list is unmodifiable,
-     * which means trying to add or remove elements from it will throw an
-     * {@link UnsupportedOperationException}.
+     * Gets the list of collected benchmarks in nanoseconds. The returned list
+     * is unmodifiable, which means trying to add or remove elements from it
+     * will throw an {@link UnsupportedOperationException}.
      * 
      * @return the list of collected benchmarks.
      */
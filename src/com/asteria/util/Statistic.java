@@ -0,0 +1,112 @@
+package com.asteria.util;
+
+/**
+ * A thread safe metric that accumulates samples of some measured value, and
+ * keeps track of the amount of samples, their total, and the highest sample
+ * recorded since the last reset.
+ *
+ * @author lare96
+ */
+public class Statistic {
+
+    /** The name of this statistic. */
+    private final String name;
+
+    /** The unit the samples are measured in. */
+    private final String unit;
+
+    /** The amount of samples recorded. */
+    private long count;
+
+    /** The total of all samples recorded. */
+    private long total;
+
+    /** The highest sample recorded. */
+    private long max;
+
+    /**
+     * Create a new {@link Statistic}.
+     *
+     * @param name
+     *            the name of this statistic.
+     * @param unit
+     *            the unit the samples are measured in.
+     */
+    public Statistic(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    /**
+     * Records a new sample.
+     *
+     * @param value
+     *            the value of the sample.
+     */
+    public synchronized void record(long value) {
+        count++;
+        total += value;
+
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /** Discards all of the samples recorded so far. */
+    public synchronized void reset() {
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * Gets the average of all of the samples recorded.
+     *
+     * @return the average sample, or <tt>0</tt> if nothing has been recorded.
+     */
+    public synchronized long getAverage() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    /**
+     * Gets the amount of samples recorded.
+     *
+     * @return the amount of samples.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the total of all samples recorded.
+     *
+     * @return the total of all samples.
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the highest sample recorded.
+     *
+     * @return the highest sample.
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the name of this statistic.
+     *
+     * @return the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + ": avg= " + getAverage() + unit + ", max= " + max + unit
+            + ", samples= " + count;
+    }
+}
@@ -3,13 +3,12 @@ package com.asteria.util;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
-import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.spec.RSAPrivateKeySpec;
+import java.security.spec.RSAPrivateCrtKeySpec;
 import java.security.spec.RSAPublicKeySpec;
 import java.util.Arrays;
 import java.util.List;
@@ -528,7 +527,9 @@ public final class Utility {
     }
 
     /**
-     * A class to generate RSA keys for the login block.
+     * A class to generate RSA keys for the login block. The private key is
+     * written along with its Chinese Remainder Theorem parameters, so logins
+     * can be decrypted using the faster CRT path.
      * 
      * @author Nikki
      */
@@ -545,32 +546,38 @@ public final class Utility {
                 PrivateKey privateKey = keypair.getPrivate();
                 PublicKey publicKey = keypair.getPublic();
 
-                RSAPrivateKeySpec privSpec = factory.getKeySpec(privateKey,
-                        RSAPrivateKeySpec.class);
-                writeKey("./data/rsa/rsa_private.txt", privSpec.getModulus(),
-                        privSpec.getPrivateExponent());
+                RSAPrivateCrtKeySpec privSpec = factory.getKeySpec(
+                        privateKey, RSAPrivateCrtKeySpec.class);
+                writeKey("./data/rsa/rsa_private.txt", "modulus",
+                        privSpec.getModulus(), "exponent",
+                        privSpec.getPrivateExponent(), "prime_p",
+                        privSpec.getPrimeP(), "prime_q", privSpec.getPrimeQ(),
+                        "exponent_p", privSpec.getPrimeExponentP(),
+                        "exponent_q", privSpec.getPrimeExponentQ(),
+                        "coefficient", privSpec.getCrtCoefficient());
 
                 RSAPublicKeySpec pubSpec = factory.getKeySpec(publicKey,
                         RSAPublicKeySpec.class);
-                writeKey("./data/rsa/rsa_public.txt", pubSpec.getModulus(),
+                writeKey("./data/rsa/rsa_public.txt", "modulus",
+                        pubSpec.getModulus(), "exponent",
                         pubSpec.getPublicExponent());
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
 
-        /** Writes the actual key to a file. */
-        private static void writeKey(String file, BigInteger modulus,
-                BigInteger exponent) {
+        /**
+         * Writes the actual key to a file, as alternating names and values.
+         */
+        private static void writeKey(String file, Object... values) {
+            new File(file).getParentFile().mkdirs();
+
             try (BufferedWriter writer = new BufferedWriter(
                     new FileWriter(file))) {
-                writer.write("private static final BigInteger RSA_MODULUS = new BigInteger(\"" + modulus
-                        .toString() + "\");");
-                writer.newLine();
-                writer.newLine();
-                writer.write("private static final BigInteger RSA_EXPONENT = new BigInteger(\"" + exponent
-                        .toString() + "\");");
-                writer.newLine();
+                for (int i = 0; i < values.length; i += 2) {
+                    writer.write(values[i] + "=" + values[i + 1]);
+                    writer.newLine();
+                }
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -0,0 +1,171 @@
+package com.asteria.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.asteria.engine.net.ProtocolBuffer;
+import com.asteria.world.entity.UpdateBudget;
+import com.asteria.world.entity.npc.Npc;
+import com.asteria.world.entity.player.Player;
+
+/**
+ * The scratch space owned by a single worker of an {@link UpdateScheduler},
+ * which is reused for every player the worker updates so updating doesn't
+ * allocate anything. Nothing in here should be held onto once the task that
+ * was handed this context returns.
+ *
+ * @author lare96
+ */
+public final class UpdateContext {
+
+    /** The scratch buffer for the main update packet. */
+    private final ProtocolBuffer out = new ProtocolBuffer(16384);
+
+    /** The scratch buffer for update blocks. */
+    private final ProtocolBuffer block = new ProtocolBuffer(8192);
+
+    /** The players viewable from the player being updated. */
+    private final List<Player> viewablePlayers = new ArrayList<>(
+        UpdateBudget.MAX_LOCAL);
+
+    /** The players that could be added to the local list. */
+    private final List<Player> playerCandidates = new ArrayList<>(
+        UpdateBudget.MAX_LOCAL);
+
+    /** The npcs viewable from the player being updated. */
+    private final List<Npc> viewableNpcs = new ArrayList<>(
+        UpdateBudget.MAX_LOCAL);
+
+    /** The npcs that could be added to the local list. */
+    private final List<Npc> npcCandidates = new ArrayList<>(
+        UpdateBudget.MAX_LOCAL);
+
+    /** The players the current task has failed for. */
+    private final List<Player> failures = new ArrayList<>();
+
+    /** The amount of npc update blocks copied from the cache. */
+    private long cacheHits;
+
+    /** The amount of npc update blocks that had to be encoded. */
+    private long cacheMisses;
+
+    /** Create a new {@link UpdateContext}. */
+    UpdateContext() {}
+
+    /**
+     * Gets the scratch buffer for the main update packet.
+     *
+     * @return the update packet buffer.
+     */
+    public ProtocolBuffer getOut() {
+        return out;
+    }
+
+    /**
+     * Gets the scratch buffer for update blocks.
+     *
+     * @return the update block buffer.
+     */
+    public ProtocolBuffer getBlock() {
+        return block;
+    }
+
+    /**
+     * Gets the cleared list for the players viewable from the player being
+     * updated.
+     *
+     * @return the viewable players.
+     */
+    public List<Player> getViewablePlayers() {
+        viewablePlayers.clear();
+        return viewablePlayers;
+    }
+
+    /**
+     * Gets the cleared list for the players that could be added to the local
+     * list.
+     *
+     * @return the player candidates.
+     */
+    public List<Player> getPlayerCandidates() {
+        playerCandidates.clear();
+        return playerCandidates;
+    }
+
+    /**
+     * Gets the cleared list for the npcs viewable from the player being
+     * updated.
+     *
+     * @return the viewable npcs.
+     */
+    public List<Npc> getViewableNpcs() {
+        viewableNpcs.clear();
+        return viewableNpcs;
+    }
+
+    /**
+     * Gets the cleared list for the npcs that could be added to the local
+     * list.
+     *
+     * @return the npc candidates.
+     */
+    public List<Npc> getNpcCandidates() {
+        npcCandidates.clear();
+        return npcCandidates;
+    }
+
+    /** Records an npc update block being copied from the cache. */
+    public void recordCacheHit() {
+        cacheHits++;
+    }
+
+    /** Records an npc update block having to be encoded. */
+    public void recordCacheMiss() {
+        cacheMisses++;
+    }
+
+    /**
+     * Gets the amount of npc update blocks copied from the cache since the
+     * last tick.
+     *
+     * @return the amount of cache hits.
+     */
+    long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Gets the amount of npc update blocks that had to be encoded since the
+     * last tick.
+     *
+     * @return the amount of cache misses.
+     */
+    long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Records the current task having failed for a player.
+     *
+     * @param player
+     *            the player the task failed for.
+     */
+    void recordFailure(Player player) {
+        failures.add(player);
+    }
+
+    /**
+     * Gets the players the current task has failed for.
+     *
+     * @return the failed players.
+     */
+    List<Player> getFailures() {
+        return failures;
+    }
+
+    /** Starts counting the cache hits and misses of the next tick. */
+    void resetCacheCounts() {
+        cacheHits = 0;
+        cacheMisses = 0;
+    }
+}
@@ -0,0 +1,290 @@
+package com.asteria.world;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.asteria.engine.ThreadProvider;
+import com.asteria.engine.net.ServerEngine;
+import com.asteria.util.Statistic;
+import com.asteria.world.entity.EntityContainer;
+import com.asteria.world.entity.player.Player;
+
+/**
+ * A scheduler that runs an {@link UpdateTask} for every {@link Player} in
+ * parallel using a fixed set of long-lived worker threads. The slots of the
+ * player container are split into chunks, and idle workers keep claiming the
+ * next unclaimed chunk until there are none left, so workers that finish early
+ * take work away from slower ones. The calling thread is blocked until every
+ * worker has finished. Running a task does not allocate anything.
+ *
+ * @author lare96
+ */
+public final class UpdateScheduler {
+
+    /** The amount of worker threads that will update players. */
+    public static final int UPDATE_THREADS = Runtime.getRuntime()
+        .availableProcessors();
+
+    /** The amount of player slots claimed by a worker at a time. */
+    public static final int CHUNK_SIZE = 16;
+
+    /** The container of players being updated. */
+    private final EntityContainer<Player> players;
+
+    /** The worker threads. */
+    private final Thread[] workers = new Thread[UPDATE_THREADS];
+
+    /** The scratch space of each worker. */
+    private final UpdateContext[] contexts = new UpdateContext[UPDATE_THREADS];
+
+    /** The next player slot that hasn't been claimed by a worker. */
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    /** The amount of workers that haven't finished the current task. */
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    /** The time each worker started the current task, in nanoseconds. */
+    private final long[] startTimes = new long[UPDATE_THREADS];
+
+    /** The time each worker finished the current task, in nanoseconds. */
+    private final long[] finishTimes = new long[UPDATE_THREADS];
+
+    /** The thread waiting for the current task to be finished. */
+    private volatile Thread caller;
+
+    /** The task currently being ran by the workers. */
+    private volatile UpdateTask task;
+
+    /** The amount of tasks that have been started, used to wake workers. */
+    private volatile int generation;
+
+    /** The time spent working by all workers during this tick. */
+    private long busyTime;
+
+    /** The time all workers could have spent working during this tick. */
+    private long availableTime;
+
+    /** The amount of npc update blocks copied from the cache. */
+    private long cacheHits;
+
+    /** The amount of npc update blocks that had to be encoded. */
+    private long cacheMisses;
+
+    /** The parallel efficiency of every tick. */
+    private final Statistic efficiency = new Statistic("Update efficiency",
+        "%");
+
+    /** The time between the first and last worker finishing a task. */
+    private final Statistic stragglerTime = new Statistic(
+        "Update straggler time", "us");
+
+    /**
+     * Create a new {@link UpdateScheduler} and start its worker threads.
+     *
+     * @param players
+     *            the container of players being updated.
+     */
+    public UpdateScheduler(EntityContainer<Player> players) {
+        this.players = players;
+        ThreadProvider provider = new ThreadProvider("Update-Thread",
+            Thread.MAX_PRIORITY, true);
+
+        for (int i = 0; i < workers.length; i++) {
+            contexts[i] = new UpdateContext();
+            workers[i] = provider.newThread(new Worker(i));
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Runs the argued task for every player and blocks the calling thread
+     * until it has been ran for all of them. This should only ever be called
+     * from the game thread.
+     *
+     * @param task
+     *            the task to run for every player.
+     */
+    public void execute(UpdateTask task) {
+        long start = System.nanoTime();
+
+        // Reset the state and wake up the workers.
+        this.caller = Thread.currentThread();
+        this.task = task;
+        nextSlot.set(1);
+        remaining.set(workers.length);
+        generation++;
+
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+
+        // Wait here until every worker has finished.
+        while (remaining.get() > 0) {
+            LockSupport.park(this);
+        }
+
+        long end = System.nanoTime();
+        long firstFinish = Long.MAX_VALUE, lastFinish = 0;
+
+        for (int i = 0; i < workers.length; i++) {
+            busyTime += finishTimes[i] - startTimes[i];
+            firstFinish = Math.min(firstFinish, finishTimes[i]);
+            lastFinish = Math.max(lastFinish, finishTimes[i]);
+        }
+        availableTime += (end - start) * workers.length;
+        stragglerTime.record((lastFinish - firstFinish) / 1000);
+
+        // Disconnect the players the task failed for from the game thread.
+        for (UpdateContext context : contexts) {
+            for (Player player : context.getFailures()) {
+                ServerEngine.queueDisconnect(player.getSession());
+            }
+            context.getFailures().clear();
+        }
+    }
+
+    /**
+     * Records the parallel efficiency of all the tasks executed since the last
+     * call to this method, and adds up what every worker counted. This should
+     * be called once at the end of every tick.
+     */
+    public void finishTick() {
+        if (availableTime > 0) {
+            efficiency.record(busyTime * 100 / availableTime);
+        }
+        busyTime = 0;
+        availableTime = 0;
+
+        for (UpdateContext context : contexts) {
+            cacheHits += context.getCacheHits();
+            cacheMisses += context.getCacheMisses();
+            context.resetCacheCounts();
+        }
+    }
+
+    /**
+     * Gets the parallel efficiency of every tick, which is how much of the
+     * time the workers were awake they actually spent updating players.
+     *
+     * @return the parallel efficiency.
+     */
+    public Statistic getEfficiency() {
+        return efficiency;
+    }
+
+    /**
+     * Gets the amount of npc update blocks copied from the cache.
+     *
+     * @return the amount of cache hits.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Gets the amount of npc update blocks that had to be encoded.
+     *
+     * @return the amount of cache misses.
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Gets the time between the first and last worker finishing a task.
+     *
+     * @return the straggler time.
+     */
+    public Statistic getStragglerTime() {
+        return stragglerTime;
+    }
+
+    /**
+     * A task that is ran for every player by an {@link UpdateScheduler}.
+     *
+     * @author lare96
+     */
+    public interface UpdateTask {
+
+        /**
+         * Runs this task for the argued player.
+         *
+         * @param player
+         *            the player to run this task for.
+         * @param context
+         *            the scratch space owned by the running worker.
+         * @throws Exception
+         *             if any errors occur while running this task.
+         */
+        public void execute(Player player, UpdateContext context)
+            throws Exception;
+    }
+
+    /**
+     * A long-lived worker that claims and runs chunks of the current task.
+     *
+     * @author lare96
+     */
+    private final class Worker implements Runnable {
+
+        /** The index of this worker. */
+        private final int index;
+
+        /** The last generation this worker has ran a task for. */
+        private int lastGeneration;
+
+        /**
+         * Create a new {@link Worker}.
+         *
+         * @param index
+         *            the index of this worker.
+         */
+        public Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+
+                // Wait here until there is a new task.
+                while (generation == lastGeneration) {
+                    LockSupport.park(this);
+                }
+                lastGeneration = generation;
+                startTimes[index] = System.nanoTime();
+
+                // Claim and run chunks until there are none left.
+                UpdateTask current = task;
+                int capacity = players.getCapacity();
+                int slot;
+
+                while ((slot = nextSlot.getAndAdd(CHUNK_SIZE)) < capacity) {
+                    int end = Math.min(slot + CHUNK_SIZE, capacity);
+
+                    for (; slot < end; slot++) {
+                        Player player = players.get(slot);
+
+                        if (player == null) {
+                            continue;
+                        }
+
+                        try {
+                            current.execute(player, contexts[index]);
+                        } catch (Exception ex) {
+                            ex.printStackTrace();
+                            contexts[index].recordFailure(player);
+                        }
+                    }
+                }
+
+                // Arrive at the barrier, the last worker wakes up the caller.
+                finishTimes[index] = System.nanoTime();
+
+                if (remaining.decrementAndGet() == 0) {
+                    LockSupport.unpark(caller);
+                }
+            }
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.asteria.world;
 
-import java.util.concurrent.Phaser;
-import java.util.concurrent.ThreadPoolExecutor;
-
 import com.asteria.engine.GameEngine;
-import com.asteria.engine.ThreadPoolFactory;
+import com.asteria.engine.TickRecorder;
+import com.asteria.engine.TickRecorder.Phase;
+import com.asteria.engine.TickRecorder.Sample;
 import com.asteria.engine.ThreadPoolFactory.BlockingThreadPool;
+import com.asteria.engine.net.Session;
 import com.asteria.engine.net.Session.Stage;
+import com.asteria.engine.net.packet.BroadcastPacket;
+import com.asteria.engine.net.packet.BroadcastPacket.Length;
+import com.asteria.world.UpdateScheduler.UpdateTask;
+import com.asteria.world.entity.Entity;
 import com.asteria.world.entity.EntityContainer;
+import com.asteria.world.entity.LocalInterest;
+import com.asteria.world.entity.UpdateBudget;
 import com.asteria.world.entity.npc.Npc;
 import com.asteria.world.entity.npc.NpcUpdating;
 import com.asteria.world.entity.player.Player;
@@ -24,24 +30,42 @@ public final class World {
 
     /** All of the registered players. */
     private static final EntityContainer<Player> players = new EntityContainer<>(
-        1000);
+        1000, true);
 
     /** All of the registered NPCs. */
-    private static final EntityContainer<Npc> npcs = new EntityContainer<>(1500);
-
-    /** The synchronizer that will block until updating is completed. */
-    private static final Phaser synchronizer = new Phaser(1);
-
-    /** A thread pool that will update players in parallel. */
-    private static final ThreadPoolExecutor updateExecutor = ThreadPoolFactory
-        .createThreadPool("Update-Thread", Runtime.getRuntime()
-            .availableProcessors(), Thread.MAX_PRIORITY, 5);
+    private static final EntityContainer<Npc> npcs = new EntityContainer<>(1500,
+        true);
+
+    /** The number of the current tick, counted from startup. */
+    private static long tick;
+
+    /** The scheduler that will update players in parallel. */
+    private static final UpdateScheduler scheduler = new UpdateScheduler(
+        players);
+
+    /** The task that prepares the update blocks of a player. */
+    private static final UpdateTask PREPARE = new UpdateTask() {
+        @Override
+        public void execute(Player player, UpdateContext context)
+            throws Exception {
+            PlayerUpdating.prepare(player);
+        }
+    };
+
+    /** The task that sends the update packets to a player. */
+    private static final UpdateTask UPDATE = new UpdateTask() {
+        @Override
+        public void execute(Player player, UpdateContext context)
+            throws Exception {
+            PlayerUpdating.update(player, context);
+            NpcUpdating.update(player, context);
+        }
+    };
 
     /**
      * The method that executes code for all in-game entities every <tt>600</tt>
-     * ms. Updating is parallelized using the {@link #updateExecutor} to execute
-     * the code concurrently and the {@link #synchronizer} to block the game
-     * thread until it's finished.
+     * ms. Updating is parallelized using the {@link #scheduler}, which blocks
+     * the game thread until it's finished.
      */
     public static void tick() {
         try {
@@ -53,7 +77,10 @@ public final class World {
                 }
 
                 try {
+                    long start = System.nanoTime();
                     player.pulse();
+                    TickRecorder.sample(Sample.PLAYER, player, System
+                        .nanoTime() - start);
                 } catch (Exception ex) {
                     ex.printStackTrace();
                     player.getSession().disconnect();
@@ -74,46 +101,26 @@ public final class World {
                 }
             }
 
-            // Perform updating for players in parallel using the updateExecutor
-            // and synchronizer.
-            synchronizer.bulkRegister(players.getSize());
+            TickRecorder.mark(Phase.PULSE);
 
-            for (final Player player : players) {
-                if (player == null) {
-                    continue;
+            // Pack the movement of every npc once they've all moved, so it's
+            // the same for every player viewing them.
+            for (Npc npc : npcs) {
+                if (npc != null) {
+                    NpcUpdating.prepare(npc);
                 }
-
-                updateExecutor.execute(new Runnable() {
-                    @Override
-                    public void run() {
-
-                        // Put a concurrent lock on the player we are currently
-                        // updating, so only one thread in the pool can access
-                        // this player at a time.
-                        synchronized (player) {
-
-                            // Now we actually update the player.
-                            try {
-                                PlayerUpdating.update(player);
-                                NpcUpdating.update(player);
-
-                                // Handle any errors with the player.
-                            } catch (Exception ex) {
-                                ex.printStackTrace();
-                                player.getSession().disconnect();
-
-                                // Arrive at the phaser regardless if there was
-                                // an error or not.
-                            } finally {
-                                synchronizer.arriveAndDeregister();
-                            }
-                        }
-                    }
-                });
             }
 
-            // Wait here until updating is complete
-            synchronizer.arriveAndAwaitAdvance();
+            // Prepare the update blocks of every player in parallel, so they're
+            // encoded exactly once before anyone copies them.
+            scheduler.execute(PREPARE);
+
+            // Then perform updating for players in parallel.
+            scheduler.execute(UPDATE);
+            scheduler.finishTick();
+            LocalInterest.tick();
+            UpdateBudget.tick();
+            TickRecorder.mark(Phase.UPDATE);
 
             // Reset all players and prepare them for the next cycle.
             for (Player player : players) {
@@ -123,7 +130,7 @@ public final class World {
 
                 try {
                     player.reset();
-                    player.setCachedUpdateBlock(null);
+                    player.setUpdateBlocks(null, null, null);
                 } catch (Exception ex) {
                     ex.printStackTrace();
                     player.getSession().disconnect();
@@ -138,15 +145,33 @@ public final class World {
 
                 try {
                     npc.reset();
+                    npc.setUpdateBlock(null);
                 } catch (Exception ex) {
                     ex.printStackTrace();
                     npcs.remove(npc);
                 }
             }
 
+            TickRecorder.mark(Phase.RESET);
+
+            // Write all of the packets staged during this cycle.
+            Session.flushAll();
+            TickRecorder.mark(Phase.FLUSH);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
+        tick++;
+    }
+
+    /**
+     * Gets the number of the current tick, counted from startup. Everything
+     * done during a cycle sees the same number, which only moves on once the
+     * world has been updated.
+     * 
+     * @return the current tick.
+     */
+    public static long getTick() {
+        return tick;
     }
 
     /**
@@ -193,20 +218,43 @@ public final class World {
         return null;
     }
 
+    /**
+     * Moves the argued entity into the region chunk for its current position.
+     * This should be called whenever an entity changes position.
+     * 
+     * @param entity
+     *            the entity that has moved.
+     */
+    public static void reposition(Entity entity) {
+        switch (entity.type()) {
+        case PLAYER:
+            players.reposition((Player) entity);
+            break;
+        case NPC:
+            npcs.reposition((Npc) entity);
+            break;
+        }
+    }
+
     /**
      * Sends a message to all online {@link Player}s.
      * 
      * @param message
      *            the message to send that will be sent to everyone online.
      */
-    public void sendMessage(String message) {
+    public static void sendMessage(String message) {
+        BroadcastPacket packet = new BroadcastPacket(253, Length.VARIABLE,
+            message.length() + 1);
+        packet.getPayload().writeString(message);
+
         for (Player p : players) {
             if (p == null) {
                 continue;
             }
 
-            p.getPacketBuilder().sendMessage(message);
+            packet.sendTo(p);
         }
+        packet.release();
     }
 
     /** Saves the game for all players that are currently online. */
@@ -238,7 +286,6 @@ public final class World {
             pool.fireAndAwait();
 
             // Terminate any thread pools.
-            updateExecutor.shutdown();
             GameEngine.getServiceExecutor().shutdown();
         } catch (Exception e) {
             e.printStackTrace();
@@ -285,5 +332,14 @@ public final class World {
         return npcs;
     }
 
+    /**
+     * Gets the scheduler that updates players in parallel.
+     * 
+     * @return the update scheduler.
+     */
+    public static UpdateScheduler getUpdateScheduler() {
+        return scheduler;
+    }
+
     private World() {}
 }
@@ -30,6 +30,9 @@ public abstract class Entity {
     /** If this entity has been unregistered. */
     private boolean unregistered;
 
+    /** The key of the region chunk this entity was last indexed in. */
+    private int regionKey = RegionIndex.NO_REGION;
+
     /** The position of the entity. */
     private Position position = Player.STARTING_POSITION.clone();
 
@@ -52,6 +55,9 @@ public abstract class Entity {
     /** The secondary direction of the entity. */
     private int secondaryDirection = -1;
 
+    /** The movement of the entity this tick, packed for every viewer. */
+    private int movementSegment = MovementSegment.NONE;
+
     /** The last direction of the entity. */
     private int lastDirection = 0;
 
@@ -480,6 +486,25 @@ public abstract class Entity {
         this.secondaryDirection = secondaryDirection;
     }
 
+    /**
+     * Gets the movement of this entity this tick, packed for every viewer.
+     * 
+     * @return the movement segment.
+     */
+    public int getMovementSegment() {
+        return movementSegment;
+    }
+
+    /**
+     * Sets the movement of this entity this tick, packed for every viewer.
+     * 
+     * @param movementSegment
+     *            the movement segment to set.
+     */
+    public void setMovementSegment(int movementSegment) {
+        this.movementSegment = movementSegment;
+    }
+
     /**
      * Gets if this entity needs placement.
      * 
@@ -636,6 +661,25 @@ public abstract class Entity {
         this.unregistered = unregistered;
     }
 
+    /**
+     * Gets the key of the region chunk this entity was last indexed in.
+     * 
+     * @return the region key.
+     */
+    public int getRegionKey() {
+        return regionKey;
+    }
+
+    /**
+     * Sets the key of the region chunk this entity was last indexed in.
+     * 
+     * @param regionKey
+     *            the region key to set.
+     */
+    public void setRegionKey(int regionKey) {
+        this.regionKey = regionKey;
+    }
+
     /**
      * Gets the combat session.
      * 
@@ -25,6 +25,9 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
     /** The backing array for this container. */
     private T[] backingArray;
 
+    /** The region index for this container, or null if not indexed. */
+    private final RegionIndex<T> regionIndex;
+
     /**
      * Create a new {@link EntityContainer} with the specified capacity.
      * 
@@ -32,10 +35,25 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
      *            the maximum amount of entities this container is allowed to
      *            hold.
      */
-    @SuppressWarnings("unchecked")
     public EntityContainer(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Create a new {@link EntityContainer} with the specified capacity.
+     * 
+     * @param capacity
+     *            the maximum amount of entities this container is allowed to
+     *            hold.
+     * @param indexed
+     *            if the entities in this container should be kept in a
+     *            {@link RegionIndex}.
+     */
+    @SuppressWarnings("unchecked")
+    public EntityContainer(int capacity, boolean indexed) {
         this.backingArray = (T[]) new Entity[capacity];
         this.size = 0;
+        this.regionIndex = indexed ? new RegionIndex<T>() : null;
     }
 
     /**
@@ -78,6 +96,10 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
         backingArray[slot] = Objects.requireNonNull(entity);
         backingArray[slot].setSlot(slot);
         size++;
+
+        if (regionIndex != null) {
+            regionIndex.add(entity);
+        }
         return this;
     }
 
@@ -114,11 +136,31 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
         // Otherwise remove the entity from the container and flag them as
         // unregistered.
         backingArray[slot].setUnregistered(true);
+
+        if (regionIndex != null) {
+            regionIndex.remove(backingArray[slot]);
+        }
         backingArray[slot] = null;
         size--;
         return this;
     }
 
+    /**
+     * Moves the argued entity into the region chunk for its current position
+     * if this container is indexed. This should be called whenever an entity
+     * in this container changes position.
+     * 
+     * @param entity
+     *            the entity that has moved.
+     * @return this container for chaining.
+     */
+    public EntityContainer<T> reposition(T entity) {
+        if (regionIndex != null) {
+            regionIndex.reposition(entity);
+        }
+        return this;
+    }
+
     /**
      * Determines if this container has the specified entity.
      * 
@@ -173,6 +215,15 @@ public class EntityContainer<T extends Entity> implements Iterable<T> {
         return backingArray[slot];
     }
 
+    /**
+     * Gets the region index for this container.
+     * 
+     * @return the region index, or null if this container isn't indexed.
+     */
+    public RegionIndex<T> getRegionIndex() {
+        return regionIndex;
+    }
+
     /**
      * Gets the maximum amount of entities this container can hold.
      * 
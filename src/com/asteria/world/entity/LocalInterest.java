@@ -0,0 +1,105 @@
+package com.asteria.world.entity;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.asteria.util.Statistic;
+import com.asteria.world.map.Position;
+
+/**
+ * Decides how long entities stay in the local lists of the players viewing
+ * them. Entities are only added while they're within the viewport, as found
+ * by {@link RegionIndex#getViewable(Position, List)}, but once they're added
+ * they aren't removed until they're further than {@link #REMOVE_DISTANCE}
+ * away and have been in the local list for at least {@link #MIN_RESIDENCY}
+ * ticks. This stops entities walking along the edge of the viewport from
+ * being removed and added again on every step, which costs an appearance
+ * block every time they come back.
+ * <p>
+ * Entities further than {@link #MAX_DISTANCE} away are always removed, so the
+ * client never has to keep track of entities outside of the map it has
+ * loaded. The amount of entities added and removed every tick is recorded as
+ * the churn of the local lists.
+ *
+ * @author lare96
+ */
+public final class LocalInterest {
+
+    /** The distance entities have to be past before they can be removed. */
+    public static final int REMOVE_DISTANCE = 17;
+
+    /** The least amount of ticks entities are kept in a local list. */
+    public static final int MIN_RESIDENCY = 5;
+
+    /** The distance entities are always removed past. */
+    public static final int MAX_DISTANCE = 24;
+
+    /** The amount of entities added to local lists during this tick. */
+    private static final AtomicInteger added = new AtomicInteger();
+
+    /** The amount of entities removed from local lists during this tick. */
+    private static final AtomicInteger removed = new AtomicInteger();
+
+    /** The amount of entities added to and removed from local lists. */
+    private static final Statistic churn = new Statistic("Local list churn",
+        "/tick");
+
+    /**
+     * Determines if an entity should be kept in the local list of a viewer.
+     *
+     * @param viewer
+     *            the position of the viewer.
+     * @param other
+     *            the position of the entity.
+     * @param residency
+     *            the amount of ticks the entity has been in the local list.
+     * @return <code>true</code> if the entity should be kept.
+     */
+    public static boolean canKeep(Position viewer, Position other,
+        long residency) {
+        if (viewer.getZ() != other.getZ()) {
+            return false;
+        }
+
+        int distance = Math.max(Math.abs(other.getX() - viewer.getX()), Math
+            .abs(other.getY() - viewer.getY()));
+        return distance <= MAX_DISTANCE && (distance <= REMOVE_DISTANCE
+            || residency < MIN_RESIDENCY);
+    }
+
+    /**
+     * Records an entity being added to a local list. This can be called from
+     * any thread.
+     */
+    public static void recordAdd() {
+        added.incrementAndGet();
+    }
+
+    /**
+     * Records an entity being removed from a local list. This can be called
+     * from any thread.
+     */
+    public static void recordRemove() {
+        removed.incrementAndGet();
+    }
+
+    /**
+     * Records the churn of this tick and starts counting again. This should be
+     * called once at the end of every tick.
+     */
+    public static void tick() {
+        churn.record(added.getAndSet(0) + removed.getAndSet(0));
+    }
+
+    /**
+     * Gets the amount of entities added to and removed from local lists every
+     * tick.
+     *
+     * @return the churn of the local lists.
+     */
+    public static Statistic getChurn() {
+        return churn;
+    }
+
+    private LocalInterest() {}
+}
@@ -0,0 +1,207 @@
+package com.asteria.world.entity;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A local list of entities, in the order the client knows them in. Whether an
+ * entity is in the list is kept in a bitset indexed by slot, so checking for
+ * it is a single lookup instead of hashing the entity. The entities are kept
+ * in an array in the order they were added, along with a compact array of the
+ * slots they had when they were added.
+ * <p>
+ * Entities removed through the iterator during the update walk are only
+ * marked as removed, and the holes they leave are closed in place the next
+ * time the list is iterated or added to. The slots are kept along with the
+ * entities so an entity can still be removed after it left its slot, and an
+ * entity that takes over the slot of an entity still in the list is only seen
+ * as being in the list until that entity is removed, which the update walk
+ * does before looking for new entities.
+ *
+ * @author lare96
+ * @param <T>
+ *            the type of entity in this list.
+ */
+public final class LocalList<T extends Entity> implements Iterable<T> {
+
+    /** The bitset of the slots of the entities in this list. */
+    private final long[] members;
+
+    /** The entities in this list in client order, with holes left in it. */
+    private final Entity[] entities;
+
+    /** The slots of the entities in this list, in the same order. */
+    private final int[] slots;
+
+    /** The amount of elements used in the arrays, including holes. */
+    private int length;
+
+    /** The amount of entities in this list. */
+    private int size;
+
+    /**
+     * Create a new {@link LocalList}.
+     *
+     * @param capacity
+     *            the amount of slots entities can be in.
+     * @param maximumSize
+     *            the most entities this list can hold.
+     */
+    public LocalList(int capacity, int maximumSize) {
+        this.members = new long[(capacity + 63) >>> 6];
+        this.entities = new Entity[maximumSize];
+        this.slots = new int[maximumSize];
+    }
+
+    /**
+     * Determines if an entity is in this list.
+     *
+     * @param entity
+     *            the entity to check for.
+     * @return <code>true</code> if the entity is in this list.
+     */
+    public boolean contains(T entity) {
+        int slot = entity.getSlot();
+        return slot >= 0 && (members[slot >>> 6] & 1L << slot) != 0;
+    }
+
+    /**
+     * Adds an entity to the end of this list, if it isn't in it already.
+     *
+     * @param entity
+     *            the entity to add.
+     * @return <code>true</code> if the entity was added.
+     */
+    public boolean add(T entity) {
+        if (contains(entity)) {
+            return false;
+        }
+        if (length == entities.length) {
+            compact();
+
+            if (length == entities.length) {
+                throw new IllegalStateException("Local list is full!");
+            }
+        }
+
+        int slot = entity.getSlot();
+        entities[length] = entity;
+        slots[length++] = slot;
+        members[slot >>> 6] |= 1L << slot;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the entity at an index of the arrays, leaving a hole behind.
+     *
+     * @param index
+     *            the index of the entity.
+     */
+    private void removeIndex(int index) {
+        int slot = slots[index];
+        entities[index] = null;
+        members[slot >>> 6] &= ~(1L << slot);
+        size--;
+    }
+
+    /** Closes the holes left by removed entities, keeping the order. */
+    private void compact() {
+        if (size == length) {
+            return;
+        }
+
+        int write = 0;
+        for (int read = 0; read < length; read++) {
+            if (entities[read] != null) {
+                entities[write] = entities[read];
+                slots[write++] = slots[read];
+            }
+        }
+        for (int i = write; i < length; i++) {
+            entities[i] = null;
+        }
+        length = write;
+    }
+
+    /** Removes every entity from this list. */
+    public void clear() {
+        for (int i = 0; i < length; i++) {
+            if (entities[i] != null) {
+                removeIndex(i);
+            }
+        }
+        length = 0;
+    }
+
+    /**
+     * Gets the amount of entities in this list.
+     *
+     * @return the size of this list.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determines if this list has no entities in it.
+     *
+     * @return <code>true</code> if this list is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the most entities this list can hold.
+     *
+     * @return the maximum size of this list.
+     */
+    public int getMaximumSize() {
+        return entities.length;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        compact();
+
+        return new Iterator<T>() {
+
+            /** The index of the next entity to return. */
+            private int index;
+
+            /** The index of the last entity returned. */
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                while (index < length && entities[index] == null) {
+                    index++;
+                }
+                return index < length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                last = index++;
+                return (T) entities[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException(
+                        "Can only call 'remove()' once in call to 'next()'.");
+                }
+
+                removeIndex(last);
+                last = -1;
+            }
+        };
+    }
+}
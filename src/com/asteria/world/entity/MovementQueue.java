@@ -6,6 +6,7 @@ import java.util.LinkedList;
 import com.asteria.engine.task.Task;
 import com.asteria.engine.task.TaskManager;
 import com.asteria.util.Utility;
+import com.asteria.world.World;
 import com.asteria.world.entity.Entity.EntityType;
 import com.asteria.world.entity.player.Player;
 import com.asteria.world.map.Position;
@@ -87,6 +88,7 @@ public class MovementQueue {
             }
 
             entity.getPosition().move(x, y);
+            World.reposition(entity);
             entity.setPrimaryDirection(walkPoint.getDirection());
             entity.setLastDirection(walkPoint.getDirection());
 
@@ -119,6 +121,7 @@ public class MovementQueue {
             }
 
             entity.getPosition().move(x, y);
+            World.reposition(entity);
             entity.setSecondaryDirection(runPoint.getDirection());
             entity.setLastDirection(runPoint.getDirection());
         }
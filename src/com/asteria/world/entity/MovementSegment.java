@@ -0,0 +1,79 @@
+package com.asteria.world.entity;
+
+import com.asteria.engine.net.ProtocolBuffer;
+
+/**
+ * Packs the movement part of the update packets into a single integer, so the
+ * movement of an entity is worked out once every tick instead of once for
+ * every player viewing it. The amount of bits is kept in the highest byte and
+ * the bits themselves in the rest, so a segment is written with a single call
+ * to {@link ProtocolBuffer#writeBits(int, int)}.
+ * <p>
+ * The segment is the same for every viewer: a bit for whether there is an
+ * update, the type of movement, the directions, and whether an update block
+ * follows. Running is the longest at <tt>10</tt> bits.
+ *
+ * @author lare96
+ */
+public final class MovementSegment {
+
+    /** The segment of an entity that didn't move and wasn't flagged. */
+    public static final int NONE = pack(1, 0);
+
+    /** The segment that removes an entity from a local list. */
+    public static final int REMOVE = pack(3, 0b111);
+
+    /** The segment of an entity that didn't move but was flagged. */
+    private static final int STAND = pack(3, 0b100);
+
+    /**
+     * Creates the segment for the argued movement.
+     *
+     * @param primaryDirection
+     *            the direction the entity walked in, or <tt>-1</tt>.
+     * @param secondaryDirection
+     *            the direction the entity ran in, or <tt>-1</tt>.
+     * @param updateRequired
+     *            if an update block follows for the entity.
+     * @return the packed segment.
+     */
+    public static int encode(int primaryDirection, int secondaryDirection,
+        boolean updateRequired) {
+        int update = updateRequired ? 1 : 0;
+
+        if (primaryDirection == -1) {
+            return updateRequired ? STAND : NONE;
+        } else if (secondaryDirection == -1) {
+            return pack(7, 0b101 << 4 | primaryDirection << 1 | update);
+        }
+        return pack(10, 0b110 << 7 | primaryDirection << 4
+            | secondaryDirection << 1 | update);
+    }
+
+    /**
+     * Writes a segment to a buffer in bit access mode.
+     *
+     * @param out
+     *            the buffer to write to.
+     * @param segment
+     *            the packed segment.
+     */
+    public static void write(ProtocolBuffer out, int segment) {
+        out.writeBits(segment >>> 24, segment);
+    }
+
+    /**
+     * Packs an amount of bits along with the bits themselves.
+     *
+     * @param amount
+     *            the amount of bits.
+     * @param bits
+     *            the bits, in the lowest bits of the value.
+     * @return the packed segment.
+     */
+    private static int pack(int amount, int bits) {
+        return amount << 24 | bits;
+    }
+
+    private MovementSegment() {}
+}
@@ -1,5 +1,9 @@
 package com.asteria.world.entity;
 
+import java.util.ArrayList;
+
+import com.asteria.engine.net.packet.BroadcastPacket;
+import com.asteria.engine.net.packet.PacketEncoder;
 import com.asteria.world.World;
 import com.asteria.world.entity.Entity.EntityType;
 import com.asteria.world.entity.player.Player;
@@ -109,18 +113,14 @@ public final class Projectile {
      * was constructed.
      */
     public void sendProjectile() {
-        for (Player player : World.getPlayers()) {
-            if (player == null) {
-                continue;
-            }
-
-            if (start.isViewableFrom(player.getPosition())) {
-                player.getPacketBuilder().sendProjectile(start, offset, 0,
-                        speed, projectileId, startHeight, endHeight, lockon,
-                        delay);
+        BroadcastPacket packet = PacketEncoder.createProjectile(offset, 0,
+                speed, projectileId, startHeight, endHeight, lockon, delay);
 
-            }
+        for (Player player : World.getPlayers().getRegionIndex().getViewers(
+                start, new ArrayList<Player>())) {
+            packet.sendTo(player, start);
         }
+        packet.release();
     }
 
     /**
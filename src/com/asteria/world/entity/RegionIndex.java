@@ -0,0 +1,340 @@
+package com.asteria.world.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.asteria.world.map.Position;
+
+/**
+ * A spatial index that groups {@link Entity}s by the <tt>8x8</tt> region
+ * chunk they are standing in. This is used to find the entities around a
+ * position without having to look through every single entity in the world.
+ * The index is modified on the game thread only, and is safe to read from the
+ * update threads because nothing moves while updating is taking place.
+ * <p>
+ * Chunks are kept in an open addressed table keyed by the primitive chunk
+ * key, so looking up a chunk never boxes the key or allocates anything.
+ *
+ * @author lare96
+ * @param <T>
+ *            the type of {@link Entity} held in this index.
+ */
+public final class RegionIndex<T extends Entity> {
+
+    /** The key of an entity that is not in any region chunk. */
+    public static final int NO_REGION = -1;
+
+    /** The amount of slots the chunk table starts out with. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** The keys of the chunks in the table, {@link #NO_REGION} if empty. */
+    private int[] keys = newKeys(INITIAL_CAPACITY);
+
+    /** The entities in each chunk, in the same slot as its key. */
+    private Object[] chunks = new Object[INITIAL_CAPACITY];
+
+    /** The amount of chunks in the table. */
+    private int size;
+
+    /**
+     * Adds an entity to the chunk for its current position.
+     *
+     * @param entity
+     *            the entity to add.
+     */
+    public void add(T entity) {
+        int key = key(entity.getPosition());
+        List<T> chunk = get(key);
+
+        if (chunk == null) {
+            chunk = new ArrayList<>();
+            put(key, chunk);
+        }
+
+        chunk.add(entity);
+        entity.setRegionKey(key);
+    }
+
+    /**
+     * Removes an entity from the chunk it was last placed in.
+     *
+     * @param entity
+     *            the entity to remove.
+     */
+    public void remove(T entity) {
+        List<T> chunk = get(entity.getRegionKey());
+
+        if (chunk != null) {
+
+            // Entities define equality by slot, so compare identities instead.
+            for (int i = 0; i < chunk.size(); i++) {
+                if (chunk.get(i) == entity) {
+                    chunk.remove(i);
+                    break;
+                }
+            }
+
+            if (chunk.isEmpty()) {
+                delete(entity.getRegionKey());
+            }
+        }
+        entity.setRegionKey(NO_REGION);
+    }
+
+    /**
+     * Moves an entity into the chunk for its current position, if it has left
+     * the chunk it was last placed in. Entities that are not in this index are
+     * ignored.
+     *
+     * @param entity
+     *            the entity that has moved.
+     */
+    public void reposition(T entity) {
+        int key = entity.getRegionKey();
+
+        if (key == NO_REGION || key == key(entity.getPosition())) {
+            return;
+        }
+
+        remove(entity);
+        add(entity);
+    }
+
+    /**
+     * Adds every entity that is viewable from the argued position to the
+     * argued list, by only looking at the chunks that intersect the view box
+     * around it.
+     *
+     * @param position
+     *            the position to get the viewable entities from.
+     * @param viewable
+     *            the list to add the viewable entities to.
+     * @return the argued list.
+     */
+    public List<T> getViewable(Position position, List<T> viewable) {
+
+        // An entity is viewable if the position is within -15 to 14 tiles of
+        // it, so it has to be within -14 to 15 tiles of the position.
+        int minX = (position.getX() - 14) >> 3;
+        int maxX = (position.getX() + 15) >> 3;
+        int minY = (position.getY() - 14) >> 3;
+        int maxY = (position.getY() + 15) >> 3;
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                List<T> chunk = get(key(x, y, position.getZ()));
+
+                if (chunk == null) {
+                    continue;
+                }
+
+                for (T entity : chunk) {
+                    if (entity.getPosition().isViewableFrom(position)) {
+                        viewable.add(entity);
+                    }
+                }
+            }
+        }
+        return viewable;
+    }
+
+    /**
+     * Adds every entity that the argued position is viewable from to the
+     * argued list. Viewing distance isn't symmetric, so this isn't always the
+     * same as the entities viewable from the position.
+     *
+     * @param position
+     *            the position that should be viewable.
+     * @param viewers
+     *            the list to add the entities that can view the position to.
+     * @return the argued list.
+     */
+    public List<T> getViewers(Position position, List<T> viewers) {
+
+        // The position is viewable from an entity if the entity is within -15
+        // to 14 tiles of it.
+        int minX = (position.getX() - 15) >> 3;
+        int maxX = (position.getX() + 14) >> 3;
+        int minY = (position.getY() - 15) >> 3;
+        int maxY = (position.getY() + 14) >> 3;
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                List<T> chunk = get(key(x, y, position.getZ()));
+
+                if (chunk == null) {
+                    continue;
+                }
+
+                for (T entity : chunk) {
+                    if (position.isViewableFrom(entity.getPosition())) {
+                        viewers.add(entity);
+                    }
+                }
+            }
+        }
+        return viewers;
+    }
+
+    /**
+     * Gets the amount of chunks that currently have entities in them.
+     *
+     * @return the amount of occupied chunks.
+     */
+    public int getChunkCount() {
+        return size;
+    }
+
+    /**
+     * Gets the entities in the chunk with the argued key.
+     *
+     * @param key
+     *            the key of the chunk.
+     * @return the entities in the chunk, or <code>null</code> if there are
+     *         none.
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> get(int key) {
+        int mask = keys.length - 1;
+
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (List<T>) chunks[i];
+            } else if (keys[i] == NO_REGION) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Places the entities of a chunk that isn't in the table yet.
+     *
+     * @param key
+     *            the key of the chunk.
+     * @param chunk
+     *            the entities in the chunk.
+     */
+    private void put(int key, List<T> chunk) {
+
+        // Keep the table at most half full, so probes stay short.
+        if ((size + 1) * 2 > keys.length) {
+            int[] oldKeys = keys;
+            Object[] oldChunks = chunks;
+            keys = newKeys(oldKeys.length * 2);
+            chunks = new Object[oldKeys.length * 2];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != NO_REGION) {
+                    insert(oldKeys[i], oldChunks[i]);
+                }
+            }
+        }
+        insert(key, chunk);
+        size++;
+    }
+
+    /**
+     * Inserts a chunk into the first free slot along its probe sequence.
+     *
+     * @param key
+     *            the key of the chunk.
+     * @param chunk
+     *            the entities in the chunk.
+     */
+    private void insert(int key, Object chunk) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+
+        while (keys[i] != NO_REGION) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        chunks[i] = chunk;
+    }
+
+    /**
+     * Removes a chunk from the table, shifting back the chunks probed past it
+     * so no tombstones are left behind.
+     *
+     * @param key
+     *            the key of the chunk.
+     */
+    private void delete(int key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+
+        while (keys[i] != key) {
+            if (keys[i] == NO_REGION) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        // Move every following chunk that can't be found past the hole.
+        for (int j = (i + 1) & mask; keys[j] != NO_REGION; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                chunks[i] = chunks[j];
+                i = j;
+            }
+        }
+        keys[i] = NO_REGION;
+        chunks[i] = null;
+        size--;
+    }
+
+    /**
+     * Spreads the bits of a chunk key, since neighbouring chunks only differ
+     * in their lowest bits.
+     *
+     * @param key
+     *            the chunk key.
+     * @return the spread key.
+     */
+    private static int hash(int key) {
+        int h = key * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Creates an empty array of chunk keys.
+     *
+     * @param capacity
+     *            the amount of slots, a power of two.
+     * @return the array of keys.
+     */
+    private static int[] newKeys(int capacity) {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, NO_REGION);
+        return keys;
+    }
+
+    /**
+     * Creates the key of the chunk that contains the argued position.
+     *
+     * @param position
+     *            the position to create the key for.
+     * @return the chunk key.
+     */
+    public static int key(Position position) {
+        return key(position.getX() >> 3, position.getY() >> 3, position.getZ());
+    }
+
+    /**
+     * Creates the key of the argued chunk.
+     *
+     * @param chunkX
+     *            the chunk x coordinate.
+     * @param chunkY
+     *            the chunk y coordinate.
+     * @param z
+     *            the height level.
+     * @return the chunk key.
+     */
+    private static int key(int chunkX, int chunkY, int z) {
+        return (z & 0x3) << 28 | (chunkX & 0x3fff) << 14 | (chunkY & 0x3fff);
+    }
+}
@@ -0,0 +1,198 @@
+package com.asteria.world.entity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.asteria.engine.net.ProtocolBuffer;
+import com.asteria.util.Statistic;
+import com.asteria.world.entity.player.Player;
+
+/**
+ * Decides which entities are added to the local lists of players in crowded
+ * areas, and how many bytes their update packets can grow to. Only
+ * {@link #MAX_ADDITIONS} entities can be added every tick, so when there are
+ * more candidates than that they're ranked by how much they matter to the
+ * viewer: the entities they're fighting come first, then their trade partner,
+ * then their friends, and then everyone else, each by distance.
+ * <p>
+ * Additions are also held back once an update packet reaches
+ * {@link #BYTE_BUDGET} bytes, since every added player brings its whole
+ * appearance along. Those entities are deferred to the following ticks
+ * instead of growing the packet further, which is why they're ranked first.
+ *
+ * @author lare96
+ */
+public final class UpdateBudget {
+
+    /** If additions should be ranked when they can't all be added at once. */
+    public static final boolean CROWD_MODE = true;
+
+    /** The most entities that can be added to a local list every tick. */
+    public static final int MAX_ADDITIONS = 15;
+
+    /** The most entities a local list can hold. */
+    public static final int MAX_LOCAL = 255;
+
+    /**
+     * The amount of bytes an update packet can grow to before additions are
+     * deferred. The client can only read <tt>5000</tt> bytes at once.
+     */
+    public static final int BYTE_BUDGET = 4000;
+
+    /** The priority of entities in combat with the viewer. */
+    private static final int COMBAT = 0;
+
+    /** The priority of the trade partner of the viewer. */
+    private static final int TRADE = 1;
+
+    /** The priority of the friends of the viewer. */
+    private static final int FRIEND = 2;
+
+    /** The priority of everyone else. */
+    private static final int OTHER = 3;
+
+    /** The amount of additions deferred during this tick. */
+    private static final AtomicInteger deferred = new AtomicInteger();
+
+    /** The amount of additions deferred every tick. */
+    private static final Statistic deferredAdditions = new Statistic(
+        "Deferred additions", "/tick");
+
+    /** The size of every player update packet. */
+    private static final Statistic playerPacketSize = new Statistic(
+        "Player update size", "b");
+
+    /** The size of every npc update packet. */
+    private static final Statistic npcPacketSize = new Statistic(
+        "Npc update size", "b");
+
+    /**
+     * Sorts the argued candidates by how much they matter to the viewer, if
+     * crowd mode is enabled.
+     *
+     * @param viewer
+     *            the player the candidates would be added for.
+     * @param candidates
+     *            the entities that could be added.
+     */
+    public static <T extends Entity> void rank(Player viewer,
+        List<T> candidates) {
+        if (!CROWD_MODE || candidates.size() < 2) {
+            return;
+        }
+
+        // Sort the priorities along with the indexes of their candidates.
+        long[] keys = new long[candidates.size()];
+
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) priority(viewer, candidates.get(i)) << 32 | i;
+        }
+        Arrays.sort(keys);
+        Object[] sorted = candidates.toArray();
+
+        for (int i = 0; i < keys.length; i++) {
+            @SuppressWarnings("unchecked")
+            T candidate = (T) sorted[(int) keys[i]];
+            candidates.set(i, candidate);
+        }
+    }
+
+    /**
+     * Gets the priority of an entity for the argued viewer, lower priorities
+     * matter more.
+     *
+     * @param viewer
+     *            the player viewing the entity.
+     * @param other
+     *            the entity being viewed.
+     * @return the priority of the entity.
+     */
+    private static int priority(Player viewer, Entity other) {
+        int relationship = OTHER;
+
+        if (viewer.getCombatBuilder().getVictim() == other || other
+            .getCombatBuilder().getVictim() == viewer) {
+            relationship = COMBAT;
+        } else if (other instanceof Player) {
+            Player player = (Player) other;
+
+            if (viewer.getTradeSession().getPartner() == player) {
+                relationship = TRADE;
+            } else if (viewer.getFriends().contains(player
+                .getUsernameHash())) {
+                relationship = FRIEND;
+            }
+        }
+
+        int distance = Math.max(Math.abs(other.getPosition().getX() - viewer
+            .getPosition().getX()), Math.abs(other.getPosition().getY()
+            - viewer.getPosition().getY()));
+        return relationship << 16 | distance;
+    }
+
+    /**
+     * Determines if an addition can be afforded by an update packet.
+     *
+     * @param out
+     *            the buffer of the update packet.
+     * @param block
+     *            the buffer of the update blocks.
+     * @param cost
+     *            the amount of bytes the addition will take.
+     * @return <code>true</code> if the packet stays within the budget.
+     */
+    public static boolean canAfford(ProtocolBuffer out, ProtocolBuffer block,
+        int cost) {
+        return out.getBuffer().position() + block.getBuffer().position()
+            + cost <= BYTE_BUDGET;
+    }
+
+    /**
+     * Records additions being deferred to a later tick. This can be called
+     * from any thread.
+     *
+     * @param amount
+     *            the amount of deferred additions.
+     */
+    public static void recordDeferred(int amount) {
+        deferred.addAndGet(amount);
+    }
+
+    /**
+     * Records the amount of deferred additions of this tick and starts
+     * counting again. This should be called once at the end of every tick.
+     */
+    public static void tick() {
+        deferredAdditions.record(deferred.getAndSet(0));
+    }
+
+    /**
+     * Gets the amount of additions deferred every tick.
+     *
+     * @return the deferred additions.
+     */
+    public static Statistic getDeferredAdditions() {
+        return deferredAdditions;
+    }
+
+    /**
+     * Gets the size of every player update packet.
+     *
+     * @return the player update packet sizes.
+     */
+    public static Statistic getPlayerPacketSize() {
+        return playerPacketSize;
+    }
+
+    /**
+     * Gets the size of every npc update packet.
+     *
+     * @return the npc update packet sizes.
+     */
+    public static Statistic getNpcPacketSize() {
+        return npcPacketSize;
+    }
+
+    private UpdateBudget() {}
+}
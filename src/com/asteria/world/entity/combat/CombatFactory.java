@@ -8,7 +8,6 @@ import com.asteria.world.entity.Entity.EntityType;
 import com.asteria.world.entity.Graphic;
 import com.asteria.world.entity.Hit;
 import com.asteria.world.entity.MovementQueue;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.combat.effect.CombatPoisonEffect;
 import com.asteria.world.entity.combat.effect.CombatPoisonEffect.PoisonType;
 import com.asteria.world.entity.combat.effect.CombatSkullEffect;
@@ -265,7 +264,7 @@ public final class CombatFactory {
         // Otherwise skull the player as normal.
         player.setSkullTimer(3000);
         player.setSkullIcon(0);
-        player.getFlags().flag(Flag.APPEARANCE);
+        player.updateAppearance();
         TaskManager.submit(new CombatSkullEffect(player));
     }
 
@@ -1,7 +1,6 @@
 package com.asteria.world.entity.combat.effect;
 
 import com.asteria.engine.task.Task;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.player.Player;
 
 /**
@@ -33,7 +32,7 @@ public class CombatSkullEffect extends Task {
         // Timer is at or below 0 so we can remove the skull.
         if (player.getSkullTimer() <= 0) {
             player.setSkullIcon(-1);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
             this.cancel();
             return;
         }
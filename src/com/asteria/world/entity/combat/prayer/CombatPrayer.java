@@ -2,7 +2,6 @@ package com.asteria.world.entity.combat.prayer;
 
 import com.asteria.engine.task.TaskManager;
 import com.asteria.util.Utility;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.combat.CombatFactory.CombatType;
 import com.asteria.world.entity.player.Player;
 import com.asteria.world.entity.player.skill.Skills;
@@ -240,7 +239,7 @@ public enum CombatPrayer {
             player.setHeadIcon(CombatPrayer.PROTECT_FROM_MAGIC.getHeadIcon());
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.PROTECT_FROM_MAGIC.getPrayerGlow(), 1);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
 
         @Override
@@ -249,7 +248,7 @@ public enum CombatPrayer {
             player.setHeadIcon(-1);
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.PROTECT_FROM_MAGIC.getPrayerGlow(), 0);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
     },
 
@@ -266,7 +265,7 @@ public enum CombatPrayer {
             player.setHeadIcon(CombatPrayer.PROTECT_FROM_MISSILES.getHeadIcon());
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.PROTECT_FROM_MISSILES.getPrayerGlow(), 1);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
 
         @Override
@@ -276,7 +275,7 @@ public enum CombatPrayer {
             player.setHeadIcon(-1);
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.PROTECT_FROM_MISSILES.getPrayerGlow(), 0);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
     },
 
@@ -292,7 +291,7 @@ public enum CombatPrayer {
             player.setHeadIcon(CombatPrayer.PROTECT_FROM_MELEE.getHeadIcon());
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.PROTECT_FROM_MELEE.getPrayerGlow(), 1);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
 
         @Override
@@ -301,7 +300,7 @@ public enum CombatPrayer {
             player.setHeadIcon(-1);
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.PROTECT_FROM_MELEE.getPrayerGlow(), 0);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
     },
 
@@ -317,7 +316,7 @@ public enum CombatPrayer {
             player.setHeadIcon(CombatPrayer.RETRIBUTION.getHeadIcon());
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.RETRIBUTION.getPrayerGlow(), 1);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
 
         @Override
@@ -326,7 +325,7 @@ public enum CombatPrayer {
             player.setHeadIcon(-1);
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.RETRIBUTION.getPrayerGlow(), 0);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
     },
 
@@ -342,7 +341,7 @@ public enum CombatPrayer {
             player.setHeadIcon(CombatPrayer.REDEMPTION.getHeadIcon());
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.REDEMPTION.getPrayerGlow(), 1);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
 
         @Override
@@ -351,7 +350,7 @@ public enum CombatPrayer {
             player.setHeadIcon(-1);
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.REDEMPTION.getPrayerGlow(), 0);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
     },
 
@@ -367,7 +366,7 @@ public enum CombatPrayer {
             player.setHeadIcon(CombatPrayer.SMITE.getHeadIcon());
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.SMITE.getPrayerGlow(), 1);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
 
         @Override
@@ -376,7 +375,7 @@ public enum CombatPrayer {
             player.setHeadIcon(-1);
             player.getPacketBuilder().sendConfig(
                     CombatPrayer.SMITE.getPrayerGlow(), 0);
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
     };
 
@@ -1,7 +1,5 @@
 package com.asteria.world.entity.combat.special;
 
-import java.util.Set;
-
 import com.asteria.engine.task.Task;
 import com.asteria.engine.task.TaskManager;
 import com.asteria.util.Utility;
@@ -229,7 +227,7 @@ public enum CombatSpecial {
                 @Override
                 public void onHit(int damage, boolean accurate) {
                     if (Location.inMultiCombat(player)) {
-                        Set<? extends Entity> localEntities = null;
+                        Iterable<? extends Entity> localEntities = null;
                         if (target.type() == EntityType.PLAYER) {
                             localEntities = player.getLocalPlayers();
                         } else if (target.type() == EntityType.NPC) {
@@ -6,7 +6,6 @@ import com.asteria.world.entity.Entity;
 import com.asteria.world.entity.Entity.EntityType;
 import com.asteria.world.entity.Graphic;
 import com.asteria.world.entity.Projectile;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.combat.CombatContainer;
 import com.asteria.world.entity.combat.CombatFactory;
 import com.asteria.world.entity.combat.CombatFactory.CombatType;
@@ -232,7 +231,7 @@ public class DefaultRangedCombatStrategy implements CombatStrategy {
         player.getEquipment().get(slot).decrementAmount();
 
         if (slot == Utility.EQUIPMENT_SLOT_WEAPON) {
-            player.getFlags().flag(Flag.APPEARANCE);
+            player.updateAppearance();
         }
 
         // If we are at 0 ammo remove the item from the equipment completely.
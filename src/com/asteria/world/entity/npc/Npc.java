@@ -48,6 +48,9 @@ public class Npc extends Entity {
     /** If this npc was originally walking randomly. */
     private boolean originalRandomWalk;
 
+    /** The update block sent to players this cycle, encoded on first use. */
+    private volatile byte[] updateBlock;
+
     /**
      * Create a new {@link Npc}.
      * 
@@ -349,4 +352,23 @@ public class Npc extends Entity {
     public boolean[] getStrengthWeakened() {
         return strengthWeakened;
     }
+
+    /**
+     * Gets the update block sent to players this cycle.
+     * 
+     * @return the update block, or null if it hasn't been encoded.
+     */
+    public byte[] getUpdateBlock() {
+        return updateBlock;
+    }
+
+    /**
+     * Sets the update block for this cycle.
+     * 
+     * @param updateBlock
+     *            the update block sent to players.
+     */
+    public void setUpdateBlock(byte[] updateBlock) {
+        this.updateBlock = updateBlock;
+    }
 }
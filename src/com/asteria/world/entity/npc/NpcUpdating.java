@@ -1,13 +1,20 @@
 package com.asteria.world.entity.npc;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
+import com.asteria.engine.net.BufferPool;
 import com.asteria.engine.net.ProtocolBuffer;
 import com.asteria.engine.net.ProtocolBuffer.ByteOrder;
 import com.asteria.engine.net.ProtocolBuffer.ValueType;
 import com.asteria.engine.task.TaskManager;
 import com.asteria.util.Utility;
+import com.asteria.world.UpdateContext;
 import com.asteria.world.World;
+import com.asteria.world.entity.LocalInterest;
+import com.asteria.world.entity.MovementSegment;
+import com.asteria.world.entity.UpdateBudget;
 import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.player.Player;
 import com.asteria.world.map.Position;
@@ -20,56 +27,91 @@ import com.asteria.world.map.Position;
  */
 public class NpcUpdating {
 
+    /**
+     * The update block of npcs added to a local list without being flagged,
+     * which is just an empty update mask. Npcs have no appearance block, so
+     * this is all the client needs to be sent for them.
+     */
+    private static final byte[] EMPTY_BLOCK = { 0 };
+
     /**
      * Updates all {@link Npc}s for the argued {@link Player}.
      * 
      * @param player
      *            the player to update npcs for.
+     * @param context
+     *            the scratch space of the worker updating the player.
      */
-    public static void update(Player player) throws Exception {
-        ProtocolBuffer out = new ProtocolBuffer(2048);
-        ProtocolBuffer block = new ProtocolBuffer(1024);
+    public static void update(Player player, UpdateContext context)
+            throws Exception {
+        ProtocolBuffer out = context.getOut();
+        ProtocolBuffer block = context.getBlock();
+        out.clear();
+        block.clear();
 
         // Initialize the update packet.
         out.buildVarShort(65, player.getSession());
         out.startBitAccess();
 
-        // Update the NPCs in the local list.
+        // Update the NPCs in the local list, keeping them until they've been
+        // far away for long enough.
+        long tick = World.getTick();
+        long[] ticksAdded = player.getLocalNpcsAdded();
         out.writeBits(8, player.getLocalNpcs().size());
         for (Iterator<Npc> i = player.getLocalNpcs().iterator(); i.hasNext();) {
             Npc npc = i.next();
-            if (npc.getPosition().isViewableFrom(player.getPosition())) {
+            if (LocalInterest.canKeep(player.getPosition(), npc.getPosition(),
+                    tick - ticksAdded[npc.getSlot()])) {
                 NpcUpdating.updateNpcMovement(out, npc);
                 if (npc.getFlags().isUpdateRequired()) {
-                    NpcUpdating.updateState(block, npc);
+                    NpcUpdating.updateState(context, npc, false);
                 }
             } else {
 
                 // Remove the NPC from the local list.
-                out.writeBit(true);
-                out.writeBits(2, 3);
+                MovementSegment.write(out, MovementSegment.REMOVE);
                 i.remove();
+                LocalInterest.recordRemove();
+            }
+        }
+
+        // Find the NPCs that could be added to the local list, only looking at
+        // the NPCs in the surrounding region chunks.
+        List<Npc> candidates = context.getNpcCandidates();
+        for (Npc npc : World.getNpcs().getRegionIndex().getViewable(
+                player.getPosition(), context.getViewableNpcs())) {
+            if (!player.getLocalNpcs().contains(npc)) {
+                candidates.add(npc);
             }
         }
 
-        // Update the local NPC list itself.
+        // Add the NPCs that matter most first, the budget can cut them off.
+        int room = Math.min(UpdateBudget.MAX_ADDITIONS,
+                UpdateBudget.MAX_LOCAL - player.getLocalNpcs().size());
+        UpdateBudget.rank(player, candidates);
+
         int added = 0;
-        for (Npc npc : World.getNpcs()) {
-            if (npc == null || added == 15 || player.getLocalNpcs().size() >= 255 || player
-                    .getLocalNpcs().contains(npc)) {
-                continue;
+        for (Npc npc : candidates) {
+            if (added == room) {
+                break;
             }
+            byte[] state = stateBlock(context, npc, true);
 
-            if (npc.getPosition().isViewableFrom(player.getPosition())) {
-                npc.getFlags().flag(Flag.APPEARANCE);
-                player.getLocalNpcs().add(npc);
-                addNpc(out, player, npc);
+            // Adding takes 38 bits along with the update block.
+            if (!UpdateBudget.canAfford(out, block, state.length + 5)) {
 
-                if (npc.getFlags().isUpdateRequired()) {
-                    NpcUpdating.updateState(block, npc);
-                }
-                added++;
+                // Leave the rest for the next ticks, the packet is big enough.
+                UpdateBudget.recordDeferred(Math.min(room, candidates.size())
+                        - added);
+                break;
             }
+
+            player.getLocalNpcs().add(npc);
+            ticksAdded[npc.getSlot()] = tick;
+            LocalInterest.recordAdd();
+            addNpc(out, player, npc);
+            block.writeBytes(state, state.length);
+            added++;
         }
 
         // Append the update block to the packet if need be.
@@ -83,6 +125,7 @@ public class NpcUpdating {
 
         // Ship the packet out to the client.
         out.endVarShort();
+        UpdateBudget.getNpcPacketSize().record(out.getBuffer().position());
         out.sendPacket();
     }
 
@@ -101,11 +144,26 @@ public class NpcUpdating {
         Position delta = Utility.delta(player.getPosition(), npc.getPosition());
         out.writeBits(5, delta.getY());
         out.writeBits(5, delta.getX());
-        out.writeBit(npc.getFlags().isUpdateRequired());
+
+        // Added NPCs always have an update block, see the forced variant.
+        out.writeBit(true);
         out.writeBits(12, npc.getNpcId());
         out.writeBit(true);
     }
 
+    /**
+     * Packs the movement of a NPC for this cycle, once it has moved. NPCs only
+     * ever walk, so their secondary direction is never sent.
+     * 
+     * @param npc
+     *            The NPC to pack the movement of.
+     */
+    public static void prepare(Npc npc) {
+        npc.setMovementSegment(MovementSegment.encode(npc
+                .getPrimaryDirection(), -1, npc.getFlags()
+                .isUpdateRequired()));
+    }
+
     /**
      * Updates the movement of a NPC for this cycle.
      * 
@@ -115,36 +173,81 @@ public class NpcUpdating {
      *            The NPC to update.
      */
     private static void updateNpcMovement(ProtocolBuffer out, Npc npc) {
-        if (npc.getPrimaryDirection() == -1) {
-            if (npc.getFlags().isUpdateRequired()) {
-                out.writeBit(true);
-                out.writeBits(2, 0);
-            } else {
-                out.writeBit(false);
-            }
-        } else {
-            out.writeBit(true);
-            out.writeBits(2, 1);
-            out.writeBits(3, npc.getPrimaryDirection());
+        MovementSegment.write(out, npc.getMovementSegment());
+    }
 
-            if (npc.getFlags().isUpdateRequired()) {
-                out.writeBit(true);
-            } else {
-                out.writeBit(false);
+    /**
+     * Updates the state of the NPC by copying its update block for this
+     * cycle, which is encoded once by the first player that needs it and
+     * shared with everyone else viewing the NPC.
+     * 
+     * @param context
+     *            The scratch space holding the update block to append to.
+     * @param npc
+     *            The NPC to update.
+     * @param forced
+     *            If the NPC is being added, in which case an update block is
+     *            sent even when the NPC hasn't been flagged.
+     */
+    private static void updateState(UpdateContext context, Npc npc,
+            boolean forced) throws Exception {
+        byte[] data = stateBlock(context, npc, forced);
+
+        if (data != null) {
+            context.getBlock().writeBytes(data, data.length);
+        }
+    }
+
+    /**
+     * Gets the update block of the NPC for this cycle, encoding it if this is
+     * the first time it's needed.
+     * 
+     * @param context
+     *            The scratch space counting the cache hits and misses.
+     * @param npc
+     *            The NPC to get the update block of.
+     * @param forced
+     *            If the NPC is being added, in which case an update block is
+     *            sent even when the NPC hasn't been flagged.
+     * @return the update block, or null if none has to be sent.
+     */
+    private static byte[] stateBlock(UpdateContext context, Npc npc,
+            boolean forced) throws Exception {
+
+        // Unflagged NPCs only have the forced variant, which never changes.
+        if (!npc.getFlags().isUpdateRequired()) {
+            return forced ? EMPTY_BLOCK : null;
+        }
+
+        byte[] data = npc.getUpdateBlock();
+
+        if (data == null) {
+            synchronized (npc) {
+                data = npc.getUpdateBlock();
+
+                if (data == null) {
+                    data = encodeState(npc);
+                    npc.setUpdateBlock(data);
+                    context.recordCacheMiss();
+                } else {
+                    context.recordCacheHit();
+                }
             }
+        } else {
+            context.recordCacheHit();
         }
+        return data;
     }
 
     /**
-     * Updates the state of the NPC to the given update block.
+     * Encodes the state of the NPC into a new update block.
      * 
-     * @param block
-     *            The update block to append to.
      * @param npc
-     *            The NPC to update.
+     *            The NPC to encode the state of.
+     * @return the encoded update block.
      */
-    private static void updateState(ProtocolBuffer block, Npc npc)
-            throws Exception {
+    private static byte[] encodeState(Npc npc) throws Exception {
+        ProtocolBuffer block = BufferPool.acquire(300);
         int mask = 0x0;
 
         // NPC update masks.
@@ -200,6 +303,11 @@ public class NpcUpdating {
         if (npc.getFlags().get(Flag.FACE_COORDINATE)) {
             appendFaceCoordinate(block, npc);
         }
+
+        byte[] state = Arrays.copyOf(block.getBuffer().array(), block
+                .getBuffer().position());
+        block.release();
+        return state;
     }
 
     /**
@@ -1,10 +1,7 @@
 package com.asteria.world.entity.player;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 import com.asteria.Main;
 import com.asteria.engine.net.Session;
@@ -12,8 +9,12 @@ import com.asteria.engine.net.packet.PacketEncoder;
 import com.asteria.engine.task.Task;
 import com.asteria.util.Stopwatch;
 import com.asteria.util.Utility;
+import com.asteria.world.World;
 import com.asteria.world.entity.Entity;
 import com.asteria.world.entity.Hit;
+import com.asteria.world.entity.LocalList;
+import com.asteria.world.entity.UpdateBudget;
+import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.combat.CombatFactory;
 import com.asteria.world.entity.combat.CombatFactory.CombatType;
 import com.asteria.world.entity.combat.CombatStrategy;
@@ -175,10 +176,19 @@ public class Player extends Entity {
     private boolean insertItem, withdrawAsNote;
 
     /** A list of local players. */
-    private final Set<Player> players = new LinkedHashSet<>();
+    private final LocalList<Player> players = new LocalList<>(World
+            .getPlayers().getCapacity(), UpdateBudget.MAX_LOCAL);
 
     /** A list of local npcs. */
-    private final Set<Npc> npcs = new LinkedHashSet<>();
+    private final LocalList<Npc> npcs = new LocalList<>(World.getNpcs()
+            .getCapacity(), UpdateBudget.MAX_LOCAL);
+
+    /** The tick every local player was added on, indexed by slot. */
+    private final long[] playersAdded = new long[World.getPlayers()
+            .getCapacity()];
+
+    /** The tick every local npc was added on, indexed by slot. */
+    private final long[] npcsAdded = new long[World.getNpcs().getCapacity()];
 
     /** The players rights. */
     private PlayerRights rights;
@@ -222,8 +232,29 @@ public class Player extends Entity {
     /** Private messaging for this player. */
     private PrivateMessage privateMessage = new PrivateMessage(this);
 
-    /** The cached update block. */
-    private ByteBuffer cachedUpdateBlock;
+    /** The update block sent to other players this cycle. */
+    private byte[] updateBlock;
+
+    /** The update block sent to this player this cycle, without chat. */
+    private byte[] selfUpdateBlock;
+
+    /** The update block sent to players adding this player this cycle. */
+    private volatile byte[] forcedUpdateBlock;
+
+    /** The update block sent to players adding this player when unflagged. */
+    private byte[] idleUpdateBlock;
+
+    /** The version of the appearance the idle update block was built from. */
+    private int idleUpdateBlockVersion = -1;
+
+    /** The encoded appearance of this player. */
+    private byte[] appearanceBlock;
+
+    /** The version of this player's appearance. */
+    private int appearanceVersion;
+
+    /** The version of the appearance the encoded appearance was built from. */
+    private int appearanceBlockVersion = -1;
 
     /** The player's username hash. */
     private long usernameHash;
@@ -444,6 +475,7 @@ public class Player extends Entity {
         getMovementQueue().reset();
         getPacketBuilder().sendCloseWindows();
         getPosition().setAs(position);
+        World.reposition(this);
         setResetMovementQueue(true);
         setNeedsPlacement(true);
         getPacketBuilder().sendMapRegion();
@@ -711,16 +743,35 @@ public class Player extends Entity {
         return password;
     }
 
-    public Set<Player> getLocalPlayers() {
+    public LocalList<Player> getLocalPlayers() {
         return players;
     }
 
-    public Set<Npc> getLocalNpcs() {
+    public LocalList<Npc> getLocalNpcs() {
         return npcs;
     }
 
+    /**
+     * Gets the tick every local player was added on, indexed by slot.
+     * 
+     * @return the ticks the local players were added on.
+     */
+    public long[] getLocalPlayersAdded() {
+        return playersAdded;
+    }
+
+    /**
+     * Gets the tick every local npc was added on, indexed by slot.
+     * 
+     * @return the ticks the local npcs were added on.
+     */
+    public long[] getLocalNpcsAdded() {
+        return npcsAdded;
+    }
+
     public void setNpcAppearanceId(int npcAppearanceId) {
         this.npcAppearanceId = npcAppearanceId;
+        updateAppearance();
     }
 
     public int getNpcAppearanceId() {
@@ -1391,22 +1442,128 @@ public class Player extends Entity {
     }
 
     /**
-     * Gets the cached update block.
+     * Gets the update block sent to other players this cycle.
+     * 
+     * @return the update block, or null if it hasn't been prepared.
+     */
+    public byte[] getUpdateBlock() {
+        return updateBlock;
+    }
+
+    /**
+     * Gets the update block sent to this player this cycle, which is the
+     * update block without chat.
+     * 
+     * @return the self update block, or null if it hasn't been prepared.
+     */
+    public byte[] getSelfUpdateBlock() {
+        return selfUpdateBlock;
+    }
+
+    /**
+     * Gets the update block sent to players adding this player this cycle,
+     * which always contains the appearance of this player.
+     * 
+     * @return the forced update block, or null if it hasn't been prepared.
+     */
+    public byte[] getForcedUpdateBlock() {
+        return forcedUpdateBlock;
+    }
+
+    /**
+     * Sets the update blocks for this cycle.
+     * 
+     * @param updateBlock
+     *            the update block sent to other players.
+     * @param selfUpdateBlock
+     *            the update block sent to this player.
+     * @param forcedUpdateBlock
+     *            the update block sent to players adding this player.
+     */
+    public void setUpdateBlocks(byte[] updateBlock, byte[] selfUpdateBlock,
+            byte[] forcedUpdateBlock) {
+        this.updateBlock = updateBlock;
+        this.selfUpdateBlock = selfUpdateBlock;
+        this.forcedUpdateBlock = forcedUpdateBlock;
+    }
+
+    /**
+     * Sets the update block sent to players adding this player this cycle.
+     * 
+     * @param forcedUpdateBlock
+     *            the forced update block.
+     */
+    public void setForcedUpdateBlock(byte[] forcedUpdateBlock) {
+        this.forcedUpdateBlock = forcedUpdateBlock;
+    }
+
+    /**
+     * Gets the update block sent to players adding this player while it
+     * hasn't been flagged, which is just the appearance of this player.
+     * 
+     * @return the idle update block, or null if it has to be encoded again
+     *         because the appearance has changed.
+     */
+    public byte[] getIdleUpdateBlock() {
+        return idleUpdateBlockVersion == appearanceVersion ? idleUpdateBlock
+                : null;
+    }
+
+    /**
+     * Sets the update block sent to players adding this player while it
+     * hasn't been flagged.
+     * 
+     * @param idleUpdateBlock
+     *            the idle update block.
+     * @param version
+     *            the version of the appearance it was encoded from.
+     */
+    public void setIdleUpdateBlock(byte[] idleUpdateBlock, int version) {
+        this.idleUpdateBlock = idleUpdateBlock;
+        this.idleUpdateBlockVersion = version;
+    }
+
+    /**
+     * Flags this player's appearance for an update and invalidates the encoded
+     * appearance. This should be used instead of flagging the appearance
+     * directly whenever anything that shows up in the appearance changes.
+     */
+    public void updateAppearance() {
+        appearanceVersion++;
+        getFlags().flag(Flag.APPEARANCE);
+    }
+
+    /**
+     * Gets the encoded appearance of this player.
+     * 
+     * @return the encoded appearance, or null if it has to be encoded again
+     *         because the appearance has changed.
+     */
+    public byte[] getAppearanceBlock() {
+        return appearanceBlockVersion == appearanceVersion ? appearanceBlock
+                : null;
+    }
+
+    /**
+     * Sets the encoded appearance of this player.
      * 
-     * @return the cached update block.
+     * @param appearanceBlock
+     *            the encoded appearance.
+     * @param version
+     *            the version of the appearance it was encoded from.
      */
-    public ByteBuffer getCachedUpdateBlock() {
-        return cachedUpdateBlock;
+    public void setAppearanceBlock(byte[] appearanceBlock, int version) {
+        this.appearanceBlock = appearanceBlock;
+        this.appearanceBlockVersion = version;
     }
 
     /**
-     * Sets the cached update block.
+     * Gets the version of this player's appearance.
      * 
-     * @param cachedUpdateBlock
-     *            the cached update block.
+     * @return the appearance version.
      */
-    public void setCachedUpdateBlock(ByteBuffer cachedUpdateBlock) {
-        this.cachedUpdateBlock = cachedUpdateBlock;
+    public int getAppearanceVersion() {
+        return appearanceVersion;
     }
 
     /**
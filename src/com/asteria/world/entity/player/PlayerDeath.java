@@ -11,7 +11,6 @@ import java.util.Objects;
 import com.asteria.util.Utility;
 import com.asteria.world.entity.Animation;
 import com.asteria.world.entity.EntityDeath;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.combat.prayer.CombatPrayer;
 import com.asteria.world.entity.player.content.AssignWeaponInterface;
 import com.asteria.world.entity.player.minigame.Minigame;
@@ -129,7 +128,7 @@ public class PlayerDeath extends EntityDeath<Player> {
         entity.getPacketBuilder().sendWalkable(65535);
         CombatPrayer.deactivateAll(entity);
         Skills.restoreAll(entity);
-        entity.getFlags().flag(Flag.APPEARANCE);
+        entity.updateAppearance();
     }
 
     /**
@@ -162,7 +161,7 @@ public class PlayerDeath extends EntityDeath<Player> {
         entity.getInventory().clear();
         entity.getEquipment().refresh();
         entity.getInventory().refresh();
-        entity.getFlags().flag(Flag.APPEARANCE);
+        entity.updateAppearance();
 
         // The player is skulled so drop everything.
         if (entity.getSkullTimer() > 0) {
@@ -1,14 +1,21 @@
 package com.asteria.world.entity.player;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
+import com.asteria.engine.net.BufferPool;
 import com.asteria.engine.net.ProtocolBuffer;
 import com.asteria.engine.net.ProtocolBuffer.ByteOrder;
 import com.asteria.engine.net.ProtocolBuffer.ValueType;
 import com.asteria.engine.net.Session;
 import com.asteria.engine.task.TaskManager;
 import com.asteria.util.Utility;
+import com.asteria.world.UpdateContext;
 import com.asteria.world.World;
+import com.asteria.world.entity.LocalInterest;
+import com.asteria.world.entity.MovementSegment;
+import com.asteria.world.entity.UpdateBudget;
 import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.player.skill.Skills;
 import com.asteria.world.map.Position;
@@ -21,16 +28,26 @@ import com.asteria.world.map.Position;
  */
 public final class PlayerUpdating {
 
+    /**
+     * The update block of players whose blocks couldn't be prepared, which is
+     * just an empty update mask.
+     */
+    private static final byte[] EMPTY_BLOCK = { 0 };
+
     /**
      * Updates the argued {@link Player}.
      * 
      * @param player
      *            the player to update.
+     * @param context
+     *            the scratch space of the worker updating the player.
      */
-    public static void update(Player player) throws Exception {
-
-        ProtocolBuffer out = new ProtocolBuffer(16384);
-        ProtocolBuffer block = new ProtocolBuffer(8192);
+    public static void update(Player player, UpdateContext context)
+            throws Exception {
+        ProtocolBuffer out = context.getOut();
+        ProtocolBuffer block = context.getBlock();
+        out.clear();
+        block.clear();
 
         // Initialize the update packet.
         out.buildVarShort(81, player.getSession());
@@ -40,51 +57,69 @@ public final class PlayerUpdating {
         PlayerUpdating.updateLocalPlayerMovement(player, out);
 
         if (player.getFlags().isUpdateRequired()) {
-            PlayerUpdating.updateState(player, player, block, false, true);
+            PlayerUpdating.updateState(player, block, false, true);
         }
 
-        // Update other local players.
+        // Update other local players, keeping them until they've been far
+        // away for long enough.
+        long tick = World.getTick();
+        long[] ticksAdded = player.getLocalPlayersAdded();
         out.writeBits(8, player.getLocalPlayers().size());
         for (Iterator<Player> i = player.getLocalPlayers().iterator(); i
                 .hasNext();) {
             Player other = i.next();
-            if (other.getPosition().isViewableFrom(player.getPosition()) && other
+            if (LocalInterest.canKeep(player.getPosition(), other
+                    .getPosition(), tick - ticksAdded[other.getSlot()]) && other
                     .getSession().getStage() == Session.Stage.LOGGED_IN && !other
                     .isNeedsPlacement()) {
                 PlayerUpdating.updateOtherPlayerMovement(other, out);
                 if (other.getFlags().isUpdateRequired()) {
-                    PlayerUpdating.updateState(other, player, block, false,
-                            false);
+                    PlayerUpdating.updateState(other, block, false, false);
                 }
             } else {
-                out.writeBit(true);
-                out.writeBits(2, 3);
+                MovementSegment.write(out, MovementSegment.REMOVE);
                 i.remove();
+                LocalInterest.recordRemove();
             }
         }
 
-        int added = 0;
+        // Find the players that could be added to the local player list, only
+        // looking at the players in the surrounding region chunks.
+        List<Player> candidates = context.getPlayerCandidates();
+        for (Player other : World.getPlayers().getRegionIndex().getViewable(
+                player.getPosition(), context.getViewablePlayers())) {
+            if (other != player && !player.getLocalPlayers().contains(other)
+                    && other.getSession().getStage() == Session.Stage.LOGGED_IN) {
+                candidates.add(other);
+            }
+        }
+
+        // Add the players that matter most first, the budget can cut them off.
+        int room = Math.min(UpdateBudget.MAX_ADDITIONS,
+                UpdateBudget.MAX_LOCAL - player.getLocalPlayers().size());
+        UpdateBudget.rank(player, candidates);
 
-        // Update the local player list.
-        for (int i = 0; i < World.getPlayers().getCapacity(); i++) {
-            if (added == 15 || player.getLocalPlayers().size() >= 255) {
+        int added = 0;
+        for (Player other : candidates) {
+            if (added == room) {
 
                 // Player limit has been reached.
                 break;
             }
-            Player other = World.getPlayers().get(i);
-            if (other == null || other == player || other.getSession()
-                    .getStage() != Session.Stage.LOGGED_IN) {
-                continue;
-            }
-            if (!player.getLocalPlayers().contains(other) && other
-                    .getPosition().isViewableFrom(player.getPosition())) {
-                added++;
-                player.getLocalPlayers().add(other);
-                PlayerUpdating.addPlayer(out, player, other);
-                PlayerUpdating.updateState(other, player, block, true, false);
+            if (!UpdateBudget.canAfford(out, block,
+                    forcedBlock(other).length + 3)) {
 
+                // Leave the rest for the next ticks, the packet is big enough.
+                UpdateBudget.recordDeferred(Math.min(room, candidates.size())
+                        - added);
+                break;
             }
+            added++;
+            player.getLocalPlayers().add(other);
+            ticksAdded[other.getSlot()] = tick;
+            LocalInterest.recordAdd();
+            PlayerUpdating.addPlayer(out, player, other);
+            PlayerUpdating.updateState(other, block, true, false);
         }
 
         // Append the attributes block to the main packet.
@@ -98,6 +133,7 @@ public final class PlayerUpdating {
 
         // Finish the packet and send it.
         out.endVarShort();
+        UpdateBudget.getPlayerPacketSize().record(out.getBuffer().position());
         out.sendPacket();
     }
 
@@ -120,7 +156,8 @@ public final class PlayerUpdating {
     }
 
     /**
-     * Appends the state of a player's appearance to a buffer.
+     * Appends the state of a player's appearance to a buffer. The appearance
+     * is only encoded again if it has changed since it was last encoded.
      * 
      * @param player
      *            the player.
@@ -128,7 +165,27 @@ public final class PlayerUpdating {
      *            the buffer.
      */
     public static void appendAppearance(Player player, ProtocolBuffer out) {
-        ProtocolBuffer block = new ProtocolBuffer(128);
+        byte[] appearance = player.getAppearanceBlock();
+
+        if (appearance == null) {
+            int version = player.getAppearanceVersion();
+            appearance = encodeAppearance(player);
+            player.setAppearanceBlock(appearance, version);
+        }
+
+        out.writeByte(appearance.length, ProtocolBuffer.ValueType.C);
+        out.writeBytes(appearance, appearance.length);
+    }
+
+    /**
+     * Encodes the appearance of a player.
+     * 
+     * @param player
+     *            the player.
+     * @return the encoded appearance.
+     */
+    private static byte[] encodeAppearance(Player player) {
+        ProtocolBuffer block = BufferPool.acquire(128);
 
         block.writeByte(player.getGender());
         block.writeByte(player.getHeadIcon());
@@ -257,8 +314,10 @@ public final class PlayerUpdating {
         block.writeByte(player.getCombatLevel());
         block.writeShort(0);
 
-        out.writeByte(block.getBuffer().position(), ProtocolBuffer.ValueType.C);
-        out.writeBytes(block.getBuffer());
+        byte[] appearance = Arrays.copyOf(block.getBuffer().array(), block
+                .getBuffer().position());
+        block.release();
+        return appearance;
     }
 
     /**
@@ -310,24 +369,8 @@ public final class PlayerUpdating {
                     player.isResetMovementQueue(), updateRequired);
 
             // player.setNeedsPlacement(false);
-        } else { // No placement update, check for movement.
-            int pDir = player.getPrimaryDirection();
-            int sDir = player.getSecondaryDirection();
-            if (pDir != -1) { // If they moved.
-                out.writeBit(true); // Yes, there is an update.
-                if (sDir != -1) { // If they ran.
-                    appendRun(out, pDir, sDir, updateRequired);
-                } else { // Movement but no running - they walked.
-                    appendWalk(out, pDir, updateRequired);
-                }
-            } else { // No movement.
-                if (updateRequired) { // Does the state need to be updated?
-                    out.writeBit(true); // Yes, there is an update.
-                    appendStand(out);
-                } else { // No update whatsoever.
-                    out.writeBit(false);
-                }
-            }
+        } else { // No placement update, copy the packed movement.
+            MovementSegment.write(out, player.getMovementSegment());
         }
     }
 
@@ -342,53 +385,150 @@ public final class PlayerUpdating {
      */
     public static void updateOtherPlayerMovement(Player player,
             ProtocolBuffer out) {
-        boolean updateRequired = player.getFlags().isUpdateRequired();
-        int pDir = player.getPrimaryDirection();
-        int sDir = player.getSecondaryDirection();
-        if (pDir != -1) { // If they moved.
-            out.writeBit(true); // Yes, there is an update.
-            if (sDir != -1) { // If they ran.
-                appendRun(out, pDir, sDir, updateRequired);
-            } else { // Movement but no running - they walked.
-                appendWalk(out, pDir, updateRequired);
+        MovementSegment.write(out, player.getMovementSegment());
+    }
+
+    /**
+     * Prepares the update blocks of a player for this cycle. This is done once
+     * for every player before any updating takes place, so players being
+     * updated only have to copy the blocks of the players around them instead
+     * of encoding them again.
+     * 
+     * @param player
+     *            the player to prepare the update blocks for.
+     */
+    public static void prepare(Player player) throws Exception {
+
+        // Pack the movement once, every viewer writes exactly the same bits.
+        player.setMovementSegment(MovementSegment.encode(player
+                .getPrimaryDirection(), player.getSecondaryDirection(), player
+                .getFlags().isUpdateRequired()));
+
+        byte[] idle = player.getIdleUpdateBlock();
+
+        try {
+
+            // Players that are added to a local list always need their
+            // appearance, which is only encoded again once it has changed.
+            if (idle == null) {
+                int version = player.getAppearanceVersion();
+                idle = encodeIdleState(player);
+                player.setIdleUpdateBlock(idle, version);
             }
-        } else { // No movement.
-            if (updateRequired) { // Does the state need to be updated?
-                out.writeBit(true); // Yes, there is an update.
-                appendStand(out);
-            } else { // No update whatsoever.
-                out.writeBit(false);
+
+            if (!player.getFlags().isUpdateRequired()) {
+                player.setUpdateBlocks(null, null, idle);
+                return;
             }
+
+            // Reuse the blocks that would be encoded exactly the same. The
+            // forced block of a flagged player is only encoded once a viewer
+            // actually adds it.
+            byte[] normal = encodeState(player, false, false);
+            byte[] self = player.getFlags().get(Flag.CHAT) ? encodeState(
+                    player, false, true) : normal;
+            player.setUpdateBlocks(normal, self, player.getFlags().get(
+                    Flag.APPEARANCE) ? normal : null);
+        } catch (Exception e) {
+
+            // Viewers still copy the blocks of this player, so don't leave
+            // them with nothing to copy.
+            player.setUpdateBlocks(EMPTY_BLOCK, EMPTY_BLOCK,
+                    idle == null ? EMPTY_BLOCK : idle);
+            throw e;
         }
     }
 
     /**
-     * Updates the state of a player.
+     * Updates the state of a player by copying one of its prepared update
+     * blocks.
      * 
      * @param player
      *            the player being constructed.
-     * @param thisPlayer
-     *            the player being constructed for.
      * @param block
      *            the update block.
+     * @param forceAppearance
+     *            if the appearance of the player should be sent.
+     * @param noChat
+     *            if the chat of the player should be left out.
      */
-    public static void updateState(Player player, Player thisPlayer,
-            ProtocolBuffer block, boolean forceAppearance, boolean noChat)
-            throws Exception {
+    public static void updateState(Player player, ProtocolBuffer block,
+            boolean forceAppearance, boolean noChat) throws Exception {
 
         // Block if no update is required.
         if (!player.getFlags().isUpdateRequired() && !forceAppearance) {
             return;
         }
 
-        // Send the cached update block if we are able to.
-        if (player.getCachedUpdateBlock() != null && player != thisPlayer && !forceAppearance && !noChat) {
-            block.getBuffer().put(player.getCachedUpdateBlock().array());
-            return;
+        // Pick the prepared variant we need.
+        byte[] data = forceAppearance ? forcedBlock(player)
+                : noChat ? player.getSelfUpdateBlock() : player
+                        .getUpdateBlock();
+
+        if (data == null) {
+            throw new IllegalStateException(
+                    "Update blocks have not been prepared for " + player);
         }
+        block.writeBytes(data, data.length);
+    }
 
-        // Create the buffer we are going to cache.
-        ProtocolBuffer cachedBuffer = new ProtocolBuffer(300);
+    /**
+     * Gets the update block sent to players adding a player this cycle,
+     * encoding it if this is the first time the player is added this cycle.
+     * The appearance has already been encoded when the blocks were prepared,
+     * so this only ever reads the encoded appearance.
+     * 
+     * @param player
+     *            the player being added.
+     * @return the forced update block.
+     */
+    private static byte[] forcedBlock(Player player) throws Exception {
+        byte[] forced = player.getForcedUpdateBlock();
+
+        // Viewers adding the player at the same time might both encode it,
+        // which is harmless because they encode exactly the same block.
+        if (forced == null) {
+            forced = encodeState(player, true, false);
+            player.setForcedUpdateBlock(forced);
+        }
+        return forced;
+    }
+
+    /**
+     * Encodes the update block of a player that hasn't been flagged, which is
+     * only the appearance of the player.
+     * 
+     * @param player
+     *            the player to encode the appearance of.
+     * @return the encoded update block.
+     */
+    private static byte[] encodeIdleState(Player player) {
+        ProtocolBuffer encoded = BufferPool.acquire(300);
+        encoded.writeByte(0x10);
+        appendAppearance(player, encoded);
+
+        byte[] state = Arrays.copyOf(encoded.getBuffer().array(), encoded
+                .getBuffer().position());
+        encoded.release();
+        return state;
+    }
+
+    /**
+     * Encodes the state of a player into a new update block.
+     * 
+     * @param player
+     *            the player to encode the state of.
+     * @param forceAppearance
+     *            if the appearance of the player should be encoded.
+     * @param noChat
+     *            if the chat of the player should be left out.
+     * @return the encoded update block.
+     */
+    private static byte[] encodeState(Player player, boolean forceAppearance,
+            boolean noChat) throws Exception {
+
+        // Create the buffer we are going to encode into.
+        ProtocolBuffer encoded = BufferPool.acquire(300);
 
         // First we build the update mask.
         int mask = 0x0;
@@ -424,48 +564,44 @@ public final class PlayerUpdating {
         // Then we write the built mask.
         if (mask >= 0x100) {
             mask |= 0x40;
-            cachedBuffer.writeShort(mask, ProtocolBuffer.ByteOrder.LITTLE);
+            encoded.writeShort(mask, ProtocolBuffer.ByteOrder.LITTLE);
         } else {
-            cachedBuffer.writeByte(mask);
+            encoded.writeByte(mask);
         }
 
         // Then we add the attribute data to the block.
         if (player.getFlags().get(Flag.GRAPHICS)) {
-            appendGfx(player, cachedBuffer);
+            appendGfx(player, encoded);
         }
         if (player.getFlags().get(Flag.ANIMATION)) {
-            appendAnimation(player, cachedBuffer);
+            appendAnimation(player, encoded);
         }
         if (player.getFlags().get(Flag.FORCED_CHAT)) {
-            appendForcedChat(player, cachedBuffer);
+            appendForcedChat(player, encoded);
         }
         if (player.getFlags().get(Flag.CHAT) && !noChat) {
-            appendChat(player, cachedBuffer);
+            appendChat(player, encoded);
         }
         if (player.getFlags().get(Flag.FACE_ENTITY)) {
-            appendFaceEntity(player, cachedBuffer);
+            appendFaceEntity(player, encoded);
         }
         if (player.getFlags().get(Flag.APPEARANCE) || forceAppearance) {
-            appendAppearance(player, cachedBuffer);
+            appendAppearance(player, encoded);
         }
         if (player.getFlags().get(Flag.FACE_COORDINATE)) {
-            appendFaceCoordinate(player, cachedBuffer);
+            appendFaceCoordinate(player, encoded);
         }
         if (player.getFlags().get(Flag.HIT)) {
-            appendPrimaryHit(player, cachedBuffer);
+            appendPrimaryHit(player, encoded);
         }
         if (player.getFlags().get(Flag.HIT_2)) {
-            appendSecondaryHit(player, cachedBuffer);
-        }
-
-        // Cache the block if possible.
-        if (player != thisPlayer && !forceAppearance && !noChat) {
-            player.setCachedUpdateBlock(cachedBuffer.getBuffer());
-
+            appendSecondaryHit(player, encoded);
         }
 
-        // Add the cached block to the update block.
-        block.writeBytes(cachedBuffer.getBuffer());
+        byte[] state = Arrays.copyOf(encoded.getBuffer().array(), encoded
+                .getBuffer().position());
+        encoded.release();
+        return state;
     }
 
     /**
@@ -586,61 +722,6 @@ public final class PlayerUpdating {
         out.writeInt(player.getGfx().getHeight());
     }
 
-    /**
-     * Appends the stand version of the movement section of the update packet
-     * (sector 2,0). Appending this (instead of just a zero bit) automatically
-     * assumes that there is a required attribute update afterwards.
-     * 
-     * @param out
-     *            the buffer to append to.
-     */
-    public static void appendStand(ProtocolBuffer out) {
-        out.writeBits(2, 0); // 0 - no movement.
-    }
-
-    /**
-     * Appends the walk version of the movement section of the update packet
-     * (sector 2,1).
-     * 
-     * @param out
-     *            the buffer to append to
-     * @param direction
-     *            the walking direction
-     * @param attributesUpdate
-     *            whether or not a player attributes update is required
-     */
-    public static void appendWalk(ProtocolBuffer out, int direction,
-            boolean attributesUpdate) {
-        out.writeBits(2, 1); // 1 - walking.
-
-        /** Append the actual sector. */
-        out.writeBits(3, direction);
-        out.writeBit(attributesUpdate);
-    }
-
-    /**
-     * Appends the walk version of the movement section of the update packet
-     * (sector 2,2).
-     * 
-     * @param out
-     *            the buffer to append to.
-     * @param direction
-     *            the walking direction.
-     * @param direction2
-     *            the running direction.
-     * @param attributesUpdate
-     *            whether or not a player attributes update is required.
-     */
-    public static void appendRun(ProtocolBuffer out, int direction,
-            int direction2, boolean attributesUpdate) {
-        out.writeBits(2, 2); // 2 - running.
-
-        // Append the actual sector.
-        out.writeBits(3, direction);
-        out.writeBits(3, direction2);
-        out.writeBit(attributesUpdate);
-    }
-
     /**
      * Appends the player placement version of the movement section of the
      * update packet (sector 2,3). Note that by others this was previously
@@ -2,7 +2,6 @@ package com.asteria.world.entity.player.skill;
 
 import com.asteria.util.Utility;
 import com.asteria.world.entity.Graphic;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.player.Player;
 
 /**
@@ -183,7 +182,7 @@ public final class Skills {
                 }
                 levelUp(player, SkillData.getSkill(skill));
                 player.graphic(new Graphic(199));
-                player.getFlags().flag(Flag.APPEARANCE);
+                player.updateAppearance();
             }
         }
 
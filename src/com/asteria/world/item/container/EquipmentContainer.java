@@ -3,7 +3,6 @@ package com.asteria.world.item.container;
 import java.util.Collection;
 
 import com.asteria.util.Utility;
-import com.asteria.world.entity.UpdateFlags.Flag;
 import com.asteria.world.entity.player.Player;
 import com.asteria.world.entity.player.content.AssignSkillRequirement;
 import com.asteria.world.entity.player.content.AssignWeaponAnimation;
@@ -140,7 +139,7 @@ public class EquipmentContainer extends ItemContainer {
 
         player.writeBonus();
         refresh();
-        player.getFlags().flag(Flag.APPEARANCE);
+        player.updateAppearance();
         return true;
     }
 
@@ -195,7 +194,7 @@ public class EquipmentContainer extends ItemContainer {
         player.writeBonus();
         refresh();
         player.getInventory().refresh();
-        player.getFlags().flag(Flag.APPEARANCE);
+        player.updateAppearance();
         return true;
     }
 